@@ -1,15 +1,31 @@
 ﻿package com.drone.simulador.api;
 
+import com.drone.simulador.api.dto.PlanejamentoRequest;
+import com.drone.simulador.dao.CacheCadastro;
+import com.drone.simulador.dao.EntregaDao;
+import com.drone.simulador.domain.AgendarDrone;
+import com.drone.simulador.domain.DroneBatterySimulator;
+import com.drone.simulador.domain.ModoAtribuicao;
+import com.drone.simulador.domain.Obstaculo;
 import com.drone.simulador.infra.DatabaseConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import javax.sql.DataSource;
 
 public final class ApiServer implements AutoCloseable {
@@ -18,13 +34,23 @@ public final class ApiServer implements AutoCloseable {
     private final ObjectMapper mapper;
     private final ExecutorService executor;
     private final DataSource dataSource;
+    private final ForkJoinPool planejamentoPool;
+    private final CacheCadastro cadastro;
+    private final JobsPlanejamento jobs;
+    private final PipelinePlanejamento pipeline;
+    private final List<LimiteConcorrencia> limites = new ArrayList<>();
 
     public ApiServer(int port) throws IOException {
         this.mapper = buildMapper();
         this.dataSource = DatabaseConfig.getDataSource();
         this.httpServer = HttpServer.create(new InetSocketAddress(port), 0);
-        this.executor = Executors.newCachedThreadPool();
-        this.httpServer.createContext("/health", exchange -> {
+        this.executor = criarExecutor();
+        this.planejamentoPool = criarPoolPlanejamento();
+        this.cadastro = new CacheCadastro(dataSource, DatabaseConfig::abrirConexaoDedicada);
+        int limiteLeve = resolveInt("API_LIMITE_LEVE", 256);
+        int limitePlanejamento = resolveInt("API_LIMITE_PLANEJAMENTO", Math.max(2, Runtime.getRuntime().availableProcessors()));
+        int limiteImportacao = resolveInt("API_LIMITE_IMPORTACAO", 2);
+        this.httpServer.createContext("/health", limitar("/health", limiteLeve, exchange -> {
             try (exchange) {
                 if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
                     exchange.sendResponseHeaders(405, -1);
@@ -37,8 +63,49 @@ public final class ApiServer implements AutoCloseable {
                     responseBody.write(payload);
                 }
             }
-        });
-        this.httpServer.createContext("/api/planejar", new PlanejamentoController(mapper, dataSource));
+        }));
+        AgendarDrone agendador = new AgendarDrone(
+            resolveInt("PLANEJAMENTO_LIMITE_CANDIDATOS", 12),
+            planejamentoPool,
+            resolveModo(),
+            resolveInt("PLANEJAMENTO_CACHE_ROTAS", 4096),
+            resolveInt("PLANEJAMENTO_MATRIZ_MB", 64) * (1L << 20)
+        );
+        PlanejamentoController planejamento = new PlanejamentoController(
+            mapper,
+            agendador,
+            new DroneBatterySimulator(),
+            cadastro,
+            resolveInt("PLANEJAMENTO_CACHE_PLANOS", 128),
+            Duration.ofSeconds(resolveInt("PLANEJAMENTO_CACHE_PLANOS_TTL_S", 60))
+        );
+        this.jobs = new JobsPlanejamento(
+            planejamento,
+            resolveInt("API_JOBS_WORKERS", 2),
+            resolveInt("API_JOBS_FILA", 64),
+            resolveInt("API_JOBS_MAXIMO", 1000),
+            Duration.ofSeconds(resolveInt("API_JOBS_TTL_S", 600))
+        );
+        this.pipeline = criarPipeline(agendador);
+        this.httpServer.createContext("/api/planejar", limitar("/api/planejar", limitePlanejamento, reservarAoPipeline(planejamento)));
+        this.httpServer.createContext("/api/planejamentos", limitar("/api/planejamentos", limiteLeve, reservarAoPipeline(
+            new PlanejamentosAssincronosController(mapper, jobs, resolveInt("API_RETRY_AFTER_S", 1)))));
+        if (pipeline != null) {
+            this.httpServer.createContext("/api/pipeline/viagens", limitar("/api/pipeline/viagens",
+                resolveInt("API_LIMITE_SSE", 64), new PipelineController(pipeline)));
+        }
+        this.httpServer.createContext("/metrics", limitar("/metrics", limiteLeve, new MetricasController(
+            mapper,
+            agendador,
+            DatabaseConfig::estatisticas,
+            planejamento::estatisticasCachePlanos,
+            () -> pipeline == null ? null : pipeline.estatisticas(),
+            () -> List.copyOf(limites)
+        )));
+        this.httpServer.createContext("/api/entregas/importar", limitar("/api/entregas/importar", limiteImportacao, new ImportacaoEntregasController(
+            mapper,
+            new EntregaDao(dataSource)
+        )));
         this.httpServer.setExecutor(executor);
     }
 
@@ -49,13 +116,136 @@ public final class ApiServer implements AutoCloseable {
         return objectMapper;
     }
 
+    private LimiteConcorrencia limitar(String nome, int limite, HttpHandler handler) {
+        LimiteConcorrencia limiteConcorrencia = new LimiteConcorrencia(nome, limite, resolveInt("API_RETRY_AFTER_S", 1), handler);
+        limites.add(limiteConcorrencia);
+        return limiteConcorrencia;
+    }
+
+    /**
+     * Executor das requisicoes HTTP. O projeto compila com {@code release 17}, o minimo do README, e a
+     * imagem roda Java 21; por isso as threads virtuais sao obtidas por reflexao. Sem
+     * {@code API_EXECUTOR} usa threads virtuais quando a JVM as oferece e, senao, o pool fixo de
+     * {@code API_THREADS}; {@code API_EXECUTOR=VIRTUAL} explicito exige Java 21 e impede a subida sem ele.
+     */
+    private static ExecutorService criarExecutor() {
+        String modo = Optional.ofNullable(System.getenv("API_EXECUTOR")).map(String::trim).orElse("");
+        if (modo.isEmpty() || "VIRTUAL".equalsIgnoreCase(modo)) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                if (!modo.isEmpty()) {
+                    throw new IllegalStateException("API_EXECUTOR=VIRTUAL exige Java 21 ou superior; JVM atual: "
+                        + Runtime.version(), e);
+                }
+                System.err.printf("Threads virtuais indisponiveis no Java %s, utilizando pool fixo de %d threads.%n",
+                    Runtime.version().feature(), resolveInt("API_THREADS", 64));
+            }
+        } else if (!"FIXO".equalsIgnoreCase(modo)) {
+            throw new IllegalArgumentException("Variavel API_EXECUTOR invalida '" + modo + "': use VIRTUAL ou FIXO");
+        }
+        return Executors.newFixedThreadPool(resolveInt("API_THREADS", 64));
+    }
+
+    /**
+     * O pipeline so roda com {@code PIPELINE_ATIVO=true}: ele atribui continuamente as entregas pendentes,
+     * desviando dos obstaculos de {@code PIPELINE_OBSTACULOS}.
+     */
+    private PipelinePlanejamento criarPipeline(AgendarDrone agendador) {
+        if (!Boolean.parseBoolean(Optional.ofNullable(System.getenv("PIPELINE_ATIVO")).map(String::trim).orElse("false"))) {
+            return null;
+        }
+        return new PipelinePlanejamento(
+            cadastro,
+            agendador,
+            resolveObstaculosPipeline(),
+            mapper,
+            resolveInt("PIPELINE_LOTE", 50),
+            Duration.ofMillis(resolveInt("PIPELINE_JANELA_MS", 500)),
+            Duration.ofMillis(resolveInt("PIPELINE_RETENCAO_MS", 1000)),
+            Duration.ofMillis(resolveInt("PIPELINE_INTERVALO_LEITURA_MS", 200)),
+            resolveInt("PIPELINE_FILA_ENTREGAS", 1024),
+            resolveInt("PIPELINE_FILA_LOTES", 4),
+            resolveInt("PIPELINE_BUFFER_ASSINANTE", 256)
+        );
+    }
+
+    /**
+     * Obstaculos do pipeline como lista JSON de {@code {"x":..,"y":..,"raio":..}}; um valor invalido
+     * impede a subida em vez de planejar sem eles.
+     */
+    private List<Obstaculo> resolveObstaculosPipeline() {
+        String env = System.getenv("PIPELINE_OBSTACULOS");
+        if (env == null || env.isBlank()) {
+            return List.of();
+        }
+        try {
+            PlanejamentoRequest.ObstaculoPayload[] payloads = mapper.readValue(env, PlanejamentoRequest.ObstaculoPayload[].class);
+            if (payloads == null) {
+                throw new IllegalArgumentException("esperada uma lista de obstaculos");
+            }
+            return Arrays.stream(payloads).map(ConversaoPlanejamento::toObstaculo).toList();
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Variavel PIPELINE_OBSTACULOS invalida: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Com o pipeline ativo, as submissoes de planejamento por requisicao sao recusadas.
+     */
+    private HttpHandler reservarAoPipeline(HttpHandler handler) {
+        return pipeline == null ? handler : new ReservaPipeline(handler);
+    }
+
+    private static ForkJoinPool criarPoolPlanejamento() {
+        int paralelismo = resolveInt("PLANEJAMENTO_PARALELISMO", 1);
+        return paralelismo > 1 ? new ForkJoinPool(paralelismo) : null;
+    }
+
+    private static ModoAtribuicao resolveModo() {
+        String env = System.getenv("PLANEJAMENTO_MODO");
+        if (env == null || env.isBlank()) {
+            return ModoAtribuicao.RODIZIO;
+        }
+        try {
+            return ModoAtribuicao.valueOf(env.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ignored) {
+            System.err.printf("Variavel PLANEJAMENTO_MODO invalida '%s', utilizando padrao.%n", env);
+            return ModoAtribuicao.RODIZIO;
+        }
+    }
+
+    private static int resolveInt(String key, int defaultValue) {
+        String env = System.getenv(key);
+        if (env == null || env.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(env.trim());
+        } catch (NumberFormatException ignored) {
+            System.err.printf("Variavel %s invalida '%s', utilizando padrao.%n", key, env);
+            return defaultValue;
+        }
+    }
+
     public void start() {
         this.httpServer.start();
+        if (pipeline != null) {
+            pipeline.iniciar();
+        }
     }
 
     public void stop(int delaySeconds) {
         this.httpServer.stop(delaySeconds);
         executor.shutdownNow();
+        jobs.close();
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        cadastro.close();
+        if (planejamentoPool != null) {
+            planejamentoPool.shutdownNow();
+        }
     }
 
     @Override
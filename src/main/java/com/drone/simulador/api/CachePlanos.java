@@ -0,0 +1,150 @@
+package com.drone.simulador.api;
+
+import com.drone.simulador.api.dto.MetricasResponse.CachePlanosResponse;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
+
+/**
+ * Cache LRU de planos por resumo da requisicao, com expiracao por {@code ttl}. Antes de devolvida, uma
+ * entrada passa pelo {@code valido}; recusada, e descartada e o plano e recalculado. Requisicoes
+ * simultaneas com a mesma chave aguardam um unico calculo.
+ */
+final class CachePlanos<V> {
+
+    @FunctionalInterface
+    interface Calculo<V> {
+        V calcular() throws SQLException;
+    }
+
+    private final int capacidade;
+    private final Duration ttl;
+    private final Predicate<V> valido;
+    private final LinkedHashMap<String, Guardado<V>> entradas;
+    private final Map<String, CompletableFuture<V>> emAndamento = new HashMap<>();
+    private long acertos;
+    private long falhas;
+    private long coalescidas;
+    private long despejos;
+
+    CachePlanos(int capacidade, Duration ttl, Predicate<V> valido) {
+        if (capacidade < 0) {
+            throw new IllegalArgumentException("Capacidade do cache de planos nao pode ser negativa");
+        }
+        this.capacidade = capacidade;
+        this.ttl = Objects.requireNonNull(ttl, "ttl nao pode ser nulo");
+        this.valido = Objects.requireNonNull(valido, "valido nao pode ser nulo");
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Guardado<V>> maisAntiga) {
+                if (size() > CachePlanos.this.capacidade) {
+                    despejos++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Devolve o plano guardado para {@code chave}, se ainda valido, ou executa {@code calculo}. A
+     * validacao roda fora da trava do cache. Quem chega enquanto o mesmo calculo esta em andamento
+     * recebe o seu resultado ou a sua excecao.
+     */
+    V obter(String chave, Calculo<V> calculo) throws SQLException {
+        Guardado<V> guardado;
+        synchronized (this) {
+            guardado = entradas.get(chave);
+        }
+        if (guardado != null && guardado.expiraEm().isAfter(Instant.now()) && valido.test(guardado.valor())) {
+            synchronized (this) {
+                acertos++;
+            }
+            return guardado.valor();
+        }
+
+        CompletableFuture<V> futuro;
+        synchronized (this) {
+            if (guardado != null) {
+                entradas.remove(chave, guardado);
+            }
+            futuro = emAndamento.get(chave);
+            if (futuro != null) {
+                coalescidas++;
+            } else {
+                falhas++;
+                emAndamento.put(chave, new CompletableFuture<>());
+            }
+        }
+        return futuro != null ? aguardar(futuro) : calcular(chave, calculo);
+    }
+
+    /**
+     * Plano guardado para {@code chave} se ainda dentro do {@code ttl} e valido, sem calcular nada nem
+     * contar nas estatisticas; {@code null} caso contrario.
+     */
+    V consultar(String chave) {
+        Guardado<V> guardado;
+        synchronized (this) {
+            guardado = entradas.get(chave);
+        }
+        if (guardado == null || !guardado.expiraEm().isAfter(Instant.now()) || !valido.test(guardado.valor())) {
+            return null;
+        }
+        return guardado.valor();
+    }
+
+    synchronized CachePlanosResponse estatisticas() {
+        return new CachePlanosResponse(acertos, falhas, coalescidas, despejos, entradas.size());
+    }
+
+    private V calcular(String chave, Calculo<V> calculo) throws SQLException {
+        V valor;
+        try {
+            valor = calculo.calcular();
+        } catch (SQLException | RuntimeException | Error e) {
+            CompletableFuture<V> futuro;
+            synchronized (this) {
+                futuro = emAndamento.remove(chave);
+            }
+            futuro.completeExceptionally(e);
+            throw e;
+        }
+        CompletableFuture<V> futuro;
+        synchronized (this) {
+            futuro = emAndamento.remove(chave);
+            if (capacidade > 0) {
+                entradas.put(chave, new Guardado<>(valor, Instant.now().plus(ttl)));
+            }
+        }
+        futuro.complete(valor);
+        return valor;
+    }
+
+    private V aguardar(CompletableFuture<V> futuro) throws SQLException {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof SQLException sql) {
+                throw sql;
+            }
+            if (causa instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (causa instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private record Guardado<V>(V valor, Instant expiraEm) {}
+}
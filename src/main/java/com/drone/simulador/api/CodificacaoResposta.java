@@ -0,0 +1,178 @@
+package com.drone.simulador.api;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Compressao gzip/deflate das respostas, negociada pelo {@code Accept-Encoding}. Respostas de tamanho
+ * conhecido so sao comprimidas a partir de {@value #LIMIAR_BYTES} bytes. Os {@link Deflater}s vem de um
+ * pool, pois cada um aloca buffers nativos que o GC so libera tardiamente.
+ */
+final class CodificacaoResposta {
+
+    static final int LIMIAR_BYTES = 1024;
+
+    private static final int NIVEL = Deflater.BEST_SPEED;
+    private static final int TAMANHO_POOL = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final BlockingQueue<Deflater> POOL_GZIP = new ArrayBlockingQueue<>(TAMANHO_POOL);
+    private static final BlockingQueue<Deflater> POOL_DEFLATE = new ArrayBlockingQueue<>(TAMANHO_POOL);
+    private static final byte[] CABECALHO_GZIP = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    enum Codificacao { GZIP, DEFLATE, NENHUMA }
+
+    private CodificacaoResposta() {
+    }
+
+    /**
+     * Escolhe gzip, depois deflate, entre as codificacoes aceitas com {@code q} positivo.
+     */
+    static Codificacao negociar(Headers requestHeaders) {
+        List<String> valores = requestHeaders.get("Accept-Encoding");
+        if (valores == null) {
+            return Codificacao.NENHUMA;
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        for (String valor : valores) {
+            for (String item : valor.split(",")) {
+                String[] partes = item.split(";");
+                String nome = partes[0].trim().toLowerCase(Locale.ROOT);
+                boolean aceito = true;
+                for (int i = 1; i < partes.length; i++) {
+                    if (partes[i].trim().replace(" ", "").matches("q=0(\\.0*)?")) {
+                        aceito = false;
+                    }
+                }
+                if (!aceito) {
+                    continue;
+                }
+                gzip |= nome.equals("gzip") || nome.equals("x-gzip") || nome.equals("*");
+                deflate |= nome.equals("deflate");
+            }
+        }
+        return gzip ? Codificacao.GZIP : deflate ? Codificacao.DEFLATE : Codificacao.NENHUMA;
+    }
+
+    /**
+     * Envia um corpo ja serializado, comprimindo-o quando negociado e acima do limiar.
+     */
+    static void enviar(HttpExchange exchange, int status, byte[] corpo) throws IOException {
+        Codificacao codificacao = corpo.length >= LIMIAR_BYTES ? negociar(exchange.getRequestHeaders()) : Codificacao.NENHUMA;
+        exchange.getResponseHeaders().add("Vary", "Accept-Encoding");
+        if (codificacao == Codificacao.NENHUMA) {
+            exchange.sendResponseHeaders(status, corpo.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(corpo);
+            }
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Encoding", nome(codificacao));
+        exchange.sendResponseHeaders(status, 0);
+        try (OutputStream out = comprimir(exchange.getResponseBody(), codificacao)) {
+            out.write(corpo);
+        }
+    }
+
+    /**
+     * Envia os cabecalhos de uma resposta em streaming e devolve o corpo, ja comprimido quando
+     * negociado; como o tamanho nao e conhecido, o limiar nao se aplica.
+     */
+    static OutputStream abrir(HttpExchange exchange, int status, boolean comprimir) throws IOException {
+        Codificacao codificacao = comprimir ? negociar(exchange.getRequestHeaders()) : Codificacao.NENHUMA;
+        exchange.getResponseHeaders().add("Vary", "Accept-Encoding");
+        if (codificacao != Codificacao.NENHUMA) {
+            exchange.getResponseHeaders().set("Content-Encoding", nome(codificacao));
+        }
+        exchange.sendResponseHeaders(status, 0);
+        return comprimir(exchange.getResponseBody(), codificacao);
+    }
+
+    private static String nome(Codificacao codificacao) {
+        return codificacao == Codificacao.GZIP ? "gzip" : "deflate";
+    }
+
+    private static OutputStream comprimir(OutputStream destino, Codificacao codificacao) throws IOException {
+        if (codificacao == Codificacao.NENHUMA) {
+            return destino;
+        }
+        boolean gzip = codificacao == Codificacao.GZIP;
+        BlockingQueue<Deflater> pool = gzip ? POOL_GZIP : POOL_DEFLATE;
+        Deflater deflater = pool.poll();
+        if (deflater == null) {
+            // gzip usa deflate cru e escreve o proprio cabecalho; "deflate" no HTTP e o formato zlib
+            deflater = new Deflater(NIVEL, gzip);
+        }
+        return new SaidaComprimida(destino, deflater, pool, gzip);
+    }
+
+    private static final class SaidaComprimida extends DeflaterOutputStream {
+        private final BlockingQueue<Deflater> pool;
+        private final boolean gzip;
+        private final CRC32 crc = new CRC32();
+        private boolean finalizada;
+        private boolean fechada;
+
+        SaidaComprimida(OutputStream destino, Deflater deflater, BlockingQueue<Deflater> pool, boolean gzip) throws IOException {
+            super(destino, deflater, 8192);
+            this.pool = pool;
+            this.gzip = gzip;
+            if (gzip) {
+                destino.write(CABECALHO_GZIP);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            if (gzip) {
+                crc.update(b, off, len);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (finalizada) {
+                return;
+            }
+            super.finish();
+            if (gzip) {
+                escreverInteiro((int) crc.getValue());
+                escreverInteiro((int) def.getBytesRead());
+            }
+            finalizada = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fechada) {
+                return;
+            }
+            fechada = true;
+            try {
+                finish();
+                out.close();
+            } finally {
+                def.reset();
+                if (!pool.offer(def)) {
+                    def.end();
+                }
+            }
+        }
+
+        private void escreverInteiro(int valor) throws IOException {
+            out.write(valor & 0xff);
+            out.write((valor >>> 8) & 0xff);
+            out.write((valor >>> 16) & 0xff);
+            out.write((valor >>> 24) & 0xff);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.drone.simulador.api;
+
+/**
+ * ETags fracos e a avaliacao do {@code If-None-Match} por comparacao fraca, que aceita uma lista de
+ * tags ou {@code *}.
+ */
+final class CondicaoEtag {
+
+    private CondicaoEtag() {
+    }
+
+    static String fraca(String valor) {
+        return "W/\"" + valor + "\"";
+    }
+
+    /**
+     * ETag fraco derivado do proprio corpo da resposta.
+     */
+    static String doConteudo(byte[] conteudo) {
+        return fraca(new ResumoEstado().incluir(conteudo).hex());
+    }
+
+    static boolean corresponde(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String semPrefixo = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidata : ifNoneMatch.split(",")) {
+            String valor = candidata.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals("*") || valor.equals(semPrefixo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,90 @@
+package com.drone.simulador.api;
+
+import com.drone.simulador.api.dto.PlanejamentoRequest;
+import com.drone.simulador.dao.model.DroneRecord;
+import com.drone.simulador.dao.model.EntregaRecord;
+import com.drone.simulador.dao.model.ViagemRecord;
+import com.drone.simulador.domain.Drone;
+import com.drone.simulador.domain.Obstaculo;
+import com.drone.simulador.domain.Partida;
+import com.drone.simulador.domain.Pedido;
+import com.drone.simulador.domain.Prioridade;
+import com.drone.simulador.domain.Viagem;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Conversoes entre as linhas do banco e o dominio, comuns ao planejamento por requisicao e ao pipeline.
+ */
+final class ConversaoPlanejamento {
+
+    private ConversaoPlanejamento() {
+    }
+
+    static Drone toDrone(DroneRecord record) {
+        double capacidade = record.capacidadeKg();
+        double autonomia = record.autonomiaKm();
+        double tempo = autonomia > 0 ? autonomia / Math.max(capacidade, 1e-6) : 1.0;
+        return new Drone(record.identificador(), capacidade, tempo);
+    }
+
+    /**
+     * Cria o pedido da entrega e registra em {@code pedidoIdMap} o id da entrega pelo id do pedido.
+     */
+    static Pedido toPedido(EntregaRecord record, Map<Long, Long> pedidoIdMap) {
+        Prioridade prioridade = switch (record.prioridade()) {
+            case 3 -> Prioridade.ALTA;
+            case 2 -> Prioridade.MEDIA;
+            default -> Prioridade.BAIXA;
+        };
+        LocalDateTime chegada = record.criadoEm();
+        Pedido pedido = chegada != null
+            ? new Pedido(new Partida(record.destinoX(), record.destinoY()), record.pesoKg(), prioridade, chegada)
+            : new Pedido(new Partida(record.destinoX(), record.destinoY()), record.pesoKg(), prioridade);
+        pedidoIdMap.put(pedido.getId(), record.id());
+        return pedido;
+    }
+
+    static Obstaculo toObstaculo(PlanejamentoRequest.ObstaculoPayload payload) {
+        if (payload == null) {
+            throw new IllegalArgumentException("Obstaculo nao pode ser nulo");
+        }
+        double x = Optional.ofNullable(payload.x()).orElseThrow(() -> new IllegalArgumentException("Obstaculo sem x"));
+        double y = Optional.ofNullable(payload.y()).orElseThrow(() -> new IllegalArgumentException("Obstaculo sem y"));
+        double raio = Optional.ofNullable(payload.raio()).orElseThrow(() -> new IllegalArgumentException("Obstaculo sem raio"));
+        if (raio <= 0) {
+            throw new IllegalArgumentException("Obstaculo com raio invalido: " + raio);
+        }
+        return new Obstaculo(x, y, raio);
+    }
+
+    /**
+     * Linhas de {@code viagem} a gravar para as viagens planejadas, na mesma ordem.
+     */
+    static List<ViagemRecord> toViagemRecords(List<Viagem> viagens, List<DroneRecord> droneRecords, Map<Long, Long> pedidoIdMap) {
+        Map<String, Long> droneIdMap = new HashMap<>();
+        for (DroneRecord record : droneRecords) {
+            droneIdMap.put(record.identificador(), record.id());
+        }
+        List<ViagemRecord> registros = new ArrayList<>(viagens.size());
+        for (Viagem viagem : viagens) {
+            List<Long> entregaIds = viagem.getPedidos().stream()
+                .map(pedido -> pedidoIdMap.get(pedido.getId()))
+                .toList();
+            registros.add(new ViagemRecord(
+                null,
+                droneIdMap.get(viagem.getDrone().getId()),
+                viagem.getPesoTotalKg(),
+                viagem.getDistanciaKm(),
+                viagem.getTempoHoras(),
+                entregaIds,
+                null
+            ));
+        }
+        return registros;
+    }
+}
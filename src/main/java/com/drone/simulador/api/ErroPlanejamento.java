@@ -0,0 +1,24 @@
+package com.drone.simulador.api;
+
+import java.sql.SQLException;
+
+/**
+ * Status HTTP e mensagem devolvidos ao cliente para uma falha do planejamento, comuns ao endpoint
+ * sincrono e aos jobs.
+ */
+record ErroPlanejamento(int status, String erro, String detalhes) {
+
+    static ErroPlanejamento de(Throwable e) {
+        if (e instanceof IllegalArgumentException) {
+            return new ErroPlanejamento(422, "Dados invalidos", e.getMessage());
+        }
+        if (e instanceof IllegalStateException) {
+            return new ErroPlanejamento(409, "Conflito", e.getMessage());
+        }
+        e.printStackTrace();
+        if (e instanceof SQLException) {
+            return new ErroPlanejamento(500, "Erro no banco de dados", e.getMessage());
+        }
+        return new ErroPlanejamento(500, "Erro interno", e.getMessage());
+    }
+}
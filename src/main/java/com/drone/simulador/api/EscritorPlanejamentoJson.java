@@ -0,0 +1,156 @@
+package com.drone.simulador.api;
+
+import com.drone.simulador.domain.BatteryStep;
+import com.drone.simulador.domain.DroneBatterySimulation;
+import com.drone.simulador.domain.DroneBatterySimulator;
+import com.drone.simulador.domain.Partida;
+import com.drone.simulador.domain.Pedido;
+import com.drone.simulador.domain.Viagem;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Escreve um plano no formato de {@link com.drone.simulador.api.dto.PlanejamentoResponse} direto em um
+ * {@link JsonGenerator}, viagem a viagem: cada viagem e simulada e serializada quando chega a sua vez,
+ * sem montar os DTOs de rota e bateria nem o documento inteiro em memoria.
+ *
+ * <p>O formato compacto ({@value #TIPO_COMPACTO}) mantem os mesmos campos, mas a rota vira uma string
+ * base64 com as coordenadas em ponto fixo ({@code round(v * escala)}), como diferencas em relacao ao
+ * ponto anterior (o primeiro em relacao a origem), codificadas em zigzag e varint de 7 bits. Os passos da
+ * bateria viram vetores posicionais, na ordem de {@code colunasPassos}; distancia e tempo acumulados sao
+ * omitidos, pois sao as somas, em ordem, dos valores por segmento.
+ */
+final class EscritorPlanejamentoJson {
+
+    static final String TIPO_COMPACTO = "application/vnd.drone-simulador.plano-compacto+json";
+    static final int ESCALA_COMPACTA = 1000;
+
+    private static final String[] COLUNAS_PASSOS = { "distanciaSegmentoKm", "tempoSegmentoHoras", "cargaRestantePercentual" };
+
+    private final DroneBatterySimulator batterySimulator;
+
+    EscritorPlanejamentoJson(DroneBatterySimulator batterySimulator) {
+        this.batterySimulator = Objects.requireNonNull(batterySimulator, "batterySimulator nao pode ser nulo");
+    }
+
+    void escrever(JsonGenerator gen, String origem, double tempoTotal, List<Viagem> viagens, Map<Long, Long> pedidoIdMap) throws IOException {
+        escrever(gen, origem, tempoTotal, viagens, pedidoIdMap, false);
+    }
+
+    void escrever(
+        JsonGenerator gen,
+        String origem,
+        double tempoTotal,
+        List<Viagem> viagens,
+        Map<Long, Long> pedidoIdMap,
+        boolean compacto
+    ) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("origem", origem);
+        gen.writeNumberField("tempoTotalEntregaHoras", tempoTotal);
+        if (compacto) {
+            gen.writeNumberField("escala", ESCALA_COMPACTA);
+            gen.writeArrayFieldStart("colunasPassos");
+            for (String coluna : COLUNAS_PASSOS) {
+                gen.writeString(coluna);
+            }
+            gen.writeEndArray();
+        }
+        gen.writeArrayFieldStart("viagens");
+        for (Viagem viagem : viagens) {
+            escreverViagem(gen, viagem, pedidoIdMap, compacto);
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    private void escreverViagem(JsonGenerator gen, Viagem viagem, Map<Long, Long> pedidoIdMap, boolean compacto) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("idDrone", viagem.getDrone().getId());
+        gen.writeNumberField("pesoTotalKg", viagem.getPesoTotalKg());
+        gen.writeNumberField("distanciaKm", viagem.getDistanciaKm());
+        gen.writeNumberField("tempoHoras", viagem.getTempoHoras());
+
+        gen.writeArrayFieldStart("idsPedidos");
+        for (Pedido pedido : viagem.getPedidos()) {
+            gen.writeNumber(pedidoIdMap.getOrDefault(pedido.getId(), pedido.getId()));
+        }
+        gen.writeEndArray();
+
+        if (compacto) {
+            gen.writeStringField("rota", codificarRota(viagem.getRota()));
+        } else {
+            gen.writeArrayFieldStart("rota");
+            for (Partida ponto : viagem.getRota()) {
+                gen.writeStartArray();
+                gen.writeNumber(ponto.x());
+                gen.writeNumber(ponto.y());
+                gen.writeEndArray();
+            }
+            gen.writeEndArray();
+        }
+
+        DroneBatterySimulation simulacao = batterySimulator.simular(viagem);
+        gen.writeObjectFieldStart("bateria");
+        gen.writeNumberField("distanciaTotalKm", simulacao.distanciaTotalKm());
+        gen.writeNumberField("tempoTotalHoras", simulacao.tempoTotalHoras());
+        gen.writeBooleanField("rotaCompleta", simulacao.rotaCompleta());
+        gen.writeArrayFieldStart("passos");
+        for (BatteryStep passo : simulacao.passos()) {
+            if (compacto) {
+                gen.writeStartArray();
+                gen.writeNumber(passo.distanciaSegmentoKm());
+                gen.writeNumber(passo.tempoSegmentoHoras());
+                gen.writeNumber(passo.cargaRestantePercentual());
+                gen.writeEndArray();
+                continue;
+            }
+            gen.writeStartObject();
+            gen.writeNumberField("distanciaSegmentoKm", passo.distanciaSegmentoKm());
+            gen.writeNumberField("distanciaAcumuladaKm", passo.distanciaAcumuladaKm());
+            gen.writeNumberField("tempoSegmentoHoras", passo.tempoSegmentoHoras());
+            gen.writeNumberField("tempoAcumuladoHoras", passo.tempoAcumuladoHoras());
+            gen.writeNumberField("cargaRestantePercentual", passo.cargaRestantePercentual());
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+
+        gen.writeEndObject();
+    }
+
+    static String codificarRota(List<Partida> rota) {
+        // ate 2 varints de 10 bytes por ponto
+        byte[] buffer = new byte[rota.size() * 20];
+        int tamanho = 0;
+        long anteriorX = 0;
+        long anteriorY = 0;
+        for (Partida ponto : rota) {
+            long x = Math.round(ponto.x() * ESCALA_COMPACTA);
+            long y = Math.round(ponto.y() * ESCALA_COMPACTA);
+            tamanho = escreverVarint(buffer, tamanho, zigzag(x - anteriorX));
+            tamanho = escreverVarint(buffer, tamanho, zigzag(y - anteriorY));
+            anteriorX = x;
+            anteriorY = y;
+        }
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer, tamanho));
+    }
+
+    private static long zigzag(long valor) {
+        return (valor << 1) ^ (valor >> 63);
+    }
+
+    private static int escreverVarint(byte[] buffer, int posicao, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            buffer[posicao++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        buffer[posicao++] = (byte) valor;
+        return posicao;
+    }
+}
@@ -0,0 +1,386 @@
+package com.drone.simulador.api;
+
+import com.drone.simulador.api.dto.ImportacaoResponse;
+import com.drone.simulador.api.dto.ImportacaoResponse.LinhaRejeitada;
+import com.drone.simulador.dao.EntregaDao;
+import com.drone.simulador.dao.model.EntregaRecord;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Importa entregas em massa a partir de CSV ({@code text/csv}) ou NDJSON ({@code application/x-ndjson}).
+ * O corpo e lido linha a linha e enviado ao banco por {@code COPY} a medida que chega, sem ser
+ * carregado inteiro em memoria. Linhas invalidas sao descartadas e contadas; as primeiras
+ * {@value #MAXIMO_ERROS_DETALHADOS} sao devolvidas com o motivo. Pedidos ja cadastrados, ou repetidos
+ * no proprio corpo, sao ignorados e contados como duplicados.
+ *
+ * <p>No CSV a primeira linha e o cabecalho, com os nomes das colunas da tabela ({@code pedido_id},
+ * {@code peso_kg}, {@code origem_x}, {@code origem_y}, {@code destino_x}, {@code destino_y},
+ * {@code prioridade}); no NDJSON cada linha e um objeto com {@code pedidoId}, {@code pesoKg},
+ * {@code origemX}, {@code origemY}, {@code destinoX}, {@code destinoY} e {@code prioridade}. A origem e
+ * opcional e vale o deposito; a prioridade aceita {@code ALTA}, {@code MEDIA}, {@code BAIXA} ou 1 a 3.
+ * Valores que nao cabem nas colunas de {@code entrega} rejeitam a linha, ja que fariam o {@code COPY}
+ * desfazer a importacao inteira.
+ */
+public final class ImportacaoEntregasController implements HttpHandler {
+    private static final int MAXIMO_ERROS_DETALHADOS = 20;
+    // limites de entrega.pedido_id VARCHAR(50) e entrega.peso_kg NUMERIC(6,2)
+    private static final int TAMANHO_MAXIMO_PEDIDO_ID = 50;
+    private static final BigDecimal PESO_MAXIMO_KG = new BigDecimal("9999.99");
+
+    private final ObjectMapper mapper;
+    private final EntregaDao entregaDao;
+
+    public ImportacaoEntregasController(ObjectMapper mapper, EntregaDao entregaDao) {
+        this.mapper = Objects.requireNonNull(mapper, "mapper nao pode ser nulo");
+        this.entregaDao = Objects.requireNonNull(entregaDao, "entregaDao nao pode ser nulo");
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                writeJson(exchange, 405, new ErrorResponse("Metodo nao permitido", "Use POST"));
+                return;
+            }
+
+            Formato formato = formatoDe(exchange.getRequestHeaders().getFirst("Content-Type"));
+            if (formato == null) {
+                writeJson(exchange, 415, new ErrorResponse("Formato nao suportado", "Use text/csv ou application/x-ndjson"));
+                return;
+            }
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+                LeitorEntregas leitor = formato == Formato.CSV ? new LeitorCsv(reader) : new LeitorNdjson(reader);
+                long aceitas = entregaDao.copiar(leitor);
+                writeJson(exchange, 200, new ImportacaoResponse(aceitas, leitor.validas - aceitas, leitor.rejeitadas, leitor.erros));
+            } catch (IllegalArgumentException e) {
+                writeJson(exchange, 422, new ErrorResponse("Dados invalidos", e.getMessage()));
+            } catch (UncheckedIOException e) {
+                writeJson(exchange, 400, new ErrorResponse("Falha ao ler o corpo", e.getCause().getMessage()));
+            } catch (SQLException e) {
+                e.printStackTrace();
+                writeJson(exchange, 500, new ErrorResponse("Erro no banco de dados", e.getMessage()));
+            } catch (Exception e) {
+                e.printStackTrace();
+                writeJson(exchange, 500, new ErrorResponse("Erro interno", e.getMessage()));
+            }
+        }
+    }
+
+    private static Formato formatoDe(String contentType) {
+        String tipo = Optional.ofNullable(contentType)
+            .map(valor -> valor.split(";", 2)[0].trim().toLowerCase(Locale.ROOT))
+            .orElse("");
+        return switch (tipo) {
+            case "text/csv" -> Formato.CSV;
+            case "application/x-ndjson", "application/ndjson", "application/jsonl" -> Formato.NDJSON;
+            default -> null;
+        };
+    }
+
+    private enum Formato { CSV, NDJSON }
+
+    /**
+     * Iterador preguicoso sobre as linhas do corpo: cada chamada le apenas o necessario para achar a
+     * proxima linha valida, registrando as rejeitadas pelo caminho.
+     */
+    private abstract static class LeitorEntregas implements Iterator<EntregaRecord> {
+        private final BufferedReader reader;
+        private final List<LinhaRejeitada> erros = new ArrayList<>();
+        private long linha;
+        private long rejeitadas;
+        private long validas;
+        private EntregaRecord proxima;
+        private boolean fim;
+
+        LeitorEntregas(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        abstract EntregaRecord converter(String conteudo, long numeroLinha);
+
+        String lerLinha() {
+            try {
+                String conteudo = reader.readLine();
+                if (conteudo == null) {
+                    return null;
+                }
+                if (++linha == 1 && conteudo.startsWith("\uFEFF")) {
+                    conteudo = conteudo.substring(1);
+                }
+                return conteudo;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (proxima == null && !fim) {
+                String conteudo = lerLinha();
+                if (conteudo == null) {
+                    fim = true;
+                } else if (!conteudo.isBlank()) {
+                    try {
+                        proxima = converter(conteudo, linha);
+                    } catch (IllegalArgumentException e) {
+                        rejeitar(linha, e.getMessage());
+                    }
+                }
+            }
+            return proxima != null;
+        }
+
+        @Override
+        public EntregaRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            EntregaRecord atual = proxima;
+            proxima = null;
+            validas++;
+            return atual;
+        }
+
+        private void rejeitar(long numeroLinha, String motivo) {
+            rejeitadas++;
+            if (erros.size() < MAXIMO_ERROS_DETALHADOS) {
+                erros.add(new LinhaRejeitada(numeroLinha, motivo));
+            }
+        }
+    }
+
+    private static final class LeitorCsv extends LeitorEntregas {
+        private final Map<String, Integer> colunas;
+
+        LeitorCsv(BufferedReader reader) {
+            super(reader);
+            String primeira = lerLinha();
+            if (primeira == null) {
+                throw new IllegalArgumentException("CSV sem cabecalho");
+            }
+            this.colunas = cabecalho(dividirCsv(primeira));
+        }
+
+        @Override
+        EntregaRecord converter(String conteudo, long numeroLinha) {
+            List<String> campos = dividirCsv(conteudo);
+            return montar(
+                campo(campos, "pedido_id"),
+                campo(campos, "peso_kg"),
+                campo(campos, "origem_x"),
+                campo(campos, "origem_y"),
+                campo(campos, "destino_x"),
+                campo(campos, "destino_y"),
+                campo(campos, "prioridade")
+            );
+        }
+
+        private static Map<String, Integer> cabecalho(List<String> campos) {
+            Map<String, Integer> indices = new HashMap<>();
+            for (int i = 0; i < campos.size(); i++) {
+                String nome = campos.get(i).trim().toLowerCase(Locale.ROOT);
+                indices.put(nome, i);
+            }
+            for (String obrigatoria : List.of("pedido_id", "peso_kg", "destino_x", "destino_y", "prioridade")) {
+                if (!indices.containsKey(obrigatoria)) {
+                    throw new IllegalArgumentException("Cabecalho CSV sem a coluna " + obrigatoria);
+                }
+            }
+            return indices;
+        }
+
+        private String campo(List<String> campos, String nome) {
+            Integer indice = colunas.get(nome);
+            if (indice == null || indice >= campos.size()) {
+                return null;
+            }
+            String valor = campos.get(indice).trim();
+            return valor.isEmpty() ? null : valor;
+        }
+
+        /**
+         * Divide uma linha CSV respeitando aspas duplas e aspas escapadas ({@code ""}). Campos com
+         * quebra de linha nao sao suportados.
+         */
+        private static List<String> dividirCsv(String conteudo) {
+            List<String> campos = new ArrayList<>();
+            StringBuilder atual = new StringBuilder();
+            boolean entreAspas = false;
+            for (int i = 0; i < conteudo.length(); i++) {
+                char c = conteudo.charAt(i);
+                if (entreAspas) {
+                    if (c == '"' && i + 1 < conteudo.length() && conteudo.charAt(i + 1) == '"') {
+                        atual.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        entreAspas = false;
+                    } else {
+                        atual.append(c);
+                    }
+                } else if (c == '"') {
+                    entreAspas = true;
+                } else if (c == ',') {
+                    campos.add(atual.toString());
+                    atual.setLength(0);
+                } else {
+                    atual.append(c);
+                }
+            }
+            if (entreAspas) {
+                throw new IllegalArgumentException("Aspas nao fechadas");
+            }
+            campos.add(atual.toString());
+            return campos;
+        }
+    }
+
+    private final class LeitorNdjson extends LeitorEntregas {
+
+        LeitorNdjson(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        EntregaRecord converter(String conteudo, long numeroLinha) {
+            JsonNode no;
+            try {
+                no = mapper.readTree(conteudo);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("JSON invalido: " + Optional.ofNullable(e.getOriginalMessage()).orElse(e.getMessage()));
+            }
+            if (no == null || !no.isObject()) {
+                throw new IllegalArgumentException("Linha deve ser um objeto JSON");
+            }
+            return montar(
+                texto(no, "pedidoId"),
+                texto(no, "pesoKg"),
+                texto(no, "origemX"),
+                texto(no, "origemY"),
+                texto(no, "destinoX"),
+                texto(no, "destinoY"),
+                texto(no, "prioridade")
+            );
+        }
+
+        private static String texto(JsonNode no, String campo) {
+            JsonNode valor = no.get(campo);
+            if (valor == null || valor.isNull()) {
+                return null;
+            }
+            String texto = valor.asText().trim();
+            return texto.isEmpty() ? null : texto;
+        }
+    }
+
+    private static EntregaRecord montar(
+        String pedidoId,
+        String peso,
+        String origemX,
+        String origemY,
+        String destinoX,
+        String destinoY,
+        String prioridade
+    ) {
+        if (pedidoId == null) {
+            throw new IllegalArgumentException("Pedido sem identificador");
+        }
+        if (pedidoId.codePointCount(0, pedidoId.length()) > TAMANHO_MAXIMO_PEDIDO_ID) {
+            throw new IllegalArgumentException("Identificador do pedido excede " + TAMANHO_MAXIMO_PEDIDO_ID + " caracteres");
+        }
+        if (pedidoId.indexOf('\0') >= 0) {
+            throw new IllegalArgumentException("Identificador do pedido com caractere nulo");
+        }
+        double pesoKg = Optional.ofNullable(peso)
+            .map(valor -> numero(valor, "peso"))
+            .filter(valor -> valor > 0)
+            .orElseThrow(() -> new IllegalArgumentException("Pedido " + pedidoId + " sem peso valido"));
+        // o banco arredonda para duas casas antes de checar a precisao
+        if (!Double.isFinite(pesoKg) || BigDecimal.valueOf(pesoKg).setScale(2, RoundingMode.HALF_UP).compareTo(PESO_MAXIMO_KG) > 0) {
+            throw new IllegalArgumentException("Pedido " + pedidoId + " com peso acima de " + PESO_MAXIMO_KG + " kg");
+        }
+        return new EntregaRecord(
+            null,
+            pedidoId,
+            pesoKg,
+            origemX == null ? 0 : toCoordinate(origemX, "origem_x"),
+            origemY == null ? 0 : toCoordinate(origemY, "origem_y"),
+            toCoordinate(destinoX, "destino_x"),
+            toCoordinate(destinoY, "destino_y"),
+            prioridadeToInt(prioridade),
+            null,
+            null,
+            null
+        );
+    }
+
+    private static double numero(String valor, String campo) {
+        try {
+            return Double.parseDouble(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor de " + campo + " invalido: " + valor);
+        }
+    }
+
+    private static int toCoordinate(String valor, String campo) {
+        if (valor == null) {
+            throw new IllegalArgumentException("Pedido sem coordenada " + campo);
+        }
+        double resolved = numero(valor, campo);
+        if (!Double.isFinite(resolved)) {
+            throw new IllegalArgumentException("Coordenada " + campo + " invalida");
+        }
+        long arredondado = Math.round(resolved);
+        if (arredondado < Integer.MIN_VALUE || arredondado > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Coordenada " + campo + " fora do intervalo suportado");
+        }
+        return (int) arredondado;
+    }
+
+    private static int prioridadeToInt(String valor) {
+        if (valor == null) {
+            throw new IllegalArgumentException("Pedido sem prioridade");
+        }
+        return switch (valor.toUpperCase(Locale.ROOT)) {
+            case "ALTA", "3" -> 3;
+            case "MEDIA", "2" -> 2;
+            case "BAIXA", "1" -> 1;
+            default -> throw new IllegalArgumentException("Prioridade invalida: " + valor);
+        };
+    }
+
+    private void writeJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] payload = mapper.writeValueAsBytes(body);
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, payload.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(payload);
+        }
+    }
+
+    private record ErrorResponse(String erro, String detalhes) {}
+}
@@ -0,0 +1,162 @@
+package com.drone.simulador.api;
+
+import com.drone.simulador.api.dto.JobPlanejamentoResponse;
+import com.drone.simulador.api.dto.JobPlanejamentoResponse.ErroResponse;
+import com.drone.simulador.api.dto.PlanejamentoRequest;
+import com.drone.simulador.api.dto.PlanejamentoResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executa planejamentos fora da thread HTTP, em um pool fixo de workers com fila limitada, e guarda o
+ * estado de cada job. Jobs concluidos expiram apos o {@code ttl}; acima de {@code maximoJobs} os
+ * concluidos mais antigos sao descartados primeiro, e se nenhum puder sair a submissao e recusada.
+ */
+public final class JobsPlanejamento implements AutoCloseable {
+
+    public enum Estado { NA_FILA, EXECUTANDO, CONCLUIDO, FALHOU }
+
+    private final PlanejamentoController planejamento;
+    private final ThreadPoolExecutor workers;
+    private final int maximoJobs;
+    private final Duration ttl;
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+
+    public JobsPlanejamento(PlanejamentoController planejamento, int workers, int capacidadeFila, int maximoJobs, Duration ttl) {
+        if (workers <= 0 || capacidadeFila <= 0 || maximoJobs <= 0) {
+            throw new IllegalArgumentException("Workers, fila e maximo de jobs devem ser positivos");
+        }
+        this.planejamento = Objects.requireNonNull(planejamento, "planejamento nao pode ser nulo");
+        this.maximoJobs = maximoJobs;
+        this.ttl = Objects.requireNonNull(ttl, "ttl nao pode ser nulo");
+        AtomicInteger sequencia = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+            workers,
+            workers,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(capacidadeFila),
+            tarefa -> {
+                Thread thread = new Thread(tarefa, "planejamento-job-" + sequencia.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+    }
+
+    /**
+     * Enfileira o planejamento e devolve o estado inicial do job.
+     *
+     * @throws RejectedExecutionException quando a fila de workers ou o registro de jobs estao cheios
+     */
+    public JobPlanejamentoResponse submeter(PlanejamentoRequest request) {
+        Job job = new Job(UUID.randomUUID().toString(), Instant.now());
+        synchronized (jobs) {
+            limpar(job.criadoEm);
+            if (jobs.size() >= maximoJobs) {
+                throw new RejectedExecutionException("Limite de " + maximoJobs + " jobs em andamento");
+            }
+            jobs.put(job.id, job);
+        }
+        try {
+            workers.execute(() -> executar(job, request));
+        } catch (RejectedExecutionException e) {
+            synchronized (jobs) {
+                jobs.remove(job.id);
+            }
+            throw new RejectedExecutionException("Fila de planejamento cheia", e);
+        }
+        return job.foto();
+    }
+
+    public Optional<JobPlanejamentoResponse> buscar(String id) {
+        synchronized (jobs) {
+            limpar(Instant.now());
+            return Optional.ofNullable(jobs.get(id)).map(Job::foto);
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    private void executar(Job job, PlanejamentoRequest request) {
+        job.estado = Estado.EXECUTANDO;
+        try {
+            job.resultado = planejamento.processar(request, job);
+            job.progresso = 1.0;
+            job.concluir(Estado.CONCLUIDO);
+        } catch (Throwable e) {
+            // inclui Error: um job que parou de executar precisa terminar como FALHOU, nunca EXECUTANDO
+            ErroPlanejamento erro = ErroPlanejamento.de(e);
+            job.erro = new ErroResponse(erro.status(), erro.erro(), erro.detalhes());
+            job.concluir(Estado.FALHOU);
+        }
+    }
+
+    /**
+     * Remove os jobs concluidos ha mais de {@code ttl} e, se ainda houver excesso, os concluidos mais
+     * antigos. Jobs na fila ou em execucao nunca sao removidos.
+     */
+    private void limpar(Instant agora) {
+        Instant limite = agora.minus(ttl);
+        int excesso = jobs.size() - maximoJobs + 1;
+        Iterator<Job> iterador = jobs.values().iterator();
+        while (iterador.hasNext()) {
+            Job job = iterador.next();
+            Instant concluidoEm = job.concluidoEm;
+            if (concluidoEm == null) {
+                continue;
+            }
+            if (concluidoEm.isBefore(limite) || excesso > 0) {
+                iterador.remove();
+                excesso--;
+            }
+        }
+    }
+
+    private static final class Job implements ProgressoPlanejamento {
+        private final String id;
+        private final Instant criadoEm;
+        private volatile Estado estado = Estado.NA_FILA;
+        private volatile String etapa = Estado.NA_FILA.name();
+        private volatile double progresso;
+        private volatile PlanejamentoResponse resultado;
+        private volatile ErroResponse erro;
+        private volatile Instant concluidoEm;
+
+        Job(String id, Instant criadoEm) {
+            this.id = id;
+            this.criadoEm = criadoEm;
+        }
+
+        @Override
+        public void informar(String etapa, double fracao) {
+            this.etapa = etapa;
+            this.progresso = fracao;
+        }
+
+        void concluir(Estado estadoFinal) {
+            // o estado e gravado por ultimo: quem le CONCLUIDO ou FALHOU ja enxerga resultado ou erro
+            this.concluidoEm = Instant.now();
+            this.etapa = estadoFinal.name();
+            this.estado = estadoFinal;
+        }
+
+        JobPlanejamentoResponse foto() {
+            return new JobPlanejamentoResponse(id, estado.name(), etapa, progresso, criadoEm, concluidoEm, resultado, erro);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.drone.simulador.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limita quantas requisicoes um handler atende ao mesmo tempo. Acima do limite responde 503 com
+ * {@code Retry-After} em vez de enfileirar, para que rajadas nao prendam threads nem conexoes do banco.
+ */
+public final class LimiteConcorrencia implements HttpHandler {
+    private final String nome;
+    private final int limite;
+    private final long retryAfterSegundos;
+    private final HttpHandler destino;
+    private final Semaphore permissoes;
+    private final LongAdder rejeitadas = new LongAdder();
+
+    public LimiteConcorrencia(String nome, int limite, long retryAfterSegundos, HttpHandler destino) {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("Limite de concorrencia deve ser positivo");
+        }
+        this.nome = Objects.requireNonNull(nome, "nome nao pode ser nulo");
+        this.limite = limite;
+        this.retryAfterSegundos = Math.max(1, retryAfterSegundos);
+        this.destino = Objects.requireNonNull(destino, "destino nao pode ser nulo");
+        this.permissoes = new Semaphore(limite);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!permissoes.tryAcquire()) {
+            rejeitadas.increment();
+            rejeitar(exchange);
+            return;
+        }
+        try {
+            destino.handle(exchange);
+        } finally {
+            permissoes.release();
+        }
+    }
+
+    public String nome() {
+        return nome;
+    }
+
+    public int limite() {
+        return limite;
+    }
+
+    public int emUso() {
+        return limite - permissoes.availablePermits();
+    }
+
+    public long rejeitadas() {
+        return rejeitadas.sum();
+    }
+
+    private void rejeitar(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] payload = ("{\"erro\":\"Servidor ocupado\",\"detalhes\":\"Limite de " + limite
+                + " requisicoes simultaneas em " + nome + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfterSegundos));
+            exchange.sendResponseHeaders(503, payload.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(payload);
+            }
+        }
+    }
+}
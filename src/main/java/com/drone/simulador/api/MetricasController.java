@@ -0,0 +1,75 @@
+package com.drone.simulador.api;
+
+import com.drone.simulador.api.dto.MetricasResponse;
+import com.drone.simulador.api.dto.MetricasResponse.CachePlanosResponse;
+import com.drone.simulador.api.dto.MetricasResponse.CacheRotasResponse;
+import com.drone.simulador.api.dto.MetricasResponse.LimiteResponse;
+import com.drone.simulador.api.dto.MetricasResponse.PipelineResponse;
+import com.drone.simulador.domain.AgendarDrone;
+import com.drone.simulador.domain.EstatisticasCache;
+import com.drone.simulador.infra.EstatisticasPool;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Expoe em JSON a ocupacao do pool de conexoes, os acertos dos caches de rotas e de planos do
+ * planejamento, as filas do pipeline (quando ativo) e o uso dos limites de concorrencia de cada endpoint.
+ */
+public final class MetricasController implements HttpHandler {
+    private final ObjectMapper mapper;
+    private final AgendarDrone agendador;
+    private final Supplier<EstatisticasPool> pool;
+    private final Supplier<CachePlanosResponse> cachePlanos;
+    private final Supplier<PipelineResponse> pipeline;
+    private final Supplier<List<LimiteConcorrencia>> limites;
+
+    public MetricasController(
+        ObjectMapper mapper,
+        AgendarDrone agendador,
+        Supplier<EstatisticasPool> pool,
+        Supplier<CachePlanosResponse> cachePlanos,
+        Supplier<PipelineResponse> pipeline,
+        Supplier<List<LimiteConcorrencia>> limites
+    ) {
+        this.mapper = Objects.requireNonNull(mapper, "mapper nao pode ser nulo");
+        this.agendador = Objects.requireNonNull(agendador, "agendador nao pode ser nulo");
+        this.pool = Objects.requireNonNull(pool, "pool nao pode ser nulo");
+        this.cachePlanos = Objects.requireNonNull(cachePlanos, "cachePlanos nao pode ser nulo");
+        this.pipeline = Objects.requireNonNull(pipeline, "pipeline nao pode ser nulo");
+        this.limites = Objects.requireNonNull(limites, "limites nao pode ser nulo");
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            EstatisticasCache cache = agendador.estatisticasCache();
+            MetricasResponse response = new MetricasResponse(
+                pool.get(),
+                new CacheRotasResponse(cache.acertos(), cache.falhas(), cache.despejos(), cache.taxaAcerto()),
+                cachePlanos.get(),
+                pipeline.get(),
+                limites.get().stream()
+                    .map(limite -> new LimiteResponse(limite.nome(), limite.limite(), limite.emUso(), limite.rejeitadas()))
+                    .toList()
+            );
+            byte[] payload = mapper.writeValueAsBytes(response);
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, payload.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(payload);
+            }
+        }
+    }
+}
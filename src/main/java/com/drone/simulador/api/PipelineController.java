@@ -0,0 +1,58 @@
+package com.drone.simulador.api;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * {@code GET /api/pipeline/viagens} transmite como Server-Sent Events cada viagem que o
+ * {@link PipelinePlanejamento} grava no banco. Sem eventos, um comentario periodico mantem a conexao
+ * aberta e revela clientes que ja sairam.
+ */
+public final class PipelineController implements HttpHandler {
+    private static final Duration INTERVALO_PING = Duration.ofSeconds(15);
+    private static final byte[] PING = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final PipelinePlanejamento pipeline;
+
+    public PipelineController(PipelinePlanejamento pipeline) {
+        this.pipeline = Objects.requireNonNull(pipeline, "pipeline nao pode ser nulo");
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("Content-Type", "text/event-stream; charset=utf-8");
+            headers.set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+
+            PipelinePlanejamento.Assinante assinante = pipeline.assinar();
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(PING);
+                out.flush();
+                while (true) {
+                    byte[] evento = assinante.proximo(INTERVALO_PING);
+                    if (evento == PipelinePlanejamento.FIM) {
+                        return;
+                    }
+                    out.write(evento == null ? PING : evento);
+                    out.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                pipeline.remover(assinante);
+            }
+        }
+    }
+}
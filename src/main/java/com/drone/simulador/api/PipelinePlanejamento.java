@@ -0,0 +1,450 @@
+package com.drone.simulador.api;
+
+import com.drone.simulador.api.dto.MetricasResponse.PipelineResponse;
+import com.drone.simulador.api.dto.ViagemEmitidaResponse;
+import com.drone.simulador.dao.CacheCadastro;
+import com.drone.simulador.dao.model.DroneRecord;
+import com.drone.simulador.dao.model.EntregaRecord;
+import com.drone.simulador.dao.model.ViagemRecord;
+import com.drone.simulador.domain.AgendarDrone;
+import com.drone.simulador.domain.MelhoriaRota;
+import com.drone.simulador.domain.ModoDesvio;
+import com.drone.simulador.domain.Obstaculo;
+import com.drone.simulador.domain.Pedido;
+import com.drone.simulador.domain.PlanejamentoIncremental;
+import com.drone.simulador.domain.Viagem;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Planejamento continuo em tres estagios ligados por filas limitadas. O leitor acompanha as entregas
+ * pendentes do {@link CacheCadastro}; o planejador as agrupa em micro-lotes, fechados por quantidade ou
+ * pela janela de tempo, e as encaixa no {@link PlanejamentoIncremental}; o gravador registra as viagens no
+ * banco e as publica aos assinantes SSE.
+ *
+ * <p>Cada viagem fica aberta por {@code retencao} a partir de sua criacao, recebendo entregas dos lotes
+ * seguintes, e so entao e despachada ao gravador. Quando os drones cadastrados mudam, as viagens abertas
+ * sao despachadas e o plano recomeca com os drones novos.
+ *
+ * <p>Uma fila cheia bloqueia o estagio anterior, e o que o leitor ainda nao leu continua pendente no
+ * banco. Assinantes lentos nao seguram o pipeline: quem enche o proprio buffer e desconectado.
+ */
+public final class PipelinePlanejamento implements AutoCloseable {
+
+    static final byte[] FIM = new byte[0];
+
+    private final CacheCadastro cadastro;
+    private final AgendarDrone agendador;
+    private final List<Obstaculo> obstaculos;
+    private final ObjectMapper mapper;
+    private final int tamanhoLote;
+    private final Duration janela;
+    private final Duration retencao;
+    private final Duration intervaloLeitura;
+    private final int bufferAssinante;
+    private final BlockingQueue<EntregaRecord> entregas;
+    private final BlockingQueue<Lote> lotes;
+    private final Set<Long> emAndamento = ConcurrentHashMap.newKeySet();
+    private final List<Assinante> assinantes = new CopyOnWriteArrayList<>();
+    private final List<Thread> estagios;
+    private final AtomicLong lotesGravados = new AtomicLong();
+    private final AtomicLong entregasPlanejadas = new AtomicLong();
+    private final AtomicLong viagensEmitidas = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+    // estado do planejador, acessado apenas pela sua thread
+    private final Map<Viagem, Long> abertas = new LinkedHashMap<>();
+    private final Map<Long, EntregaRecord> entregasPorPedido = new HashMap<>();
+    private final Map<Long, Long> pedidoIdMap = new HashMap<>();
+    private PlanejamentoIncremental plano;
+    private List<DroneRecord> dronesDoPlano = List.of();
+    private volatile boolean releitura;
+    private volatile boolean ativo = true;
+
+    public PipelinePlanejamento(
+        CacheCadastro cadastro,
+        AgendarDrone agendador,
+        List<Obstaculo> obstaculos,
+        ObjectMapper mapper,
+        int tamanhoLote,
+        Duration janela,
+        Duration retencao,
+        Duration intervaloLeitura,
+        int capacidadeFilaEntregas,
+        int capacidadeFilaLotes,
+        int bufferAssinante
+    ) {
+        if (tamanhoLote <= 0 || capacidadeFilaEntregas <= 0 || capacidadeFilaLotes <= 0 || bufferAssinante <= 0) {
+            throw new IllegalArgumentException("Lote, filas e buffer dos assinantes devem ser positivos");
+        }
+        this.cadastro = Objects.requireNonNull(cadastro, "cadastro nao pode ser nulo");
+        this.agendador = Objects.requireNonNull(agendador, "agendador nao pode ser nulo");
+        this.obstaculos = List.copyOf(Objects.requireNonNull(obstaculos, "obstaculos nao pode ser nulo"));
+        this.mapper = Objects.requireNonNull(mapper, "mapper nao pode ser nulo");
+        this.tamanhoLote = tamanhoLote;
+        this.janela = Objects.requireNonNull(janela, "janela nao pode ser nulo");
+        this.retencao = Objects.requireNonNull(retencao, "retencao nao pode ser nulo");
+        if (retencao.isNegative()) {
+            throw new IllegalArgumentException("Retencao das viagens nao pode ser negativa");
+        }
+        this.intervaloLeitura = Objects.requireNonNull(intervaloLeitura, "intervaloLeitura nao pode ser nulo");
+        this.bufferAssinante = bufferAssinante;
+        this.entregas = new ArrayBlockingQueue<>(capacidadeFilaEntregas);
+        this.lotes = new ArrayBlockingQueue<>(capacidadeFilaLotes);
+        this.estagios = List.of(
+            estagio("pipeline-leitor", this::ler),
+            estagio("pipeline-planejador", this::planejar),
+            estagio("pipeline-gravador", this::gravar)
+        );
+    }
+
+    public void iniciar() {
+        estagios.forEach(Thread::start);
+    }
+
+    /**
+     * Registra um assinante das viagens emitidas a partir de agora.
+     */
+    Assinante assinar() {
+        Assinante assinante = new Assinante(bufferAssinante);
+        assinantes.add(assinante);
+        if (!ativo) {
+            remover(assinante);
+        }
+        return assinante;
+    }
+
+    void remover(Assinante assinante) {
+        assinantes.remove(assinante);
+        assinante.encerrar();
+    }
+
+    PipelineResponse estatisticas() {
+        return new PipelineResponse(
+            entregas.size(),
+            lotes.size(),
+            lotesGravados.get(),
+            entregasPlanejadas.get(),
+            viagensEmitidas.get(),
+            falhas.get(),
+            assinantes.size()
+        );
+    }
+
+    @Override
+    public void close() {
+        ativo = false;
+        estagios.forEach(Thread::interrupt);
+        for (Assinante assinante : assinantes) {
+            remover(assinante);
+        }
+    }
+
+    private Thread estagio(String nome, Estagio corpo) {
+        Thread thread = new Thread(() -> {
+            try {
+                while (ativo) {
+                    corpo.executar();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, nome);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Enfileira as entregas pendentes ainda nao encaminhadas, relendo a copia apenas quando ela mudou ou
+     * quando um lote devolveu entregas.
+     */
+    private void ler() throws InterruptedException {
+        long versao = -1;
+        while (ativo) {
+            long atual = cadastro.versao();
+            if (atual != versao || releitura) {
+                versao = atual;
+                releitura = false;
+                List<EntregaRecord> novas = new ArrayList<>();
+                try {
+                    cadastro.percorrerPendentes(entrega -> {
+                        if (!emAndamento.contains(entrega.id())) {
+                            novas.add(entrega);
+                        }
+                    });
+                } catch (SQLException | RuntimeException e) {
+                    falhas.incrementAndGet();
+                    System.err.printf("Pipeline: falha ao ler entregas pendentes: %s%n", e.getMessage());
+                    releitura = true;
+                }
+                for (EntregaRecord entrega : novas) {
+                    if (emAndamento.add(entrega.id())) {
+                        entregas.put(entrega);
+                    }
+                }
+            }
+            TimeUnit.MILLISECONDS.sleep(intervaloLeitura.toMillis());
+        }
+    }
+
+    /**
+     * Espera entregas ate a proxima viagem completar a retencao, encaixa o micro-lote que chegar no plano
+     * e despacha as viagens vencidas.
+     */
+    private void planejar() throws InterruptedException {
+        EntregaRecord primeira;
+        if (abertas.isEmpty()) {
+            primeira = entregas.take();
+        } else {
+            long limite = abertas.values().iterator().next() + retencao.toNanos();
+            primeira = entregas.poll(Math.max(limite - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        }
+        if (primeira != null) {
+            encaixar(fecharLote(primeira));
+        }
+        despachar(false);
+    }
+
+    /**
+     * Fecha um micro-lote com ate {@code tamanhoLote} entregas ou o que chegar dentro da janela contada a
+     * partir da primeira.
+     */
+    private List<EntregaRecord> fecharLote(EntregaRecord primeira) throws InterruptedException {
+        List<EntregaRecord> lote = new ArrayList<>(tamanhoLote);
+        lote.add(primeira);
+        long limite = System.nanoTime() + janela.toNanos();
+        while (lote.size() < tamanhoLote) {
+            if (entregas.drainTo(lote, tamanhoLote - lote.size()) > 0) {
+                continue;
+            }
+            long resta = limite - System.nanoTime();
+            EntregaRecord proxima = resta > 0 ? entregas.poll(resta, TimeUnit.NANOSECONDS) : null;
+            if (proxima == null) {
+                break;
+            }
+            lote.add(proxima);
+        }
+        return lote;
+    }
+
+    /**
+     * Encaixa as entregas ainda pendentes do lote nas viagens abertas, ou em viagens novas, sobre os
+     * drones atuais.
+     */
+    private void encaixar(List<EntregaRecord> lote) throws InterruptedException {
+        List<EntregaRecord> vigentes = new ArrayList<>(lote.size());
+        List<EntregaRecord> atribuidas = new ArrayList<>();
+        for (EntregaRecord entrega : lote) {
+            (cadastro.pendente(entrega.id()) ? vigentes : atribuidas).add(entrega);
+        }
+        liberar(atribuidas, false);
+        if (vigentes.isEmpty()) {
+            return;
+        }
+        try {
+            List<DroneRecord> droneRecords = cadastro.drones();
+            if (plano == null || !droneRecords.equals(dronesDoPlano)) {
+                despachar(true);
+                plano = null;
+                if (droneRecords.isEmpty()) {
+                    throw new IllegalStateException("Nenhum drone cadastrado");
+                }
+                plano = new PlanejamentoIncremental(
+                    agendador,
+                    droneRecords.stream().map(ConversaoPlanejamento::toDrone).toList(),
+                    obstaculos,
+                    MelhoriaRota.NENHUMA,
+                    ModoDesvio.PERPENDICULAR
+                );
+                dronesDoPlano = droneRecords;
+            }
+            List<Pedido> pedidos = new ArrayList<>(vigentes.size());
+            for (EntregaRecord entrega : vigentes) {
+                Pedido pedido = ConversaoPlanejamento.toPedido(entrega, pedidoIdMap);
+                entregasPorPedido.put(pedido.getId(), entrega);
+                pedidos.add(pedido);
+            }
+            long agora = System.nanoTime();
+            Set<Long> encaixados = new HashSet<>();
+            for (Viagem viagem : plano.adicionar(pedidos)) {
+                abertas.putIfAbsent(viagem, agora);
+                viagem.getPedidos().forEach(pedido -> encaixados.add(pedido.getId()));
+            }
+            List<EntregaRecord> sobras = new ArrayList<>();
+            for (Pedido pedido : pedidos) {
+                if (!encaixados.contains(pedido.getId())) {
+                    pedidoIdMap.remove(pedido.getId());
+                    sobras.add(entregasPorPedido.remove(pedido.getId()));
+                }
+            }
+            liberar(sobras, false);
+        } catch (SQLException | RuntimeException e) {
+            descartarPlano(vigentes, e);
+            // evita repetir a mesma falha a cada leitura
+            TimeUnit.MILLISECONDS.sleep(janela.toMillis());
+        }
+    }
+
+    /**
+     * Encerra no plano as viagens que completaram a retencao, ou todas, e as entrega ao gravador.
+     */
+    private void despachar(boolean todas) throws InterruptedException {
+        long limite = System.nanoTime() - retencao.toNanos();
+        List<Viagem> prontas = new ArrayList<>();
+        for (Iterator<Map.Entry<Viagem, Long>> it = abertas.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Viagem, Long> aberta = it.next();
+            if (!todas && aberta.getValue() - limite > 0) {
+                break;
+            }
+            prontas.add(aberta.getKey());
+            it.remove();
+        }
+        if (prontas.isEmpty()) {
+            return;
+        }
+        List<EntregaRecord> loteEntregas = new ArrayList<>();
+        Map<Long, Long> lotePedidoIdMap = new HashMap<>();
+        for (Viagem viagem : prontas) {
+            plano.encerrar(viagem);
+            for (Pedido pedido : viagem.getPedidos()) {
+                loteEntregas.add(entregasPorPedido.remove(pedido.getId()));
+                lotePedidoIdMap.put(pedido.getId(), pedidoIdMap.remove(pedido.getId()));
+            }
+        }
+        lotes.put(new Lote(loteEntregas, prontas, dronesDoPlano, lotePedidoIdMap));
+    }
+
+    /**
+     * Abandona o plano aberto depois de uma falha: nada dele foi gravado, entao suas entregas e as do
+     * lote voltam ao leitor.
+     */
+    private void descartarPlano(List<EntregaRecord> vigentes, Exception e) {
+        Map<Long, EntregaRecord> devolvidas = new LinkedHashMap<>();
+        entregasPorPedido.values().forEach(entrega -> devolvidas.put(entrega.id(), entrega));
+        vigentes.forEach(entrega -> devolvidas.put(entrega.id(), entrega));
+        abertas.clear();
+        entregasPorPedido.clear();
+        pedidoIdMap.clear();
+        plano = null;
+        dronesDoPlano = List.of();
+        falhar(new ArrayList<>(devolvidas.values()), e);
+    }
+
+    private void gravar() throws InterruptedException {
+        Lote lote = lotes.take();
+        try {
+            List<ViagemRecord> registradas = cadastro.registrarViagens(
+                ConversaoPlanejamento.toViagemRecords(lote.viagens(), lote.droneRecords(), lote.pedidoIdMap())).viagens();
+            lotesGravados.incrementAndGet();
+            entregasPlanejadas.addAndGet(lote.entregas().size());
+            viagensEmitidas.addAndGet(registradas.size());
+            publicar(lote, registradas);
+            liberar(lote.entregas(), false);
+        } catch (SQLException | RuntimeException e) {
+            falhar(lote.entregas(), e);
+        }
+    }
+
+    private void publicar(Lote lote, List<ViagemRecord> registradas) {
+        if (assinantes.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < registradas.size(); i++) {
+            Viagem viagem = lote.viagens().get(i);
+            ViagemRecord registro = registradas.get(i);
+            ViagemEmitidaResponse evento = new ViagemEmitidaResponse(
+                registro.id(),
+                viagem.getDrone().getId(),
+                viagem.getPesoTotalKg(),
+                viagem.getDistanciaKm(),
+                viagem.getTempoHoras(),
+                registro.entregaIds(),
+                viagem.getRota().stream().map(p -> new double[] { p.x(), p.y() }).toList(),
+                registro.criadoEm()
+            );
+            byte[] bytes;
+            try {
+                bytes = ("id: " + registro.id() + "\nevent: viagem\ndata: " + mapper.writeValueAsString(evento) + "\n\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            } catch (JsonProcessingException e) {
+                falhas.incrementAndGet();
+                continue;
+            }
+            for (Assinante assinante : assinantes) {
+                if (!assinante.fila().offer(bytes)) {
+                    remover(assinante);
+                }
+            }
+        }
+    }
+
+    private void falhar(List<EntregaRecord> lote, Exception e) {
+        falhas.incrementAndGet();
+        System.err.printf("Pipeline: lote de %d entregas devolvido: %s%n", lote.size(), e.getMessage());
+        liberar(lote, true);
+    }
+
+    /**
+     * Devolve as entregas ao leitor; com {@code reler}, as que seguirem pendentes voltam a ser lidas.
+     */
+    private void liberar(List<EntregaRecord> lote, boolean reler) {
+        lote.forEach(entrega -> emAndamento.remove(entrega.id()));
+        if (reler) {
+            releitura = true;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Estagio {
+        void executar() throws InterruptedException;
+    }
+
+    private record Lote(
+        List<EntregaRecord> entregas,
+        List<Viagem> viagens,
+        List<DroneRecord> droneRecords,
+        Map<Long, Long> pedidoIdMap
+    ) {}
+
+    /**
+     * Buffer de eventos SSE ja serializados de um cliente. {@link #FIM} sinaliza o encerramento.
+     */
+    static final class Assinante {
+        private final BlockingQueue<byte[]> fila;
+
+        private Assinante(int capacidade) {
+            this.fila = new ArrayBlockingQueue<>(capacidade);
+        }
+
+        private BlockingQueue<byte[]> fila() {
+            return fila;
+        }
+
+        byte[] proximo(Duration espera) throws InterruptedException {
+            return fila.poll(espera.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        private void encerrar() {
+            // descarta o que nao foi enviado para garantir espaco ao FIM
+            fila.clear();
+            fila.offer(FIM);
+        }
+    }
+}
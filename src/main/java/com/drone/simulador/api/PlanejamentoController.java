@@ -1,24 +1,27 @@
 ﻿package com.drone.simulador.api;
 
+import com.drone.simulador.api.dto.MetricasResponse.CachePlanosResponse;
 import com.drone.simulador.api.dto.PlanejamentoRequest;
 import com.drone.simulador.api.dto.PlanejamentoResponse;
 import com.drone.simulador.api.dto.PlanejamentoResponse.BatteryPassoResponse;
 import com.drone.simulador.api.dto.PlanejamentoResponse.BatteryResponse;
 import com.drone.simulador.api.dto.PlanejamentoResponse.ViagemResponse;
-import com.drone.simulador.dao.DroneDao;
-import com.drone.simulador.dao.EntregaDao;
+import com.drone.simulador.dao.CacheCadastro;
 import com.drone.simulador.dao.model.DroneRecord;
 import com.drone.simulador.dao.model.EntregaRecord;
 import com.drone.simulador.domain.AgendarDrone;
 import com.drone.simulador.domain.BatteryStep;
+import com.drone.simulador.domain.DoisOpt;
 import com.drone.simulador.domain.Drone;
 import com.drone.simulador.domain.DroneBatterySimulation;
 import com.drone.simulador.domain.DroneBatterySimulator;
+import com.drone.simulador.domain.MelhoriaRota;
+import com.drone.simulador.domain.ModoDesvio;
 import com.drone.simulador.domain.Obstaculo;
-import com.drone.simulador.domain.Partida;
+import com.drone.simulador.domain.OrOpt;
 import com.drone.simulador.domain.Pedido;
-import com.drone.simulador.domain.Prioridade;
 import com.drone.simulador.domain.Viagem;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.Headers;
@@ -29,8 +32,9 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
-import java.time.LocalDateTime;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -41,28 +45,51 @@ import java.util.UUID;
 import javax.sql.DataSource;
 
 public final class PlanejamentoController implements HttpHandler {
+    private static final int ORCAMENTO_MELHORIA_PADRAO_MS = 5;
+    private static final int CAPACIDADE_CACHE_PLANOS_PADRAO = 128;
+    private static final Duration TTL_CACHE_PLANOS_PADRAO = Duration.ofSeconds(60);
+    private static final String ORIGEM = "postgres";
+
     private final ObjectMapper mapper;
     private final AgendarDrone agendador;
     private final DroneBatterySimulator batterySimulator;
-    private final DroneDao droneDao;
-    private final EntregaDao entregaDao;
+    private final CacheCadastro cadastro;
+    private final EscritorPlanejamentoJson escritor;
+    private final CachePlanos<Plano> planos;
+    private final String instancia = UUID.randomUUID().toString().substring(0, 8);
 
     public PlanejamentoController(ObjectMapper mapper, DataSource dataSource) {
-        this(mapper, new AgendarDrone(), new DroneBatterySimulator(), new DroneDao(dataSource), new EntregaDao(dataSource));
+        this(
+            mapper,
+            new AgendarDrone(),
+            new DroneBatterySimulator(),
+            new CacheCadastro(dataSource)
+        );
     }
 
     public PlanejamentoController(
         ObjectMapper mapper,
         AgendarDrone agendador,
         DroneBatterySimulator batterySimulator,
-        DroneDao droneDao,
-        EntregaDao entregaDao
+        CacheCadastro cadastro
+    ) {
+        this(mapper, agendador, batterySimulator, cadastro, CAPACIDADE_CACHE_PLANOS_PADRAO, TTL_CACHE_PLANOS_PADRAO);
+    }
+
+    public PlanejamentoController(
+        ObjectMapper mapper,
+        AgendarDrone agendador,
+        DroneBatterySimulator batterySimulator,
+        CacheCadastro cadastro,
+        int capacidadeCachePlanos,
+        Duration ttlCachePlanos
     ) {
         this.mapper = Objects.requireNonNull(mapper, "mapper nao pode ser nulo");
         this.agendador = Objects.requireNonNull(agendador, "agendador nao pode ser nulo");
         this.batterySimulator = Objects.requireNonNull(batterySimulator, "batterySimulator nao pode ser nulo");
-        this.droneDao = Objects.requireNonNull(droneDao, "droneDao nao pode ser nulo");
-        this.entregaDao = Objects.requireNonNull(entregaDao, "entregaDao nao pode ser nulo");
+        this.cadastro = Objects.requireNonNull(cadastro, "cadastro nao pode ser nulo");
+        this.escritor = new EscritorPlanejamentoJson(this.batterySimulator);
+        this.planos = new CachePlanos<>(capacidadeCachePlanos, ttlCachePlanos, this::aindaRegistrado);
     }
 
     @Override
@@ -81,68 +108,162 @@ public final class PlanejamentoController implements HttpHandler {
                 return;
             }
 
+            boolean compacto = aceitaCompacto(exchange.getRequestHeaders());
+            String condicao = exchange.getRequestHeaders().getFirst("If-None-Match");
+            String etag;
+            Plano plano;
             try {
-                PlanejamentoResponse response = processar(requestBody);
-                writeJson(exchange, 200, response);
-            } catch (IllegalArgumentException e) {
-                writeJson(exchange, 422, new ErrorResponse("Dados invalidos", e.getMessage()));
-            } catch (SQLException e) {
-                e.printStackTrace();
-                writeJson(exchange, 500, new ErrorResponse("Erro no banco de dados", e.getMessage()));
+                Requisicao requisicao = normalizar(requestBody);
+                // so um plano guardado e ainda valido para o cadastro atual pode ja ter sido entregue
+                Plano registrado = condicao == null ? null : planos.consultar(requisicao.resumo());
+                String etagRegistrado = registrado == null ? null : etag(requisicao, registrado, compacto);
+                if (etagRegistrado != null && CondicaoEtag.corresponde(condicao, etagRegistrado)) {
+                    writePrecondicaoFalhou(exchange, etagRegistrado);
+                    return;
+                }
+                plano = planos.obter(requisicao.resumo(), () -> planejar(requisicao, ProgressoPlanejamento.NENHUM));
+                etag = etag(requisicao, plano, compacto);
             } catch (Exception e) {
-                e.printStackTrace();
-                writeJson(exchange, 500, new ErrorResponse("Erro interno", e.getMessage()));
+                ErroPlanejamento erro = ErroPlanejamento.de(e);
+                writeJson(exchange, erro.status(), new ErrorResponse(erro.erro(), erro.detalhes()));
+                return;
             }
+            exchange.getResponseHeaders().set("ETag", etag);
+            writeStreaming(exchange, plano, compacto);
         }
     }
 
-    private PlanejamentoResponse processar(PlanejamentoRequest request) throws SQLException {
-        persistPayload(request);
-
-        List<DroneRecord> droneRecords = droneDao.listar();
-        if (droneRecords.isEmpty()) {
-            throw new IllegalArgumentException("Nenhum drone cadastrado");
-        }
-        List<EntregaRecord> entregaRecords = entregaDao.listar();
-        if (entregaRecords.isEmpty()) {
-            throw new IllegalArgumentException("Nenhum pedido cadastrado");
+    /**
+     * Executa {@link #planejar} e monta a resposta completa em memoria, simulando a bateria de cada
+     * viagem. Usado pelos jobs, que guardam o resultado.
+     */
+    PlanejamentoResponse processar(PlanejamentoRequest request, ProgressoPlanejamento progresso) throws SQLException {
+        Requisicao requisicao = normalizar(request);
+        Plano plano = planos.obter(requisicao.resumo(), () -> planejar(requisicao, progresso));
+        List<ViagemResponse> viagensResponse = new ArrayList<>(plano.viagens().size());
+        for (Viagem viagem : plano.viagens()) {
+            progresso.informar("SIMULANDO_BATERIA", 0.8 + 0.2 * viagensResponse.size() / plano.viagens().size());
+            viagensResponse.add(toResponse(viagem, plano.pedidoIdMap()));
         }
+        return new PlanejamentoResponse(ORIGEM, plano.tempoTotal(), viagensResponse);
+    }
 
-        List<Drone> drones = droneRecords.stream().map(this::toDrone).toList();
-        Map<Long, Long> pedidoIdMap = new HashMap<>();
-        List<Pedido> pedidos = entregaRecords.stream()
-            .map(record -> toPedido(record, pedidoIdMap))
-            .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-
-        List<Obstaculo> obstaculos = Optional.ofNullable(request.obstaculos()).orElse(List.of()).stream()
-            .map(this::toObstaculo)
-            .toList();
-
-        List<Viagem> viagens = agendador.planejar(drones, new ArrayList<>(pedidos), obstaculos);
-        double tempoTotal = viagens.stream().mapToDouble(Viagem::getTempoHoras).sum();
-        List<ViagemResponse> viagensResponse = viagens.stream()
-            .map(viagem -> toResponse(viagem, pedidoIdMap))
-            .toList();
-
-        return new PlanejamentoResponse("postgres", tempoTotal, viagensResponse);
+    CachePlanosResponse estatisticasCachePlanos() {
+        return planos.estatisticas();
     }
 
-    private void persistPayload(PlanejamentoRequest request) throws SQLException {
+    /**
+     * Valida o payload e o reduz ao que influencia o plano, sem tocar no banco. O resumo identifica a
+     * requisicao e e a chave do {@link CachePlanos}: drones por identificador, pedidos pelo id derivado
+     * dos seus dados, obstaculos e opcoes. O estado do cadastro entra pela validade do plano guardado.
+     */
+    private Requisicao normalizar(PlanejamentoRequest request) {
         List<PlanejamentoRequest.DronePayload> dronesPayload = Optional.ofNullable(request.drones()).orElse(List.of());
+        List<DroneRecord> drones = new ArrayList<>(dronesPayload.size());
         for (PlanejamentoRequest.DronePayload drone : dronesPayload) {
-            persistDrone(drone);
+            if (drone != null) {
+                drones.add(toDroneRecord(drone));
+            }
         }
 
         List<PlanejamentoRequest.PedidoPayload> pedidosPayload = Optional.ofNullable(request.pedidos()).orElse(List.of());
+        List<EntregaRecord> entregas = new ArrayList<>(pedidosPayload.size());
         for (PlanejamentoRequest.PedidoPayload pedido : pedidosPayload) {
-            persistPedido(pedido);
+            if (pedido != null) {
+                entregas.add(toEntregaRecord(pedido));
+            }
         }
+
+        List<Obstaculo> obstaculos = Optional.ofNullable(request.obstaculos()).orElse(List.of()).stream()
+            .map(ConversaoPlanejamento::toObstaculo)
+            .toList();
+        MelhoriaRota melhoria = toMelhoria(request.melhoriaRota(), request.orcamentoMelhoriaMs());
+        ModoDesvio desvio = toDesvio(request.desvio());
+
+        ResumoEstado resumo = new ResumoEstado();
+        resumo.incluir(drones.size());
+        drones.stream()
+            .sorted(Comparator.comparing(DroneRecord::identificador))
+            .forEach(drone -> resumo.incluir(drone.identificador()).incluir(drone.capacidadeKg()).incluir(drone.autonomiaKm()));
+        resumo.incluir(entregas.size());
+        entregas.stream()
+            .sorted(Comparator.comparing(EntregaRecord::pedidoId))
+            .forEach(entrega -> resumo.incluir(entrega.pedidoId()).incluir(entrega.pesoKg()).incluir(entrega.destinoX())
+                .incluir(entrega.destinoY()).incluir(entrega.prioridade()));
+        resumo.incluir(obstaculos.size());
+        for (Obstaculo obstaculo : obstaculos) {
+            resumo.incluir(obstaculo.x()).incluir(obstaculo.y()).incluir(obstaculo.raio());
+        }
+        resumo.incluir(Optional.ofNullable(request.melhoriaRota()).map(valor -> valor.trim().toUpperCase(Locale.ROOT)).orElse(""))
+            .incluir(Optional.ofNullable(request.orcamentoMelhoriaMs()).orElse(ORCAMENTO_MELHORIA_PADRAO_MS))
+            .incluir(desvio.name());
+        return new Requisicao(drones, entregas, obstaculos, melhoria, desvio, resumo.hex());
     }
 
-    private void persistDrone(PlanejamentoRequest.DronePayload payload) throws SQLException {
-        if (payload == null) {
-            return;
+    /**
+     * ETag do plano entregue: a requisicao e a versao do cadastro em que as viagens foram registradas,
+     * mais a instancia, ja que a versao recomeca a cada subida.
+     */
+    private String etag(Requisicao requisicao, Plano plano, boolean compacto) {
+        return CondicaoEtag.fraca(requisicao.resumo() + "-" + Long.toHexString(plano.versao()) + "-" + instancia
+            + (compacto ? "-c" : ""));
+    }
+
+    /**
+     * Grava o payload e carrega drones e entregas pendentes.
+     */
+    private Entrada prepararEntrada(Requisicao requisicao, ProgressoPlanejamento progresso) throws SQLException {
+        progresso.informar("GRAVANDO_PAYLOAD", 0.0);
+        if (!requisicao.drones().isEmpty() || !requisicao.entregas().isEmpty()) {
+            cadastro.gravar(requisicao.drones(), requisicao.entregas());
         }
+
+        progresso.informar("CARREGANDO_CADASTRO", 0.1);
+
+        List<DroneRecord> droneRecords = cadastro.drones();
+        if (droneRecords.isEmpty()) {
+            throw new IllegalArgumentException("Nenhum drone cadastrado");
+        }
+        Map<Long, Long> pedidoIdMap = new HashMap<>();
+        List<Pedido> pedidos = new ArrayList<>();
+        cadastro.percorrerPendentes(record -> pedidos.add(ConversaoPlanejamento.toPedido(record, pedidoIdMap)));
+        if (pedidos.isEmpty()) {
+            throw new IllegalArgumentException("Nenhum pedido pendente");
+        }
+
+        List<Drone> drones = droneRecords.stream().map(ConversaoPlanejamento::toDrone).toList();
+        return new Entrada(droneRecords, drones, pedidos, pedidoIdMap, requisicao.obstaculos(), requisicao.melhoria(),
+            requisicao.desvio());
+    }
+
+    /**
+     * Planeja as entregas pendentes e registra as viagens, informando cada etapa a {@code progresso}.
+     * Chamado pelo {@link CachePlanos} na primeira vez que a requisicao chega ou quando o plano guardado
+     * deixou de valer; um reenvio identico recebe o plano ja registrado, sem gravar nem planejar de novo.
+     */
+    private Plano planejar(Requisicao requisicao, ProgressoPlanejamento progresso) throws SQLException {
+        Entrada entrada = prepararEntrada(requisicao, progresso);
+        progresso.informar("PLANEJANDO", 0.2);
+        List<Viagem> viagens = agendador.planejar(
+            entrada.drones(), entrada.pedidos(), entrada.obstaculos(), entrada.melhoria(), entrada.desvio());
+        progresso.informar("REGISTRANDO_VIAGENS", 0.7);
+        CacheCadastro.ViagensRegistradas registro = cadastro.registrarViagens(
+            ConversaoPlanejamento.toViagemRecords(viagens, entrada.droneRecords(), entrada.pedidoIdMap()));
+        double tempoTotal = viagens.stream().mapToDouble(Viagem::getTempoHoras).sum();
+        return new Plano(viagens, entrada.pedidoIdMap(), tempoTotal, registro.versao());
+    }
+
+    /**
+     * Um plano guardado vale enquanto o cadastro segue na versao em que suas viagens foram registradas.
+     * Drone gravado, alterado ou apagado, entrega nova ou devolvida a pendente, inclusive por outros
+     * processos, e a recarga da copia mudam a versao e fazem o plano ser refeito sobre o estado atual.
+     * Planos vazios nao atribuiram nada e sao sempre refeitos.
+     */
+    private boolean aindaRegistrado(Plano plano) {
+        return !plano.viagens().isEmpty() && plano.versao() == cadastro.versao();
+    }
+
+    private DroneRecord toDroneRecord(PlanejamentoRequest.DronePayload payload) {
         String identificador = Optional.ofNullable(payload.id()).map(String::trim)
             .filter(s -> !s.isEmpty())
             .orElseThrow(() -> new IllegalArgumentException("Drone sem identificador"));
@@ -156,19 +277,10 @@ public final class PlanejamentoController implements HttpHandler {
             .map(tempo -> capacidade * tempo)
             .orElseThrow(() -> new IllegalArgumentException("Drone " + identificador + " precisa de autonomia ou tempo de voo")));
 
-        try {
-            droneDao.inserir(identificador, capacidade, autonomia, null);
-        } catch (SQLException e) {
-            if (!isUniqueViolation(e)) {
-                throw e;
-            }
-        }
+        return new DroneRecord(null, identificador, capacidade, autonomia, null);
     }
 
-    private void persistPedido(PlanejamentoRequest.PedidoPayload payload) throws SQLException {
-        if (payload == null) {
-            return;
-        }
+    private EntregaRecord toEntregaRecord(PlanejamentoRequest.PedidoPayload payload) {
         double peso = Optional.ofNullable(payload.pesoKg())
             .filter(value -> value > 0)
             .orElseThrow(() -> new IllegalArgumentException("Pedido sem peso valido"));
@@ -178,13 +290,7 @@ public final class PlanejamentoController implements HttpHandler {
         int prioridade = prioridadeToInt(payload.prioridade());
 
         String pedidoId = gerarPedidoId(payload);
-        try {
-            entregaDao.inserir(pedidoId, peso, 0, 0, destinoX, destinoY, prioridade, null, null);
-        } catch (SQLException e) {
-            if (!isUniqueViolation(e)) {
-                throw e;
-            }
-        }
+        return new EntregaRecord(null, pedidoId, peso, 0, 0, destinoX, destinoY, prioridade, null, null, null);
     }
 
     private String gerarPedidoId(PlanejamentoRequest.PedidoPayload payload) {
@@ -212,6 +318,37 @@ public final class PlanejamentoController implements HttpHandler {
         };
     }
 
+    private MelhoriaRota toMelhoria(String melhoriaBruta, Integer orcamentoMs) {
+        String valor = Optional.ofNullable(melhoriaBruta).map(String::trim).orElse("");
+        if (valor.isEmpty()) {
+            return MelhoriaRota.NENHUMA;
+        }
+        int orcamento = Optional.ofNullable(orcamentoMs).orElse(ORCAMENTO_MELHORIA_PADRAO_MS);
+        if (orcamento <= 0) {
+            throw new IllegalArgumentException("Orcamento de melhoria deve ser positivo");
+        }
+        Duration duracao = Duration.ofMillis(orcamento);
+        return switch (valor.toUpperCase(Locale.ROOT)) {
+            case "NENHUMA" -> MelhoriaRota.NENHUMA;
+            case "DOIS_OPT", "2OPT", "2-OPT" -> new DoisOpt(duracao);
+            case "OR_OPT", "OROPT", "OR-OPT" -> new OrOpt(duracao);
+            case "DOIS_OPT_OR_OPT", "2OPT_OROPT" -> new DoisOpt(duracao).seguidaDe(new OrOpt(duracao));
+            default -> throw new IllegalArgumentException("Melhoria de rota invalida: " + valor);
+        };
+    }
+
+    private ModoDesvio toDesvio(String desvioBruto) {
+        String valor = Optional.ofNullable(desvioBruto).map(String::trim).orElse("");
+        if (valor.isEmpty()) {
+            return ModoDesvio.PERPENDICULAR;
+        }
+        return switch (valor.toUpperCase(Locale.ROOT)) {
+            case "PERPENDICULAR" -> ModoDesvio.PERPENDICULAR;
+            case "VISIBILIDADE", "MENOR_CAMINHO" -> ModoDesvio.VISIBILIDADE;
+            default -> throw new IllegalArgumentException("Modo de desvio invalido: " + valor);
+        };
+    }
+
     private int toCoordinate(Double valor, String campo) {
         double resolved = Optional.ofNullable(valor)
             .orElseThrow(() -> new IllegalArgumentException("Pedido sem coordenada " + campo));
@@ -225,27 +362,6 @@ public final class PlanejamentoController implements HttpHandler {
         return (int) arredondado;
     }
 
-    private Drone toDrone(DroneRecord record) {
-        double capacidade = record.capacidadeKg();
-        double autonomia = record.autonomiaKm();
-        double tempo = autonomia > 0 ? autonomia / Math.max(capacidade, 1e-6) : 1.0;
-        return new Drone(record.identificador(), capacidade, tempo);
-    }
-
-    private Pedido toPedido(EntregaRecord record, Map<Long, Long> pedidoIdMap) {
-        Prioridade prioridade = switch (record.prioridade()) {
-            case 3 -> Prioridade.ALTA;
-            case 2 -> Prioridade.MEDIA;
-            default -> Prioridade.BAIXA;
-        };
-        LocalDateTime chegada = record.criadoEm();
-        Pedido pedido = chegada != null
-            ? new Pedido(new Partida(record.destinoX(), record.destinoY()), record.pesoKg(), prioridade, chegada)
-            : new Pedido(new Partida(record.destinoX(), record.destinoY()), record.pesoKg(), prioridade);
-        pedidoIdMap.put(pedido.getId(), record.id());
-        return pedido;
-    }
-
     private ViagemResponse toResponse(Viagem viagem, Map<Long, Long> pedidoIdMap) {
         List<Long> idsPedidos = viagem.getPedidos().stream()
             .map(pedido -> pedidoIdMap.getOrDefault(pedido.getId(), pedido.getId()))
@@ -288,19 +404,6 @@ public final class PlanejamentoController implements HttpHandler {
         );
     }
 
-    private Obstaculo toObstaculo(PlanejamentoRequest.ObstaculoPayload payload) {
-        if (payload == null) {
-            throw new IllegalArgumentException("Obstaculo nao pode ser nulo");
-        }
-        double x = Optional.ofNullable(payload.x()).orElseThrow(() -> new IllegalArgumentException("Obstaculo sem x"));
-        double y = Optional.ofNullable(payload.y()).orElseThrow(() -> new IllegalArgumentException("Obstaculo sem y"));
-        double raio = Optional.ofNullable(payload.raio()).orElseThrow(() -> new IllegalArgumentException("Obstaculo sem raio"));
-        if (raio <= 0) {
-            throw new IllegalArgumentException("Obstaculo com raio invalido: " + raio);
-        }
-        return new Obstaculo(x, y, raio);
-    }
-
     private Optional<Double> firstPositive(Double... valores) {
         if (valores == null) {
             return Optional.empty();
@@ -313,20 +416,92 @@ public final class PlanejamentoController implements HttpHandler {
         return Optional.empty();
     }
 
-    private boolean isUniqueViolation(SQLException e) {
-        return "23505".equals(e.getSQLState());
+    /**
+     * Responde com {@code Transfer-Encoding: chunked}, escrevendo as viagens a medida que sao simuladas.
+     * Depois dos cabecalhos o status ja nao pode mudar; uma falha no meio apenas interrompe a resposta.
+     * Sem viagens a resposta fica abaixo do limiar de compressao e segue sem codificacao.
+     */
+    private void writeStreaming(HttpExchange exchange, Plano plano, boolean compacto) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", compacto ? EscritorPlanejamentoJson.TIPO_COMPACTO + "; charset=utf-8" : "application/json; charset=utf-8");
+        headers.add("Vary", "Accept");
+        try (OutputStream out = CodificacaoResposta.abrir(exchange, 200, !plano.viagens().isEmpty());
+             JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+            escritor.escrever(gen, ORIGEM, plano.tempoTotal(), plano.viagens(), plano.pedidoIdMap(), compacto);
+        }
+    }
+
+    /**
+     * O formato compacto so e usado quando o cliente o lista no {@code Accept} sem {@code q=0}.
+     */
+    private static boolean aceitaCompacto(Headers requestHeaders) {
+        List<String> accept = requestHeaders.get("Accept");
+        if (accept == null) {
+            return false;
+        }
+        for (String valor : accept) {
+            for (String faixa : valor.split(",")) {
+                String[] partes = faixa.split(";");
+                if (!EscritorPlanejamentoJson.TIPO_COMPACTO.equalsIgnoreCase(partes[0].trim())) {
+                    continue;
+                }
+                boolean recusado = false;
+                for (int i = 1; i < partes.length; i++) {
+                    String parametro = partes[i].trim().replace(" ", "");
+                    if (parametro.matches("q=0(\\.0*)?")) {
+                        recusado = true;
+                    }
+                }
+                if (!recusado) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * O cliente reenviou a requisicao com o ETag do plano que ja recebeu. Em POST a condicao falsa do
+     * {@code If-None-Match} responde 412 (RFC 9110, secao 13.1.2): nada e gravado nem planejado.
+     */
+    private void writePrecondicaoFalhou(HttpExchange exchange, String etag) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", etag);
+        headers.add("Vary", "Accept");
+        writeJson(exchange, 412, new ErrorResponse("Precondicao falhou", "O plano desta requisicao ja foi entregue com o ETag " + etag));
     }
 
     private void writeJson(HttpExchange exchange, int status, Object body) throws IOException {
         byte[] payload = mapper.writeValueAsBytes(body);
         Headers headers = exchange.getResponseHeaders();
         headers.set("Content-Type", "application/json; charset=utf-8");
-        exchange.sendResponseHeaders(status, payload.length);
-        try (OutputStream out = exchange.getResponseBody()) {
-            out.write(payload);
-        }
+        CodificacaoResposta.enviar(exchange, status, payload);
     }
 
     private record ErrorResponse(String erro, String detalhes) {}
+
+    private record Requisicao(
+        List<DroneRecord> drones,
+        List<EntregaRecord> entregas,
+        List<Obstaculo> obstaculos,
+        MelhoriaRota melhoria,
+        ModoDesvio desvio,
+        String resumo
+    ) {}
+
+    private record Entrada(
+        List<DroneRecord> droneRecords,
+        List<Drone> drones,
+        List<Pedido> pedidos,
+        Map<Long, Long> pedidoIdMap,
+        List<Obstaculo> obstaculos,
+        MelhoriaRota melhoria,
+        ModoDesvio desvio
+    ) {}
+
+    /**
+     * @param versao versao do cadastro logo apos o registro das viagens
+     */
+    private record Plano(List<Viagem> viagens, Map<Long, Long> pedidoIdMap, double tempoTotal, long versao) {}
 }
 
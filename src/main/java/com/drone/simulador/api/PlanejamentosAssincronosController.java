@@ -0,0 +1,100 @@
+package com.drone.simulador.api;
+
+import com.drone.simulador.api.dto.JobPlanejamentoResponse;
+import com.drone.simulador.api.dto.PlanejamentoRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@code POST /api/planejamentos} enfileira um planejamento e responde 202 com o id do job;
+ * {@code GET /api/planejamentos/{id}} devolve estado, etapa, progresso e, ao final, o resultado. O GET
+ * traz um ETag do corpo; quem consulta o job repetidas vezes recebe 304 enquanto nada mudou.
+ */
+public final class PlanejamentosAssincronosController implements HttpHandler {
+    private static final String CAMINHO = "/api/planejamentos";
+
+    private final ObjectMapper mapper;
+    private final JobsPlanejamento jobs;
+    private final long retryAfterSegundos;
+
+    public PlanejamentosAssincronosController(ObjectMapper mapper, JobsPlanejamento jobs, long retryAfterSegundos) {
+        this.mapper = Objects.requireNonNull(mapper, "mapper nao pode ser nulo");
+        this.jobs = Objects.requireNonNull(jobs, "jobs nao pode ser nulo");
+        this.retryAfterSegundos = Math.max(1, retryAfterSegundos);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String caminho = exchange.getRequestURI().getPath();
+            String resto = caminho.length() > CAMINHO.length() ? caminho.substring(CAMINHO.length()) : "";
+            if (resto.isEmpty() || "/".equals(resto)) {
+                if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                    writeJson(exchange, 405, new ErrorResponse("Metodo nao permitido", "Use POST"));
+                    return;
+                }
+                submeter(exchange);
+                return;
+            }
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                writeJson(exchange, 405, new ErrorResponse("Metodo nao permitido", "Use GET"));
+                return;
+            }
+            String id = resto.substring(1);
+            Optional<JobPlanejamentoResponse> job = jobs.buscar(id);
+            if (job.isEmpty()) {
+                writeJson(exchange, 404, new ErrorResponse("Job nao encontrado", id));
+                return;
+            }
+            byte[] payload = mapper.writeValueAsBytes(job.get());
+            String etag = CondicaoEtag.doConteudo(payload);
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (CondicaoEtag.corresponde(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            writePayload(exchange, 200, payload);
+        }
+    }
+
+    private void submeter(HttpExchange exchange) throws IOException {
+        PlanejamentoRequest requestBody;
+        try (InputStream body = exchange.getRequestBody()) {
+            requestBody = mapper.readValue(body, PlanejamentoRequest.class);
+        } catch (JsonProcessingException e) {
+            writeJson(exchange, 400, new ErrorResponse("JSON invalido", Optional.ofNullable(e.getOriginalMessage()).orElse(e.getMessage())));
+            return;
+        }
+
+        JobPlanejamentoResponse job;
+        try {
+            job = jobs.submeter(requestBody);
+        } catch (RejectedExecutionException e) {
+            exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfterSegundos));
+            writeJson(exchange, 503, new ErrorResponse("Servidor ocupado", e.getMessage()));
+            return;
+        }
+        exchange.getResponseHeaders().set("Location", CAMINHO + "/" + job.id());
+        writeJson(exchange, 202, job);
+    }
+
+    private void writeJson(HttpExchange exchange, int status, Object body) throws IOException {
+        writePayload(exchange, status, mapper.writeValueAsBytes(body));
+    }
+
+    private void writePayload(HttpExchange exchange, int status, byte[] payload) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        CodificacaoResposta.enviar(exchange, status, payload);
+    }
+
+    private record ErrorResponse(String erro, String detalhes) {}
+}
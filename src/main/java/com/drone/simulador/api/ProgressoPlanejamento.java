@@ -0,0 +1,12 @@
+package com.drone.simulador.api;
+
+/**
+ * Recebe a etapa corrente do planejamento e a fracao concluida, entre 0 e 1.
+ */
+@FunctionalInterface
+interface ProgressoPlanejamento {
+
+    ProgressoPlanejamento NENHUM = (etapa, fracao) -> { };
+
+    void informar(String etapa, double fracao);
+}
@@ -0,0 +1,40 @@
+package com.drone.simulador.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Com o {@link PipelinePlanejamento} ativo as entregas pendentes ja sao atribuidas por ele; um
+ * planejamento pedido por requisicao disputaria as mesmas entregas. Os {@code POST} respondem 409 e
+ * apontam para o fluxo de viagens do pipeline; os demais metodos seguem para o handler.
+ */
+final class ReservaPipeline implements HttpHandler {
+    private static final byte[] RECUSA = ("{\"erro\":\"Planejamento atribuido ao pipeline\",\"detalhes\":"
+        + "\"Com PIPELINE_ATIVO as entregas pendentes sao planejadas continuamente; acompanhe as viagens em "
+        + "/api/pipeline/viagens\"}").getBytes(StandardCharsets.UTF_8);
+
+    private final HttpHandler destino;
+
+    ReservaPipeline(HttpHandler destino) {
+        this.destino = Objects.requireNonNull(destino, "destino nao pode ser nulo");
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            destino.handle(exchange);
+            return;
+        }
+        try (exchange) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(409, RECUSA.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(RECUSA);
+            }
+        }
+    }
+}
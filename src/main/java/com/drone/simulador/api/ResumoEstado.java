@@ -0,0 +1,61 @@
+package com.drone.simulador.api;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Resumo SHA-256 incremental de requisicoes e respostas, usado para gerar ETags e chaves de cache.
+ * Cada valor e escrito com tamanho fixo ou prefixado, para que sequencias diferentes nao colidam.
+ */
+final class ResumoEstado {
+
+    private static final int BYTES_ETAG = 16;
+
+    private final MessageDigest digest;
+    private final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+
+    ResumoEstado() {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponivel", e);
+        }
+    }
+
+    ResumoEstado incluir(long valor) {
+        buffer.clear();
+        buffer.putLong(valor);
+        digest.update(buffer.array(), 0, Long.BYTES);
+        return this;
+    }
+
+    ResumoEstado incluir(double valor) {
+        return incluir(Double.doubleToLongBits(valor));
+    }
+
+    ResumoEstado incluir(String valor) {
+        if (valor == null) {
+            return incluir(-1L);
+        }
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        incluir((long) bytes.length);
+        digest.update(bytes);
+        return this;
+    }
+
+    ResumoEstado incluir(byte[] valor) {
+        incluir((long) valor.length);
+        digest.update(valor);
+        return this;
+    }
+
+    /**
+     * Encerra o resumo; a instancia nao deve ser reutilizada.
+     */
+    String hex() {
+        return HexFormat.of().formatHex(digest.digest(), 0, BYTES_ETAG);
+    }
+}
@@ -0,0 +1,15 @@
+package com.drone.simulador.api.dto;
+
+import java.util.List;
+
+public record ImportacaoResponse(
+    long aceitas,
+    long duplicadas,
+    long rejeitadas,
+    List<LinhaRejeitada> erros
+) {
+    public record LinhaRejeitada(
+        long linha,
+        String motivo
+    ) {}
+}
@@ -0,0 +1,20 @@
+package com.drone.simulador.api.dto;
+
+import java.time.Instant;
+
+public record JobPlanejamentoResponse(
+    String id,
+    String estado,
+    String etapa,
+    double progresso,
+    Instant criadoEm,
+    Instant concluidoEm,
+    PlanejamentoResponse resultado,
+    ErroResponse erro
+) {
+    public record ErroResponse(
+        int status,
+        String erro,
+        String detalhes
+    ) {}
+}
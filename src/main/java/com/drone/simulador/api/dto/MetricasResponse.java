@@ -0,0 +1,44 @@
+package com.drone.simulador.api.dto;
+
+import com.drone.simulador.infra.EstatisticasPool;
+import java.util.List;
+
+public record MetricasResponse(
+    EstatisticasPool pool,
+    CacheRotasResponse cacheRotas,
+    CachePlanosResponse cachePlanos,
+    PipelineResponse pipeline,
+    List<LimiteResponse> limites
+) {
+    public record CacheRotasResponse(
+        long acertos,
+        long falhas,
+        long despejos,
+        double taxaAcerto
+    ) {}
+
+    public record CachePlanosResponse(
+        long acertos,
+        long falhas,
+        long coalescidas,
+        long despejos,
+        int tamanho
+    ) {}
+
+    public record PipelineResponse(
+        int filaEntregas,
+        int filaLotes,
+        long lotes,
+        long entregasPlanejadas,
+        long viagensEmitidas,
+        long falhas,
+        int assinantes
+    ) {}
+
+    public record LimiteResponse(
+        String endpoint,
+        int limite,
+        int emUso,
+        long rejeitadas
+    ) {}
+}
@@ -5,7 +5,10 @@ import java.util.List;
 public record PlanejamentoRequest(
     List<DronePayload> drones,
     List<PedidoPayload> pedidos,
-    List<ObstaculoPayload> obstaculos
+    List<ObstaculoPayload> obstaculos,
+    String melhoriaRota,
+    Integer orcamentoMelhoriaMs,
+    String desvio
 ) {
     public record DronePayload(
         String id,
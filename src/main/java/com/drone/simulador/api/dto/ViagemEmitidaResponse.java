@@ -0,0 +1,15 @@
+package com.drone.simulador.api.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record ViagemEmitidaResponse(
+    Long viagemId,
+    String droneId,
+    double pesoTotalKg,
+    double distanciaKm,
+    double tempoHoras,
+    List<Long> pedidos,
+    List<double[]> rota,
+    LocalDateTime criadoEm
+) {}
@@ -0,0 +1,569 @@
+package com.drone.simulador.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import com.drone.simulador.dao.model.DroneRecord;
+import com.drone.simulador.dao.model.EntregaRecord;
+import com.drone.simulador.dao.model.ViagemRecord;
+
+/**
+ * Copia em memoria dos drones e das entregas pendentes, lida pelo planejamento no lugar do banco.
+ *
+ * <p>Gravacoes feitas por {@link #gravar} e {@link #registrarViagens} atualizam a copia logo apos o
+ * commit, exceto nas linhas que a escuta releu enquanto a gravacao corria: essas ja podem refletir uma
+ * alteracao posterior, e o aviso da propria gravacao as rele de novo. Alteracoes de outros
+ * processos, como a API Node, chegam por {@code LISTEN/NOTIFY} (gatilhos das migracoes V5 e V7), cada
+ * aviso com os ids alterados por um comando separados por virgula, e as linhas citadas sao relidas do
+ * banco. Se a conexao de escuta cair, a copia e descartada e recarregada por
+ * inteiro na proxima leitura.
+ *
+ * <p>A carga completa le o banco fora da trava que protege a copia: consultas, gravacoes e notificacoes
+ * nao esperam por ela, e so a troca do conteudo acontece sob a trava. Ids notificados durante a carga,
+ * que podem ter sido lidos antes da alteracao, sao relidos pela escuta logo apos a troca.
+ */
+public class CacheCadastro implements AutoCloseable {
+
+    static final String CANAL_DRONES = "drone_alterado";
+    static final String CANAL_ENTREGAS = "entrega_alterada";
+
+    private static final String TODOS = "*";
+    private static final String STATUS_PENDENTE = "PENDENTE";
+    private static final int ESPERA_NOTIFICACOES_MS = 500;
+
+    private static final Comparator<EntregaRecord> ORDEM_PENDENTES =
+        Comparator.comparingInt(EntregaRecord::prioridade).reversed()
+            .thenComparing(EntregaRecord::criadoEm, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(EntregaRecord::id);
+
+    private final FonteConexao conexaoEscuta;
+    private final DroneDao droneDao;
+    private final EntregaDao entregaDao;
+    private final Transacoes transacoes;
+    private final ViagemDao viagemDao;
+
+    private final Object trava = new Object();
+    private final Object carga = new Object();
+    private final Map<Long, DroneRecord> dronesPorId = new HashMap<>();
+    private final TreeMap<String, DroneRecord> dronesPorIdentificador = new TreeMap<>();
+    private final Map<Long, EntregaRecord> pendentesPorId = new HashMap<>();
+    private final NavigableSet<EntregaRecord> pendentes = new TreeSet<>(ORDEM_PENDENTES);
+    private final Set<Long> dronesAdiados = new HashSet<>();
+    private final Set<Long> entregasAdiadas = new HashSet<>();
+    private final List<Observacao> gravacoesEmCurso = new ArrayList<>();
+    private boolean carregado;
+    private boolean carregando;
+    private long geracao;
+    private long versao;
+    private Escuta escuta;
+    private volatile boolean fechado;
+
+    /**
+     * Cache cuja escuta toma uma conexao do proprio pool e a prende enquanto durar.
+     */
+    public CacheCadastro(DataSource dataSource) {
+        this(dataSource, dataSource::getConnection);
+    }
+
+    /**
+     * @param conexaoEscuta abre a conexao do {@code LISTEN}, de preferencia fora do pool, ja que ela fica
+     *     presa enquanto a escuta durar
+     */
+    public CacheCadastro(DataSource dataSource, FonteConexao conexaoEscuta) {
+        this(conexaoEscuta, new DroneDao(dataSource), new EntregaDao(dataSource), new ViagemDao(), new Transacoes(dataSource));
+    }
+
+    public CacheCadastro(
+        FonteConexao conexaoEscuta,
+        DroneDao droneDao,
+        EntregaDao entregaDao,
+        ViagemDao viagemDao,
+        Transacoes transacoes
+    ) {
+        this.conexaoEscuta = Objects.requireNonNull(conexaoEscuta, "conexaoEscuta nao pode ser nula");
+        this.droneDao = Objects.requireNonNull(droneDao, "droneDao nao pode ser nulo");
+        this.entregaDao = Objects.requireNonNull(entregaDao, "entregaDao nao pode ser nulo");
+        this.viagemDao = Objects.requireNonNull(viagemDao, "viagemDao nao pode ser nulo");
+        this.transacoes = Objects.requireNonNull(transacoes, "transacoes nao pode ser nulo");
+    }
+
+    /**
+     * Drones cadastrados, ordenados por identificador como em {@link DroneDao#listar()}.
+     */
+    public List<DroneRecord> drones() throws SQLException {
+        while (true) {
+            synchronized (trava) {
+                if (carregado) {
+                    return List.copyOf(dronesPorIdentificador.values());
+                }
+            }
+            garantirCarregado();
+        }
+    }
+
+    /**
+     * Contador incrementado a cada alteracao efetiva da copia, inclusive as notificadas por outros
+     * processos e o descarte; reaplicar uma linha identica, como no eco das proprias gravacoes, nao o
+     * altera. Valores iguais em duas leituras indicam que nada mudou entre elas.
+     */
+    public long versao() {
+        synchronized (trava) {
+            return versao;
+        }
+    }
+
+    /**
+     * Entrega ao {@code destino} as entregas pendentes na mesma ordem de
+     * {@link EntregaDao#percorrerPendentes}. Percorre uma foto da copia tirada no inicio da chamada.
+     *
+     * @return quantidade de entregas percorridas
+     */
+    public long percorrerPendentes(Consumer<EntregaRecord> destino) throws SQLException {
+        List<EntregaRecord> foto = null;
+        while (foto == null) {
+            synchronized (trava) {
+                if (carregado) {
+                    foto = new ArrayList<>(pendentes);
+                }
+            }
+            if (foto == null) {
+                garantirCarregado();
+            }
+        }
+        foto.forEach(destino);
+        return foto.size();
+    }
+
+    /**
+     * Indica se a entrega ainda esta pendente na copia, sem forcar a carga quando ela foi descartada.
+     */
+    public boolean pendente(long id) {
+        synchronized (trava) {
+            return !carregado || pendentesPorId.containsKey(id);
+        }
+    }
+
+    /**
+     * Insere drones e entregas em uma unica transacao e, apos o commit, aplica a copia apenas as linhas
+     * de fato inseridas.
+     */
+    public void gravar(List<DroneRecord> drones, List<EntregaRecord> entregas) throws SQLException {
+        Observacao observacao = observar();
+        try {
+            Gravados gravados = transacoes.executar(connection -> new Gravados(
+                droneDao.inserirEmLote(connection, drones),
+                entregaDao.inserirEmLote(connection, entregas)
+            ));
+            synchronized (trava) {
+                if (!carregado || geracao != observacao.geracao()) {
+                    return;
+                }
+                gravados.drones().stream().filter(drone -> !observacao.drones().contains(drone.id())).forEach(this::aplicarDrone);
+                gravados.entregas().stream().filter(entrega -> !observacao.entregas().contains(entrega.id())).forEach(this::aplicarEntrega);
+            }
+        } finally {
+            encerrarObservacao(observacao);
+        }
+    }
+
+    /**
+     * Grava as viagens planejadas e atribui suas entregas na mesma transacao; apos o commit as entregas
+     * deixam o conjunto de pendentes. Se alguma entrega ja nao estiver pendente (outro planejamento a
+     * atribuiu antes), nada e gravado.
+     *
+     * @return as viagens com os ids gerados pelo banco e a {@link #versao()} logo apos aplica-las
+     * @throws IllegalStateException quando alguma entrega deixou de estar pendente
+     */
+    public ViagensRegistradas registrarViagens(List<ViagemRecord> viagens) throws SQLException {
+        if (viagens.isEmpty()) {
+            return new ViagensRegistradas(List.of(), versao());
+        }
+        int esperadas = viagens.stream().mapToInt(viagem -> viagem.entregaIds().size()).sum();
+        Observacao observacao = observar();
+        try {
+            Atribuicao atribuicao = transacoes.executar(connection -> {
+                List<ViagemRecord> inseridas = viagemDao.inserirEmLote(connection, viagens);
+                List<EntregaRecord> atribuidas = entregaDao.atribuirEmLote(connection, inseridas);
+                if (atribuidas.size() != esperadas) {
+                    throw new IllegalStateException("Entregas alteradas durante o planejamento: "
+                        + (esperadas - atribuidas.size()) + " ja nao estavam pendentes");
+                }
+                return new Atribuicao(inseridas, atribuidas);
+            });
+            synchronized (trava) {
+                if (carregado && geracao == observacao.geracao()) {
+                    atribuicao.entregas().stream()
+                        .filter(entrega -> !observacao.entregas().contains(entrega.id()))
+                        .forEach(this::aplicarEntrega);
+                }
+                return new ViagensRegistradas(atribuicao.viagens(), versao);
+            }
+        } finally {
+            encerrarObservacao(observacao);
+        }
+    }
+
+    @Override
+    public void close() {
+        fechado = true;
+        synchronized (trava) {
+            descartar();
+            if (escuta != null) {
+                escuta.encerrar();
+                escuta = null;
+            }
+        }
+    }
+
+    /**
+     * Carrega a copia, uma carga por vez. A leitura roda fora de {@code trava}; se a copia for descartada
+     * no meio dela (truncate, queda da escuta), o resultado e jogado fora e a carga recomeca.
+     */
+    private void garantirCarregado() throws SQLException {
+        synchronized (carga) {
+            while (true) {
+                synchronized (trava) {
+                    if (carregado) {
+                        return;
+                    }
+                    if (fechado) {
+                        throw new IllegalStateException("Cache de cadastro encerrado");
+                    }
+                }
+                // escuta antes de carregar: alteracoes concorrentes a carga chegam depois como notificacao
+                garantirEscuta();
+
+                long geracaoCarga;
+                synchronized (trava) {
+                    geracaoCarga = geracao;
+                    carregando = true;
+                    dronesAdiados.clear();
+                    entregasAdiadas.clear();
+                }
+                List<DroneRecord> drones;
+                List<EntregaRecord> lidas = new ArrayList<>();
+                try {
+                    drones = droneDao.listar();
+                    entregaDao.percorrerPendentes(lidas::add);
+                } finally {
+                    synchronized (trava) {
+                        carregando = false;
+                    }
+                }
+
+                synchronized (trava) {
+                    if (geracao != geracaoCarga || fechado) {
+                        continue;
+                    }
+                    limpar();
+                    drones.forEach(this::aplicarDrone);
+                    lidas.forEach(this::aplicarEntrega);
+                    carregado = true;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Abre a conexao de escuta fora da trava e so a instala se nenhuma outra escuta estiver ativa.
+     */
+    private void garantirEscuta() throws SQLException {
+        synchronized (trava) {
+            if (escuta != null) {
+                return;
+            }
+        }
+        Escuta nova = new Escuta();
+        synchronized (trava) {
+            if (escuta == null && !fechado) {
+                escuta = nova;
+                nova.iniciar();
+                return;
+            }
+        }
+        nova.fecharConexao();
+    }
+
+    /**
+     * Passa a anotar as linhas que a escuta reler ate {@link #encerrarObservacao}; a gravacao nao aplica
+     * sobre elas a foto tirada no proprio commit.
+     */
+    private Observacao observar() {
+        synchronized (trava) {
+            Observacao observacao = new Observacao(geracao, new HashSet<>(), new HashSet<>());
+            gravacoesEmCurso.add(observacao);
+            return observacao;
+        }
+    }
+
+    private void encerrarObservacao(Observacao observacao) {
+        synchronized (trava) {
+            gravacoesEmCurso.remove(observacao);
+        }
+    }
+
+    private void descartar() {
+        versao++;
+        geracao++;
+        carregado = false;
+        limpar();
+    }
+
+    private void limpar() {
+        dronesPorId.clear();
+        dronesPorIdentificador.clear();
+        pendentesPorId.clear();
+        pendentes.clear();
+    }
+
+    private void aplicarDrone(DroneRecord drone) {
+        if (drone.equals(dronesPorId.get(drone.id()))) {
+            return;
+        }
+        removerDrone(drone.id());
+        versao++;
+        dronesPorId.put(drone.id(), drone);
+        dronesPorIdentificador.put(drone.identificador(), drone);
+    }
+
+    private void removerDrone(Long id) {
+        DroneRecord anterior = dronesPorId.remove(id);
+        if (anterior != null) {
+            versao++;
+            dronesPorIdentificador.remove(anterior.identificador());
+        }
+    }
+
+    private void aplicarEntrega(EntregaRecord entrega) {
+        if (entrega.equals(pendentesPorId.get(entrega.id()))) {
+            return;
+        }
+        removerEntrega(entrega.id());
+        if (STATUS_PENDENTE.equals(entrega.status())) {
+            versao++;
+            pendentesPorId.put(entrega.id(), entrega);
+            pendentes.add(entrega);
+        }
+    }
+
+    private void removerEntrega(Long id) {
+        EntregaRecord anterior = pendentesPorId.remove(id);
+        if (anterior != null) {
+            versao++;
+            pendentes.remove(anterior);
+        }
+    }
+
+    /**
+     * Rele as linhas notificadas e as aplica, desde que a copia ainda pertenca a esta escuta. Uma
+     * notificacao {@code *} (truncate ou comando que alterou muitas linhas) descarta a copia inteira.
+     */
+    private void processar(Escuta origem, PGNotification[] notificacoes) throws SQLException {
+        Set<Long> idsDrones = new HashSet<>();
+        Set<Long> idsEntregas = new HashSet<>();
+        boolean recarregar = false;
+        for (PGNotification notificacao : notificacoes) {
+            Set<Long> destino = switch (notificacao.getName()) {
+                case CANAL_DRONES -> idsDrones;
+                case CANAL_ENTREGAS -> idsEntregas;
+                default -> null;
+            };
+            if (destino == null) {
+                continue;
+            }
+            if (TODOS.equals(notificacao.getParameter())) {
+                recarregar = true;
+                continue;
+            }
+            try {
+                for (String id : notificacao.getParameter().split(",")) {
+                    destino.add(Long.parseLong(id.trim()));
+                }
+            } catch (NumberFormatException e) {
+                recarregar = true;
+            }
+        }
+        if (recarregar) {
+            synchronized (trava) {
+                if (escuta == origem) {
+                    descartar();
+                }
+            }
+            return;
+        }
+        reler(origem, idsDrones, idsEntregas);
+    }
+
+    /**
+     * Rele as linhas citadas e as aplica. Sem copia carregada os ids so importam a uma carga em
+     * andamento, que pode te-las lido antes da alteracao: ficam adiados ate a troca.
+     */
+    private void reler(Escuta origem, Set<Long> idsDrones, Set<Long> idsEntregas) throws SQLException {
+        synchronized (trava) {
+            if (escuta != origem) {
+                return;
+            }
+            if (!carregado) {
+                if (carregando) {
+                    dronesAdiados.addAll(idsDrones);
+                    entregasAdiadas.addAll(idsEntregas);
+                }
+                return;
+            }
+        }
+
+        List<DroneRecord> drones = droneDao.buscarPorIds(idsDrones);
+        List<EntregaRecord> entregas = entregaDao.buscarPorIds(idsEntregas);
+        synchronized (trava) {
+            if (escuta != origem || !carregado) {
+                return;
+            }
+            for (Observacao observacao : gravacoesEmCurso) {
+                observacao.drones().addAll(idsDrones);
+                observacao.entregas().addAll(idsEntregas);
+            }
+            // ids ausentes da releitura foram apagados
+            idsDrones.forEach(this::removerDrone);
+            idsEntregas.forEach(this::removerEntrega);
+            drones.forEach(this::aplicarDrone);
+            entregas.forEach(this::aplicarEntrega);
+        }
+    }
+
+    /**
+     * Rele os ids notificados durante a ultima carga, depois que ela foi instalada. Roda na thread da
+     * escuta, em sequencia com as demais notificacoes, para que uma releitura antiga nao sobrescreva
+     * uma mais nova.
+     */
+    private void relerAdiados(Escuta origem) throws SQLException {
+        Set<Long> idsDrones;
+        Set<Long> idsEntregas;
+        synchronized (trava) {
+            if (!carregado || (dronesAdiados.isEmpty() && entregasAdiadas.isEmpty())) {
+                return;
+            }
+            idsDrones = new HashSet<>(dronesAdiados);
+            idsEntregas = new HashSet<>(entregasAdiadas);
+            dronesAdiados.clear();
+            entregasAdiadas.clear();
+        }
+        reler(origem, idsDrones, idsEntregas);
+    }
+
+    private void perder(Escuta origem) {
+        synchronized (trava) {
+            if (escuta == origem) {
+                escuta = null;
+                descartar();
+            }
+        }
+    }
+
+    private record Gravados(List<DroneRecord> drones, List<EntregaRecord> entregas) {}
+
+    private record Atribuicao(List<ViagemRecord> viagens, List<EntregaRecord> entregas) {}
+
+    /**
+     * Ids relidos pela escuta durante uma gravacao iniciada na {@code geracao} indicada.
+     */
+    private record Observacao(long geracao, Set<Long> drones, Set<Long> entregas) {}
+
+    /**
+     * Viagens gravadas por {@link #registrarViagens} e a versao da copia ja com suas entregas atribuidas.
+     */
+    public record ViagensRegistradas(List<ViagemRecord> viagens, long versao) {}
+
+    /**
+     * Abre conexoes JDBC; usada para a conexao do {@code LISTEN}.
+     */
+    @FunctionalInterface
+    public interface FonteConexao {
+        Connection abrir() throws SQLException;
+    }
+
+    /**
+     * Conexao dedicada ao {@code LISTEN} e a thread que recolhe as notificacoes. A conexao e fechada
+     * quando a escuta termina.
+     */
+    private final class Escuta implements Runnable {
+        private final Connection connection;
+        private final PGConnection pgConnection;
+        private final Thread thread;
+        private volatile boolean ativa = true;
+
+        Escuta() throws SQLException {
+            this.connection = conexaoEscuta.abrir();
+            try (Statement st = connection.createStatement()) {
+                this.pgConnection = connection.unwrap(PGConnection.class);
+                st.execute("LISTEN " + CANAL_DRONES);
+                st.execute("LISTEN " + CANAL_ENTREGAS);
+            } catch (SQLException | RuntimeException e) {
+                connection.close();
+                throw e;
+            }
+            this.thread = new Thread(this, "cache-cadastro-escuta");
+            this.thread.setDaemon(true);
+        }
+
+        void iniciar() {
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (ativa) {
+                    relerAdiados(this);
+                    PGNotification[] notificacoes = pgConnection.getNotifications(ESPERA_NOTIFICACOES_MS);
+                    if (notificacoes != null && notificacoes.length > 0) {
+                        processar(this, notificacoes);
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (ativa) {
+                    System.err.printf("Escuta do cache de cadastro interrompida: %s%n", e.getMessage());
+                }
+            } finally {
+                perder(this);
+                fecharConexao();
+            }
+        }
+
+        void encerrar() {
+            ativa = false;
+            thread.interrupt();
+        }
+
+        void fecharConexao() {
+            try (Statement st = connection.createStatement()) {
+                st.execute("UNLISTEN *");
+            } catch (SQLException ignored) {
+                // conexao ja perdida: basta fecha-la
+            }
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // nada a fazer ao encerrar
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.sql.DataSource;
@@ -19,6 +20,22 @@ public class DroneDao {
         RETURNING id, identificador, capacidade_kg, autonomia_km, status
         """;
 
+    private static final String INSERT_LOTE_SQL = """
+        INSERT INTO drone (identificador, capacidade_kg, autonomia_km, status)
+        VALUES (?, ?, ?, COALESCE(?, 'DISPONIVEL'))
+        ON CONFLICT DO NOTHING
+        """;
+
+    private static final String[] COLUNAS = { "id", "identificador", "capacidade_kg", "autonomia_km", "status" };
+
+    private static final int TAMANHO_LOTE = 1000;
+
+    private static final String BUSCAR_POR_IDS_SQL = """
+        SELECT id, identificador, capacidade_kg, autonomia_km, status
+          FROM drone
+         WHERE id = ANY (?)
+        """;
+
     private static final String LIST_SQL = """
         SELECT id, identificador, capacidade_kg, autonomia_km, status
           FROM drone
@@ -48,6 +65,57 @@ public class DroneDao {
         }
     }
 
+    /**
+     * Insere os drones em lotes na conexao informada, ignorando identificadores ja cadastrados; o
+     * {@code id} dos registros e ignorado. Nao faz commit: a transacao pertence a quem chama.
+     *
+     * @return drones efetivamente inseridos, como gravados no banco
+     */
+    public List<DroneRecord> inserirEmLote(Connection connection, List<DroneRecord> drones) throws SQLException {
+        if (drones.isEmpty()) {
+            return List.of();
+        }
+        List<DroneRecord> inseridos = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(INSERT_LOTE_SQL, COLUNAS)) {
+            int pendentes = 0;
+            for (DroneRecord drone : drones) {
+                ps.setString(1, drone.identificador());
+                ps.setDouble(2, drone.capacidadeKg());
+                ps.setDouble(3, drone.autonomiaKm());
+                ps.setString(4, drone.status());
+                ps.addBatch();
+                if (++pendentes == TAMANHO_LOTE) {
+                    executarLote(ps, inseridos);
+                    pendentes = 0;
+                }
+            }
+            if (pendentes > 0) {
+                executarLote(ps, inseridos);
+            }
+        }
+        return inseridos;
+    }
+
+    /**
+     * Busca os drones com os ids informados; ids inexistentes sao ignorados.
+     */
+    public List<DroneRecord> buscarPorIds(Collection<Long> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<DroneRecord> drones = new ArrayList<>(ids.size());
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(BUSCAR_POR_IDS_SQL)) {
+            ps.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    drones.add(map(rs));
+                }
+            }
+        }
+        return drones;
+    }
+
     public List<DroneRecord> listar() throws SQLException {
         List<DroneRecord> drones = new ArrayList<>();
         try (Connection connection = dataSource.getConnection();
@@ -60,6 +128,15 @@ public class DroneDao {
         return drones;
     }
 
+    private void executarLote(PreparedStatement ps, List<DroneRecord> inseridos) throws SQLException {
+        ps.executeBatch();
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            while (rs.next()) {
+                inseridos.add(map(rs));
+            }
+        }
+    }
+
     private DroneRecord map(ResultSet rs) throws SQLException {
         return new DroneRecord(
             rs.getLong("id"),
@@ -1,16 +1,26 @@
 ﻿package com.drone.simulador.dao;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 import javax.sql.DataSource;
 
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
 import com.drone.simulador.dao.model.EntregaRecord;
+import com.drone.simulador.dao.model.ViagemRecord;
 
 public class EntregaDao {
 
@@ -24,6 +34,67 @@ public class EntregaDao {
                   prioridade, drone_id, status, criado_em
         """;
 
+    private static final String INSERT_LOTE_SQL = """
+        INSERT INTO entrega (
+            pedido_id, peso_kg, origem_x, origem_y,
+            destino_x, destino_y, prioridade, drone_id, status
+        )
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, COALESCE(?, 'PENDENTE'))
+        ON CONFLICT (pedido_id) DO NOTHING
+        """;
+
+    private static final String[] COLUNAS = {
+        "id", "pedido_id", "peso_kg", "origem_x", "origem_y", "destino_x", "destino_y",
+        "prioridade", "drone_id", "status", "criado_em"
+    };
+
+    private static final int TAMANHO_LOTE = 1000;
+
+    private static final String ATRIBUIR_SQL = """
+        UPDATE entrega AS e
+           SET drone_id = a.drone_id,
+               viagem_id = a.viagem_id,
+               status = 'ATRIBUIDA'
+          FROM unnest(?::bigint[], ?::bigint[], ?::bigint[]) AS a(id, drone_id, viagem_id)
+         WHERE e.id = a.id
+           AND e.status = 'PENDENTE'
+        RETURNING e.id, e.pedido_id, e.peso_kg, e.origem_x, e.origem_y, e.destino_x, e.destino_y,
+                  e.prioridade, e.drone_id, e.status, e.criado_em
+        """;
+
+    private static final String BUSCAR_POR_IDS_SQL = """
+        SELECT id, pedido_id, peso_kg, origem_x, origem_y, destino_x, destino_y,
+               prioridade, drone_id, status, criado_em
+          FROM entrega
+         WHERE id = ANY (?)
+        """;
+
+    private static final String CRIAR_IMPORTACAO_SQL = """
+        CREATE TEMP TABLE entrega_importacao (
+            pedido_id VARCHAR(50) NOT NULL,
+            peso_kg NUMERIC(6,2) NOT NULL,
+            origem_x INT NOT NULL,
+            origem_y INT NOT NULL,
+            destino_x INT NOT NULL,
+            destino_y INT NOT NULL,
+            prioridade INT NOT NULL
+        ) ON COMMIT DROP
+        """;
+
+    private static final String COPY_SQL = """
+        COPY entrega_importacao (pedido_id, peso_kg, origem_x, origem_y, destino_x, destino_y, prioridade)
+        FROM STDIN WITH (FORMAT csv)
+        """;
+
+    private static final String INSERIR_IMPORTACAO_SQL = """
+        INSERT INTO entrega (pedido_id, peso_kg, origem_x, origem_y, destino_x, destino_y, prioridade)
+        SELECT pedido_id, peso_kg, origem_x, origem_y, destino_x, destino_y, prioridade
+          FROM entrega_importacao
+        ON CONFLICT (pedido_id) DO NOTHING
+        """;
+
+    private static final int TAMANHO_BUFFER_COPY = 64 * 1024;
+
     private static final String LIST_SQL = """
         SELECT id, pedido_id, peso_kg, origem_x, origem_y, destino_x, destino_y,
                prioridade, drone_id, status, criado_em
@@ -31,6 +102,16 @@ public class EntregaDao {
          ORDER BY criado_em DESC
         """;
 
+    private static final String PENDENTES_SQL = """
+        SELECT id, pedido_id, peso_kg, origem_x, origem_y, destino_x, destino_y,
+               prioridade, drone_id, status, criado_em
+          FROM entrega
+         WHERE status = 'PENDENTE'
+         ORDER BY prioridade DESC, criado_em ASC, id ASC
+        """;
+
+    private static final int TAMANHO_PAGINA_CURSOR = 500;
+
     private final DataSource dataSource;
 
     public EntregaDao(DataSource dataSource) {
@@ -74,6 +155,177 @@ public class EntregaDao {
         }
     }
 
+    /**
+     * Insere as entregas em lotes na conexao informada, ignorando pedidos ja cadastrados; {@code id} e
+     * {@code criadoEm} dos registros sao ignorados. Nao faz commit: a transacao pertence a quem chama.
+     *
+     * @return entregas efetivamente inseridas, como gravadas no banco
+     */
+    public List<EntregaRecord> inserirEmLote(Connection connection, List<EntregaRecord> entregas) throws SQLException {
+        if (entregas.isEmpty()) {
+            return List.of();
+        }
+        List<EntregaRecord> inseridas = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(INSERT_LOTE_SQL, COLUNAS)) {
+            int pendentes = 0;
+            for (EntregaRecord entrega : entregas) {
+                ps.setString(1, entrega.pedidoId());
+                ps.setDouble(2, entrega.pesoKg());
+                ps.setInt(3, entrega.origemX());
+                ps.setInt(4, entrega.origemY());
+                ps.setInt(5, entrega.destinoX());
+                ps.setInt(6, entrega.destinoY());
+                ps.setInt(7, entrega.prioridade());
+                if (entrega.droneId() == null) {
+                    ps.setNull(8, java.sql.Types.BIGINT);
+                } else {
+                    ps.setLong(8, entrega.droneId());
+                }
+                ps.setString(9, entrega.status());
+                ps.addBatch();
+                if (++pendentes == TAMANHO_LOTE) {
+                    executarLote(ps, inseridas);
+                    pendentes = 0;
+                }
+            }
+            if (pendentes > 0) {
+                executarLote(ps, inseridas);
+            }
+        }
+        return inseridas;
+    }
+
+    /**
+     * Atribui as entregas de cada viagem ao drone e a viagem em um unico {@code UPDATE} sobre vetores,
+     * marcando-as como {@code ATRIBUIDA}. So altera entregas ainda pendentes. Nao faz commit: a
+     * transacao pertence a quem chama.
+     *
+     * @return entregas efetivamente atribuidas, como gravadas no banco
+     */
+    public List<EntregaRecord> atribuirEmLote(Connection connection, List<ViagemRecord> viagens) throws SQLException {
+        int total = 0;
+        for (ViagemRecord viagem : viagens) {
+            total += viagem.entregaIds().size();
+        }
+        if (total == 0) {
+            return List.of();
+        }
+        Long[] ids = new Long[total];
+        Long[] droneIds = new Long[total];
+        Long[] viagemIds = new Long[total];
+        int posicao = 0;
+        for (ViagemRecord viagem : viagens) {
+            for (Long entregaId : viagem.entregaIds()) {
+                ids[posicao] = entregaId;
+                droneIds[posicao] = viagem.droneId();
+                viagemIds[posicao] = viagem.id();
+                posicao++;
+            }
+        }
+
+        List<EntregaRecord> atribuidas = new ArrayList<>(total);
+        try (PreparedStatement ps = connection.prepareStatement(ATRIBUIR_SQL)) {
+            ps.setArray(1, connection.createArrayOf("bigint", ids));
+            ps.setArray(2, connection.createArrayOf("bigint", droneIds));
+            ps.setArray(3, connection.createArrayOf("bigint", viagemIds));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    atribuidas.add(map(rs));
+                }
+            }
+        }
+        return atribuidas;
+    }
+
+    /**
+     * Busca as entregas com os ids informados, qualquer que seja o status; ids inexistentes sao
+     * ignorados.
+     */
+    public List<EntregaRecord> buscarPorIds(Collection<Long> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<EntregaRecord> entregas = new ArrayList<>(ids.size());
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(BUSCAR_POR_IDS_SQL)) {
+            ps.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    entregas.add(map(rs));
+                }
+            }
+        }
+        return entregas;
+    }
+
+    /**
+     * Envia as entregas ao banco via {@code COPY ... FROM STDIN}, consumindo o iterador sob demanda e
+     * descarregando o buffer a cada {@value #TAMANHO_BUFFER_COPY} caracteres, sem materializar a carga.
+     * O COPY nao aceita {@code ON CONFLICT}, entao as linhas vao para uma tabela temporaria e dali para
+     * {@code entrega}, ignorando pedidos ja cadastrados ou repetidos na carga. Tudo roda em uma transacao:
+     * qualquer falha cancela a importacao inteira. Usa apenas pedido, peso, origem, destino e prioridade;
+     * os demais campos ficam com os valores padrao da tabela.
+     *
+     * @return quantidade de entregas gravadas, sem os pedidos duplicados
+     */
+    public long copiar(Iterator<EntregaRecord> entregas) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            CopyIn copyIn = null;
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(CRIAR_IMPORTACAO_SQL);
+                }
+                CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                copyIn = copyManager.copyIn(COPY_SQL);
+                StringBuilder buffer = new StringBuilder(TAMANHO_BUFFER_COPY + 256);
+                while (entregas.hasNext()) {
+                    appendCsv(buffer, entregas.next());
+                    if (buffer.length() >= TAMANHO_BUFFER_COPY) {
+                        escrever(copyIn, buffer);
+                    }
+                }
+                escrever(copyIn, buffer);
+                copyIn.endCopy();
+
+                long inseridas;
+                try (Statement statement = connection.createStatement()) {
+                    inseridas = statement.executeUpdate(INSERIR_IMPORTACAO_SQL);
+                }
+                connection.commit();
+                return inseridas;
+            } catch (SQLException | RuntimeException e) {
+                if (copyIn != null && copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private static void appendCsv(StringBuilder buffer, EntregaRecord entrega) {
+        buffer.append('"').append(entrega.pedidoId().replace("\"", "\"\"")).append('"').append(',')
+            .append(entrega.pesoKg()).append(',')
+            .append(entrega.origemX()).append(',')
+            .append(entrega.origemY()).append(',')
+            .append(entrega.destinoX()).append(',')
+            .append(entrega.destinoY()).append(',')
+            .append(entrega.prioridade()).append('\n');
+    }
+
+    private static void escrever(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        if (buffer.length() == 0) {
+            return;
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
     public List<EntregaRecord> listar() throws SQLException {
         List<EntregaRecord> entregas = new ArrayList<>();
         try (Connection connection = dataSource.getConnection();
@@ -86,6 +338,47 @@ public class EntregaDao {
         return entregas;
     }
 
+    /**
+     * Percorre as entregas pendentes em ordem de prioridade e chegada, entregando cada uma ao
+     * {@code destino} a medida que chega do banco. A consulta roda em uma transacao somente leitura
+     * para que o driver use um cursor e traga {@value #TAMANHO_PAGINA_CURSOR} linhas por vez, em vez
+     * de carregar o resultado inteiro.
+     *
+     * @return quantidade de entregas lidas
+     */
+    public long percorrerPendentes(Consumer<EntregaRecord> destino) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(PENDENTES_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(TAMANHO_PAGINA_CURSOR);
+                long total = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        destino.accept(map(rs));
+                        total++;
+                    }
+                }
+                connection.commit();
+                return total;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private void executarLote(PreparedStatement ps, List<EntregaRecord> inseridas) throws SQLException {
+        ps.executeBatch();
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            while (rs.next()) {
+                inseridas.add(map(rs));
+            }
+        }
+    }
+
     private EntregaRecord map(ResultSet rs) throws SQLException {
         LocalDateTime criadoEm = rs.getObject("criado_em", LocalDateTime.class);
         return new EntregaRecord(
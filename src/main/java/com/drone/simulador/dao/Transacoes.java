@@ -0,0 +1,41 @@
+package com.drone.simulador.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+
+import javax.sql.DataSource;
+
+/**
+ * Executa operacoes de varios DAOs em uma unica conexao e transacao.
+ */
+public class Transacoes {
+
+    private final DataSource dataSource;
+
+    public Transacoes(DataSource dataSource) {
+        this.dataSource = Objects.requireNonNull(dataSource, "dataSource nao pode ser nulo");
+    }
+
+    public <T> T executar(Operacao<T> operacao) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                T resultado = operacao.executar(connection);
+                connection.commit();
+                return resultado;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Operacao<T> {
+        T executar(Connection connection) throws SQLException;
+    }
+}
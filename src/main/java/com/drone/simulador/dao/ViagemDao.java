@@ -0,0 +1,74 @@
+package com.drone.simulador.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.drone.simulador.dao.model.ViagemRecord;
+
+public class ViagemDao {
+
+    private static final String INSERT_LOTE_SQL = """
+        INSERT INTO viagem (drone_id, peso_total_kg, distancia_km, tempo_horas)
+        VALUES (?, ?, ?, ?)
+        """;
+
+    private static final String[] COLUNAS = { "id", "criado_em" };
+
+    private static final int TAMANHO_LOTE = 1000;
+
+    /**
+     * Insere as viagens em lotes na conexao informada. Nao faz commit: a transacao pertence a quem chama.
+     *
+     * @return as viagens na ordem recebida, com {@code id} e {@code criadoEm} gerados pelo banco
+     */
+    public List<ViagemRecord> inserirEmLote(Connection connection, List<ViagemRecord> viagens) throws SQLException {
+        if (viagens.isEmpty()) {
+            return List.of();
+        }
+        List<ViagemRecord> inseridas = new ArrayList<>(viagens.size());
+        try (PreparedStatement ps = connection.prepareStatement(INSERT_LOTE_SQL, COLUNAS)) {
+            int inicioLote = 0;
+            for (int i = 0; i < viagens.size(); i++) {
+                ViagemRecord viagem = viagens.get(i);
+                ps.setLong(1, viagem.droneId());
+                ps.setDouble(2, viagem.pesoTotalKg());
+                ps.setDouble(3, viagem.distanciaKm());
+                ps.setDouble(4, viagem.tempoHoras());
+                ps.addBatch();
+                if (i + 1 - inicioLote == TAMANHO_LOTE) {
+                    executarLote(ps, viagens.subList(inicioLote, i + 1), inseridas);
+                    inicioLote = i + 1;
+                }
+            }
+            if (inicioLote < viagens.size()) {
+                executarLote(ps, viagens.subList(inicioLote, viagens.size()), inseridas);
+            }
+        }
+        return inseridas;
+    }
+
+    private static void executarLote(PreparedStatement ps, List<ViagemRecord> lote, List<ViagemRecord> inseridas) throws SQLException {
+        ps.executeBatch();
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            for (ViagemRecord viagem : lote) {
+                if (!rs.next()) {
+                    throw new SQLException("Falha ao inserir viagens: chaves geradas incompletas");
+                }
+                inseridas.add(new ViagemRecord(
+                    rs.getLong("id"),
+                    viagem.droneId(),
+                    viagem.pesoTotalKg(),
+                    viagem.distanciaKm(),
+                    viagem.tempoHoras(),
+                    viagem.entregaIds(),
+                    rs.getObject("criado_em", LocalDateTime.class)
+                ));
+            }
+        }
+    }
+}
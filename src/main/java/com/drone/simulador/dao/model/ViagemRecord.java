@@ -0,0 +1,14 @@
+package com.drone.simulador.dao.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record ViagemRecord(
+    Long id,
+    Long droneId,
+    double pesoTotalKg,
+    double distanciaKm,
+    double tempoHoras,
+    List<Long> entregaIds,
+    LocalDateTime criadoEm
+) {}
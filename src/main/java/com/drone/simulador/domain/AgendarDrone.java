@@ -1,46 +1,171 @@
 package com.drone.simulador.domain;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.PriorityQueue;
-import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class AgendarDrone {
 
-    private static final Comparator<Pedido> ORDENACAO_POR_PRIORIDADE_E_CHEGADA =
+    static final Comparator<Pedido> ORDENACAO_POR_PRIORIDADE_E_CHEGADA =
         Comparator.comparingInt((Pedido p) -> p.getPrioridade().getPeso()).reversed()
-            .thenComparing(Pedido::getTempoChegada);
+            .thenComparing(Pedido::getTempoChegada)
+            .thenComparingLong(Pedido::getId);
 
     private static final int LIMITE_CANDIDATOS_COMBINACAO = 12;
+    private static final int CAPACIDADE_CACHE_ROTAS = 4096;
+    private static final int MAPAS_MEMORIZADOS = 8;
     private static final double TOLERANCIA = 1e-6;
 
+    private final int limiteCandidatos;
+    private final ForkJoinPool pool;
+    private final ModoAtribuicao modo;
+    private final int capacidadeCacheRotas;
+    private final long limiteMatrizBytes;
+    private final AtomicReference<EstatisticasCache> estatisticasCache = new AtomicReference<>(EstatisticasCache.VAZIA);
+    private final Map<ChaveMapa, MapaObstaculos> mapas = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ChaveMapa, MapaObstaculos> maisAntigo) {
+            return size() > MAPAS_MEMORIZADOS;
+        }
+    };
+
+    public AgendarDrone() {
+        this(LIMITE_CANDIDATOS_COMBINACAO);
+    }
+
+    public AgendarDrone(int limiteCandidatos) {
+        this(limiteCandidatos, null);
+    }
+
+    public AgendarDrone(int limiteCandidatos, ForkJoinPool pool) {
+        this(limiteCandidatos, pool, ModoAtribuicao.RODIZIO);
+    }
+
+    public AgendarDrone(int limiteCandidatos, ForkJoinPool pool, ModoAtribuicao modo) {
+        this(limiteCandidatos, pool, modo, CAPACIDADE_CACHE_ROTAS);
+    }
+
+    /**
+     * @param capacidadeCacheRotas numero maximo de subconjuntos memorizados por chamada de
+     *     {@link #planejar}; zero desativa o cache
+     */
+    public AgendarDrone(int limiteCandidatos, ForkJoinPool pool, ModoAtribuicao modo, int capacidadeCacheRotas) {
+        this(limiteCandidatos, pool, modo, capacidadeCacheRotas, MatrizDistancias.LIMITE_PADRAO_BYTES);
+    }
+
+    /**
+     * @param limiteMatrizBytes memoria maxima da matriz de distancias montada por chamada de
+     *     {@link #planejar}; acima dela as distancias sao calculadas a cada consulta
+     */
+    public AgendarDrone(int limiteCandidatos, ForkJoinPool pool, ModoAtribuicao modo, int capacidadeCacheRotas, long limiteMatrizBytes) {
+        if (limiteCandidatos <= 0) {
+            throw new IllegalArgumentException("Limite de candidatos deve ser positivo");
+        }
+        if (capacidadeCacheRotas < 0) {
+            throw new IllegalArgumentException("Capacidade do cache de rotas nao pode ser negativa");
+        }
+        if (limiteMatrizBytes < 0) {
+            throw new IllegalArgumentException("Limite da matriz de distancias nao pode ser negativo");
+        }
+        this.limiteCandidatos = limiteCandidatos;
+        this.pool = pool;
+        this.modo = Objects.requireNonNull(modo, "Modo de atribuicao nao pode ser nulo");
+        this.capacidadeCacheRotas = capacidadeCacheRotas;
+        this.limiteMatrizBytes = limiteMatrizBytes;
+    }
+
+    /**
+     * Acertos, falhas e despejos acumulados pelos caches de rota de todas as sessoes de planejamento.
+     */
+    public EstatisticasCache estatisticasCache() {
+        return estatisticasCache.get();
+    }
+
     public List<Viagem> planejar(List<Drone> drones, List<Pedido> pedidos) {
         return planejar(drones, pedidos, List.of());
     }
 
     public List<Viagem> planejar(List<Drone> drones, List<Pedido> pedidos, List<Obstaculo> obstaculos) {
+        return planejar(drones, pedidos, obstaculos, MelhoriaRota.NENHUMA);
+    }
+
+    public List<Viagem> planejar(List<Drone> drones, List<Pedido> pedidos, List<Obstaculo> obstaculos, MelhoriaRota melhoria) {
+        return planejar(drones, pedidos, obstaculos, melhoria, ModoDesvio.PERPENDICULAR);
+    }
+
+    /**
+     * @param desvio como contornar obstaculos; o mapa de obstaculos (com o cache de trechos do modo
+     *     {@link ModoDesvio#VISIBILIDADE}) e reaproveitado entre chamadas com os mesmos obstaculos
+     */
+    public List<Viagem> planejar(
+        List<Drone> drones,
+        List<Pedido> pedidos,
+        List<Obstaculo> obstaculos,
+        MelhoriaRota melhoria,
+        ModoDesvio desvio
+    ) {
         Objects.requireNonNull(drones, "Lista de drones nao pode ser nula");
         Objects.requireNonNull(pedidos, "Lista de pedidos nao pode ser nula");
         List<Obstaculo> obstaculosSeguros = obstaculos == null ? List.of() : obstaculos;
+        MelhoriaRota melhoriaSegura = melhoria == null ? MelhoriaRota.NENHUMA : melhoria;
         if (drones.isEmpty()) {
             return List.of();
         }
 
-        PriorityQueue<Pedido> fila = new PriorityQueue<>(ORDENACAO_POR_PRIORIDADE_E_CHEGADA);
-        fila.addAll(pedidos);
+        CacheRotas cache = capacidadeCacheRotas > 0 ? new CacheRotas(capacidadeCacheRotas, obstaculosSeguros) : null;
+        MatrizDistancias matriz = MatrizDistancias.criar(pedidos, mapaPara(obstaculosSeguros, desvio), limiteMatrizBytes);
+        Sessao sessao = new Sessao(matriz, melhoriaSegura, cache);
+        try {
+            return planejar(drones, pedidos, sessao);
+        } finally {
+            if (cache != null) {
+                estatisticasCache.accumulateAndGet(cache.estatisticas(), EstatisticasCache::somar);
+            }
+        }
+    }
+
+    MapaObstaculos mapaPara(List<Obstaculo> obstaculos, ModoDesvio desvio) {
+        ModoDesvio modo = desvio == null ? ModoDesvio.PERPENDICULAR : desvio;
+        List<Obstaculo> validos = obstaculos.stream().filter(Objects::nonNull).toList();
+        if (validos.isEmpty()) {
+            return MapaObstaculos.VAZIO;
+        }
+        ChaveMapa chave = new ChaveMapa(validos, modo);
+        synchronized (mapas) {
+            return mapas.computeIfAbsent(chave, c -> new MapaObstaculos(c.obstaculos(), c.modo()));
+        }
+    }
+
+    private List<Viagem> planejar(List<Drone> drones, List<Pedido> pedidos, Sessao sessao) {
+
+        FilaPedidos fila = new FilaPedidos(ORDENACAO_POR_PRIORIDADE_E_CHEGADA);
+        fila.adicionarTodos(pedidos);
 
         List<Viagem> viagens = new ArrayList<>();
+        double[] horasPorDrone = new double[drones.size()];
         int idxDrone = 0;
 
         while (!fila.isEmpty()) {
-            Drone droneAtual = drones.get(idxDrone);
-            idxDrone = (idxDrone + 1) % drones.size();
+            int indiceEscolhido;
+            List<Pedido> selecionados;
+            if (modo == ModoAtribuicao.MELHOR_DRONE) {
+                Escolha escolha = escolherMelhorDrone(drones, horasPorDrone, fila, sessao);
+                indiceEscolhido = escolha.indiceDrone();
+                selecionados = escolha.pedidos();
+            } else {
+                indiceEscolhido = idxDrone;
+                idxDrone = (idxDrone + 1) % drones.size();
+                selecionados = selecionarMelhorCombinacao(drones.get(indiceEscolhido), fila, sessao);
+            }
 
+            Drone droneAtual = drones.get(indiceEscolhido);
             Viagem viagem = new Viagem(droneAtual);
-            List<Pedido> selecionados = selecionarMelhorCombinacao(droneAtual, fila, obstaculosSeguros);
 
             if (selecionados.isEmpty()) {
                 Pedido pedido = fila.poll();
@@ -49,7 +174,7 @@ public class AgendarDrone {
                 }
             } else {
                 for (Pedido pedido : selecionados) {
-                    if (fila.remove(pedido)) {
+                    if (fila.remover(pedido)) {
                         viagem.adicionarPedido(pedido);
                     }
                 }
@@ -59,10 +184,11 @@ public class AgendarDrone {
                 continue;
             }
 
-            List<Partida> rota = ajustarPorAutonomia(viagem, fila, obstaculosSeguros);
+            List<Partida> rota = ajustarPorAutonomia(viagem, fila, sessao);
             double distancia = CalcularDistanciaPorTrajeto.gerar(rota);
             double tempoHoras = calcularTempoHoras(distancia, viagem.getDrone());
             viagem.definirRota(rota, distancia, tempoHoras);
+            horasPorDrone[indiceEscolhido] += tempoHoras;
 
             viagens.add(viagem);
         }
@@ -70,113 +196,97 @@ public class AgendarDrone {
         return viagens;
     }
 
-    private List<Pedido> selecionarMelhorCombinacao(Drone drone, PriorityQueue<Pedido> fila, List<Obstaculo> obstaculos) {
+    private List<Pedido> selecionarMelhorCombinacao(Drone drone, FilaPedidos fila, Sessao sessao) {
         if (fila.isEmpty()) {
             return List.of();
         }
-
-        List<Pedido> ordenados = new ArrayList<>(fila);
-        ordenados.sort(ORDENACAO_POR_PRIORIDADE_E_CHEGADA);
-        int limite = Math.min(LIMITE_CANDIDATOS_COMBINACAO, ordenados.size());
-        List<Pedido> candidatos = new ArrayList<>(ordenados.subList(0, limite));
-
-        MelhorCombinacao melhor = new MelhorCombinacao();
-        explorarCombinacoes(candidatos, 0, new ArrayList<>(), 0.0, drone, obstaculos, melhor);
-        return melhor.obterPedidos();
+        return sessao.busca(drone, candidatosDaFila(fila)).executar(pool);
     }
 
-    private void explorarCombinacoes(
-        List<Pedido> candidatos,
-        int indice,
-        List<Pedido> corrente,
-        double pesoAtual,
-        Drone drone,
-        List<Obstaculo> obstaculos,
-        MelhorCombinacao melhor
+    /**
+     * Avalia a melhor combinacao de cada drone sobre o mesmo recorte da fila e escolhe a de melhor
+     * ranking; empates ficam com o drone menos ocupado e, depois, com o primeiro da lista. Sem nenhuma
+     * combinacao viavel, o pedido do topo vai para o drone de maior autonomia.
+     */
+    private Escolha escolherMelhorDrone(
+        List<Drone> drones,
+        double[] horasPorDrone,
+        FilaPedidos fila,
+        Sessao sessao
     ) {
-        if (indice >= candidatos.size()) {
-            avaliarCombinacao(corrente, drone, obstaculos, melhor);
-            return;
-        }
-
-        Pedido pedido = candidatos.get(indice);
-
-        double novoPeso = pesoAtual + pedido.getPesoEmKg();
-        if (novoPeso <= drone.getCapacidadePorPeso() + TOLERANCIA) {
-            corrente.add(pedido);
-            explorarCombinacoes(candidatos, indice + 1, corrente, novoPeso, drone, obstaculos, melhor);
-            corrente.remove(corrente.size() - 1);
-        }
-
-        explorarCombinacoes(candidatos, indice + 1, corrente, pesoAtual, drone, obstaculos, melhor);
-    }
-
-    private void avaliarCombinacao(List<Pedido> combinacao, Drone drone, List<Obstaculo> obstaculos, MelhorCombinacao melhor) {
-        if (combinacao.isEmpty()) {
-            return;
+        List<Pedido> candidatos = candidatosDaFila(fila);
+        List<BuscaCombinacoes.MelhorCombinacao> resultados = new ArrayList<>(drones.size());
+        if (pool == null) {
+            for (Drone drone : drones) {
+                resultados.add(sessao.busca(drone, candidatos).buscar(null));
+            }
+        } else {
+            List<ForkJoinTask<BuscaCombinacoes.MelhorCombinacao>> tarefas = new ArrayList<>(drones.size());
+            for (Drone drone : drones) {
+                tarefas.add(pool.submit(sessao.busca(drone, candidatos).comoTarefa()));
+            }
+            for (ForkJoinTask<BuscaCombinacoes.MelhorCombinacao> tarefa : tarefas) {
+                resultados.add(tarefa.join());
+            }
         }
 
-        double pesoTotal = combinacao.stream().mapToDouble(Pedido::getPesoEmKg).sum();
-        if (pesoTotal > drone.getCapacidadePorPeso() + TOLERANCIA) {
-            return;
+        int escolhido = -1;
+        for (int i = 0; i < resultados.size(); i++) {
+            BuscaCombinacoes.CombinationRanking ranking = resultados.get(i).obterRanking();
+            if (ranking == null) {
+                continue;
+            }
+            if (escolhido < 0) {
+                escolhido = i;
+                continue;
+            }
+            int comparacao = ranking.compareTo(resultados.get(escolhido).obterRanking());
+            if (comparacao < 0 || (comparacao == 0 && horasPorDrone[i] < horasPorDrone[escolhido])) {
+                escolhido = i;
+            }
         }
 
-        List<Partida> rota = CalcularDistanciaPorTrajeto.buildRoute(combinacao, obstaculos);
-        double distancia = CalcularDistanciaPorTrajeto.gerar(rota);
-        double alcanceMaximo = drone.getDistanciaPorCarga();
-        if (alcanceMaximo > 0 && distancia > alcanceMaximo + TOLERANCIA) {
-            return;
+        if (escolhido < 0) {
+            int maiorAutonomia = 0;
+            for (int i = 1; i < drones.size(); i++) {
+                if (drones.get(i).getDistanciaPorCarga() > drones.get(maiorAutonomia).getDistanciaPorCarga()) {
+                    maiorAutonomia = i;
+                }
+            }
+            return new Escolha(maiorAutonomia, List.of());
         }
+        return new Escolha(escolhido, resultados.get(escolhido).obterPedidos());
+    }
 
-        int prioridadeTotal = combinacao.stream()
-            .mapToInt(p -> p.getPrioridade().getPeso())
-            .sum();
-        double pesoUso = pesoTotal / drone.getCapacidadePorPeso();
-        double alcanceUso = alcanceMaximo == 0 ? 0.0 : distancia / alcanceMaximo;
-        LocalDateTime chegadaMaisAntiga = combinacao.stream()
-            .map(Pedido::getTempoChegada)
-            .min(LocalDateTime::compareTo)
-            .orElse(null);
-
-        CombinationRanking ranking = new CombinationRanking(
-            prioridadeTotal,
-            combinacao.size(),
-            pesoUso,
-            alcanceUso,
-            chegadaMaisAntiga,
-            distancia
-        );
-
-        if (melhor.deveAtualizar(ranking)) {
-            melhor.atualizar(List.copyOf(combinacao), ranking);
-        }
+    private List<Pedido> candidatosDaFila(FilaPedidos fila) {
+        return fila.topo(limiteCandidatos);
     }
 
-    private List<Partida> ajustarPorAutonomia(Viagem viagem, Queue<Pedido> restantes, List<Obstaculo> obstaculos) {
+    private List<Partida> ajustarPorAutonomia(Viagem viagem, FilaPedidos restantes, Sessao sessao) {
         while (true) {
             if (viagem.getPedidos().isEmpty()) {
                 return List.of(Partida.DEPOSITO, Partida.DEPOSITO);
             }
 
-            var rota = CalcularDistanciaPorTrajeto.buildRoute(viagem.getPedidos(), obstaculos);
+            var rota = sessao.rota(viagem.getPedidos());
             double distanciaTotal = CalcularDistanciaPorTrajeto.gerar(rota);
             double autonomiaDisponivel = viagem.getDrone().getDistanciaPorCarga();
 
-            if (distanciaTotal <= autonomiaDisponivel + TOLERANCIA) {
+            if (distanciaTotal <= autonomiaDisponivel + TOLERANCIA || viagem.getPedidos().size() == 1) {
                 return rota;
             }
 
-            Pedido remover = selecionarMenosCritico(viagem.getPedidos());
+            Pedido remover = selecionarMenosCritico(viagem.getPedidos(), sessao.matriz());
             if (remover == null) {
                 return rota;
             }
 
             viagem.removerPedido(remover);
-            restantes.add(remover);
+            restantes.adicionar(remover);
         }
     }
 
-    private double calcularTempoHoras(double distanciaTotal, Drone drone) {
+    static double calcularTempoHoras(double distanciaTotal, Drone drone) {
         double capacidadeDistancia = drone.getDistanciaPorCarga();
         double tempoDisponivel = drone.getTempoDeVooPorCarga();
         if (capacidadeDistancia > 0 && tempoDisponivel > 0) {
@@ -186,91 +296,55 @@ public class AgendarDrone {
         return distanciaTotal / velocidadePadrao;
     }
 
-    private Pedido selecionarMenosCritico(List<Pedido> pedidos) {
+    private Pedido selecionarMenosCritico(List<Pedido> pedidos, MatrizDistancias matriz) {
         return pedidos.stream()
             .sorted((a, b) -> {
                 int prioridadeComparada = Integer.compare(a.getPrioridade().getPeso(), b.getPrioridade().getPeso());
                 if (prioridadeComparada != 0) {
                     return prioridadeComparada;
                 }
-                double distanciaA = Partida.DEPOSITO.distanceTo(a.getLocalizacao());
-                double distanciaB = Partida.DEPOSITO.distanceTo(b.getLocalizacao());
+                double distanciaA = distanciaAoDeposito(a, matriz);
+                double distanciaB = distanciaAoDeposito(b, matriz);
                 return Double.compare(distanciaB, distanciaA);
             })
             .findFirst()
             .orElse(null);
     }
 
-    private static final class MelhorCombinacao {
-        private List<Pedido> pedidos = List.of();
-        private CombinationRanking ranking;
-
-        boolean deveAtualizar(CombinationRanking candidata) {
-            if (candidata == null) {
-                return false;
-            }
-            if (ranking == null) {
-                return true;
-            }
-            return candidata.compareTo(ranking) < 0;
+    private double distanciaAoDeposito(Pedido pedido, MatrizDistancias matriz) {
+        int posicao = matriz.posicao(pedido);
+        if (posicao < 0) {
+            return Partida.DEPOSITO.distanceTo(pedido.getLocalizacao());
         }
+        return matriz.distancia(MatrizDistancias.DEPOSITO, posicao);
+    }
 
-        void atualizar(List<Pedido> novosPedidos, CombinationRanking novaRanking) {
-            this.pedidos = novosPedidos;
-            this.ranking = novaRanking;
-        }
+    private record ChaveMapa(List<Obstaculo> obstaculos, ModoDesvio modo) {}
 
-        List<Pedido> obterPedidos() {
-            return pedidos;
-        }
-    }
+    private record Escolha(int indiceDrone, List<Pedido> pedidos) {}
 
-    private static final class CombinationRanking implements Comparable<CombinationRanking> {
-        private final int prioridadeTotal;
-        private final int quantidadePedidos;
-        private final double pesoUso;
-        private final double alcanceUso;
-        private final LocalDateTime chegadaMaisAntiga;
-        private final double distancia;
-
-        CombinationRanking(
-            int prioridadeTotal,
-            int quantidadePedidos,
-            double pesoUso,
-            double alcanceUso,
-            LocalDateTime chegadaMaisAntiga,
-            double distancia
-        ) {
-            this.prioridadeTotal = prioridadeTotal;
-            this.quantidadePedidos = quantidadePedidos;
-            this.pesoUso = pesoUso;
-            this.alcanceUso = alcanceUso;
-            this.chegadaMaisAntiga = chegadaMaisAntiga;
-            this.distancia = distancia;
+    private record Sessao(MatrizDistancias matriz, MelhoriaRota melhoria, CacheRotas cache) {
+
+        BuscaCombinacoes busca(Drone drone, List<Pedido> candidatos) {
+            return new BuscaCombinacoes(drone, candidatos, matriz, melhoria, cache);
         }
 
-        @Override
-        public int compareTo(CombinationRanking outro) {
-            int prioridade = Integer.compare(outro.prioridadeTotal, prioridadeTotal);
-            if (prioridade != 0) {
-                return prioridade;
-            }
-            int quantidade = Integer.compare(outro.quantidadePedidos, quantidadePedidos);
-            if (quantidade != 0) {
-                return quantidade;
-            }
-            int pesoComparado = Double.compare(outro.pesoUso, pesoUso);
-            if (pesoComparado != 0) {
-                return pesoComparado;
+        List<Partida> rota(List<Pedido> pedidos) {
+            if (cache == null) {
+                return CalcularDistanciaPorTrajeto.buildRoute(pedidos, matriz, melhoria);
             }
-            int alcanceComparado = Double.compare(outro.alcanceUso, alcanceUso);
-            if (alcanceComparado != 0) {
-                return alcanceComparado;
+            long[] chave = CacheRotas.chave(pedidos);
+            CacheRotas.RotaMemorizada memo = cache.buscar(chave);
+            if (memo != null && memo.rota() != null) {
+                return memo.rota();
             }
-            if (chegadaMaisAntiga != null && outro.chegadaMaisAntiga != null && !chegadaMaisAntiga.equals(outro.chegadaMaisAntiga)) {
-                return chegadaMaisAntiga.isBefore(outro.chegadaMaisAntiga) ? -1 : 1;
+            List<Partida> rota = CalcularDistanciaPorTrajeto.buildRoute(pedidos, matriz, melhoria);
+            if (memo == null) {
+                memo = new CacheRotas.RotaMemorizada(null, null, CalcularDistanciaPorTrajeto.gerar(rota));
+                cache.guardar(chave, memo);
             }
-            return Double.compare(distancia, outro.distancia);
+            memo.definirRota(rota);
+            return rota;
         }
     }
 }
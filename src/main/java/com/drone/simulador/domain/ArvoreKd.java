@@ -0,0 +1,120 @@
+package com.drone.simulador.domain;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Arvore k-d implicita (balanceada pela mediana) sobre pontos de entrega, com remocao logica para a
+ * construcao de rotas por vizinho mais proximo. Empates de distancia ficam com o menor indice, a mesma
+ * regra da busca linear sobre a lista de clientes.
+ */
+final class ArvoreKd {
+
+    private final double[] xs;
+    private final double[] ys;
+    private final int[] ordem;
+    private final int[] posicao;
+    private final int[] vivos;
+    private final boolean[] removido;
+
+    private int melhorIndice;
+    private double melhorDistancia;
+
+    /**
+     * Indexa os pontos {@code (xs[i], ys[i])}; os vetores sao referenciados, nao copiados.
+     */
+    ArvoreKd(double[] xs, double[] ys) {
+        int total = xs.length;
+        this.xs = xs;
+        this.ys = ys;
+        this.ordem = IntStream.range(0, total).toArray();
+        this.posicao = new int[total];
+        this.vivos = new int[total];
+        this.removido = new boolean[total];
+        construir(0, total, 0);
+        for (int p = 0; p < total; p++) {
+            posicao[ordem[p]] = p;
+        }
+    }
+
+    int maisProximo(double x, double y) {
+        melhorIndice = -1;
+        melhorDistancia = Double.MAX_VALUE;
+        buscar(x, y, 0, ordem.length, 0);
+        return melhorIndice;
+    }
+
+    void remover(int indice) {
+        if (removido[indice]) {
+            return;
+        }
+        removido[indice] = true;
+        int alvo = posicao[indice];
+        int lo = 0;
+        int hi = ordem.length;
+        while (lo < hi) {
+            int meio = (lo + hi) >>> 1;
+            vivos[meio]--;
+            if (alvo == meio) {
+                return;
+            }
+            if (alvo < meio) {
+                hi = meio;
+            } else {
+                lo = meio + 1;
+            }
+        }
+    }
+
+    private void construir(int lo, int hi, int profundidade) {
+        if (lo >= hi) {
+            return;
+        }
+        double[] eixo = profundidade % 2 == 0 ? xs : ys;
+        Integer[] faixa = new Integer[hi - lo];
+        for (int i = lo; i < hi; i++) {
+            faixa[i - lo] = ordem[i];
+        }
+        Arrays.sort(faixa, Comparator.<Integer>comparingDouble(i -> eixo[i]).thenComparingInt(i -> i));
+        for (int i = lo; i < hi; i++) {
+            ordem[i] = faixa[i - lo];
+        }
+        int meio = (lo + hi) >>> 1;
+        vivos[meio] = hi - lo;
+        construir(lo, meio, profundidade + 1);
+        construir(meio + 1, hi, profundidade + 1);
+    }
+
+    private void buscar(double x, double y, int lo, int hi, int profundidade) {
+        if (lo >= hi) {
+            return;
+        }
+        int meio = (lo + hi) >>> 1;
+        if (vivos[meio] == 0) {
+            return;
+        }
+
+        int indice = ordem[meio];
+        if (!removido[indice]) {
+            double distancia = Geometria.distancia(x, y, xs[indice], ys[indice]);
+            if (distancia < melhorDistancia || (distancia == melhorDistancia && indice < melhorIndice)) {
+                melhorDistancia = distancia;
+                melhorIndice = indice;
+            }
+        }
+
+        double diferenca = profundidade % 2 == 0 ? x - xs[indice] : y - ys[indice];
+        if (diferenca < 0) {
+            buscar(x, y, lo, meio, profundidade + 1);
+            if (-diferenca <= melhorDistancia) {
+                buscar(x, y, meio + 1, hi, profundidade + 1);
+            }
+        } else {
+            buscar(x, y, meio + 1, hi, profundidade + 1);
+            if (diferenca <= melhorDistancia) {
+                buscar(x, y, lo, meio, profundidade + 1);
+            }
+        }
+    }
+}
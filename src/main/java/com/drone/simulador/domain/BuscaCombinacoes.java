@@ -0,0 +1,687 @@
+package com.drone.simulador.domain;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+/**
+ * Busca branch-and-bound da melhor combinacao de pedidos para um drone.
+ *
+ * <p>Percorre os subconjuntos na mesma ordem da enumeracao exaustiva original (inclusao primeiro,
+ * avaliacao em pos-ordem), de modo que o resultado e identico, mas poda subarvores que nao podem
+ * superar o melhor ranking conhecido ou cuja distancia minima ja excede a autonomia do drone. A rota
+ * por vizinho mais proximo e mantida incrementalmente a cada pedido incluido, sobre vetores de
+ * coordenadas e um {@link Espaco} de trabalho por tarefa, sem alocar por subconjunto avaliado.
+ */
+final class BuscaCombinacoes {
+
+    private static final double TOLERANCIA = 1e-6;
+    private static final int LIMIAR_SEQUENCIAL = 8;
+
+    private final List<Pedido> candidatos;
+    private final MatrizDistancias matriz;
+    private final MelhoriaRota melhoria;
+    private final CacheRotas cache;
+    private final int total;
+    private final long[] ids;
+    private final int[] posicoes;
+    private final boolean[] temPonto;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] pesos;
+    private final int[] prioridades;
+    private final LocalDateTime[] chegadas;
+    private final double[] distanciaDeposito;
+    private final int[] ordemPorPeso;
+    private final int[] ordemPorDensidade;
+    private final double capacidade;
+    private final double alcanceMaximo;
+    private final AtomicReference<CombinationRanking> referenciaGlobal = new AtomicReference<>();
+
+    BuscaCombinacoes(Drone drone, List<Pedido> candidatos, List<Obstaculo> obstaculos) {
+        this(drone, candidatos, obstaculos, MelhoriaRota.NENHUMA);
+    }
+
+    BuscaCombinacoes(Drone drone, List<Pedido> candidatos, List<Obstaculo> obstaculos, MelhoriaRota melhoria) {
+        this(drone, candidatos, obstaculos, melhoria, null);
+    }
+
+    BuscaCombinacoes(Drone drone, List<Pedido> candidatos, List<Obstaculo> obstaculos, MelhoriaRota melhoria, CacheRotas cache) {
+        this(drone, candidatos,
+            MatrizDistancias.criar(candidatos, new MapaObstaculos(obstaculos), MatrizDistancias.LIMITE_PADRAO_BYTES),
+            melhoria, cache);
+    }
+
+    /**
+     * @param matriz distancias da sessao; deve conter todos os candidatos com localizacao
+     */
+    BuscaCombinacoes(Drone drone, List<Pedido> candidatos, MatrizDistancias matriz, MelhoriaRota melhoria, CacheRotas cache) {
+        Objects.requireNonNull(drone, "Drone nao pode ser nulo");
+        this.candidatos = List.copyOf(Objects.requireNonNull(candidatos, "Candidatos nao podem ser nulos"));
+        this.matriz = Objects.requireNonNull(matriz, "Matriz de distancias nao pode ser nula");
+        this.melhoria = melhoria == null ? MelhoriaRota.NENHUMA : melhoria;
+        this.cache = cache;
+        this.total = this.candidatos.size();
+        this.ids = new long[total];
+        this.posicoes = new int[total];
+        this.temPonto = new boolean[total];
+        this.xs = new double[total];
+        this.ys = new double[total];
+        this.pesos = new double[total];
+        this.prioridades = new int[total];
+        this.chegadas = new LocalDateTime[total];
+        this.distanciaDeposito = new double[total];
+        for (int i = 0; i < total; i++) {
+            Pedido pedido = this.candidatos.get(i);
+            Partida ponto = pedido.getLocalizacao();
+            ids[i] = pedido.getId();
+            temPonto[i] = ponto != null;
+            posicoes[i] = ponto == null ? -1 : matriz.posicao(pedido);
+            if (ponto != null) {
+                if (posicoes[i] < 0) {
+                    throw new IllegalArgumentException("Pedido " + pedido.getId() + " ausente da matriz de distancias");
+                }
+                xs[i] = ponto.x();
+                ys[i] = ponto.y();
+                distanciaDeposito[i] = matriz.distancia(MatrizDistancias.DEPOSITO, posicoes[i]);
+            }
+            pesos[i] = pedido.getPesoEmKg();
+            prioridades[i] = pedido.getPrioridade().getPeso();
+            chegadas[i] = pedido.getTempoChegada();
+        }
+        this.ordemPorPeso = ordenarIndices(Comparator.comparingDouble(i -> pesos[i]));
+        this.ordemPorDensidade = ordenarIndices(
+            Comparator.comparingDouble((Integer i) -> prioridades[i] / Math.max(pesos[i], TOLERANCIA)).reversed()
+        );
+        this.capacidade = drone.getCapacidadePorPeso();
+        this.alcanceMaximo = drone.getDistanciaPorCarga();
+    }
+
+    List<Pedido> executar() {
+        return executar(null);
+    }
+
+    /**
+     * Executa a busca; com {@code pool} nao nulo as subarvores de inclusao sao avaliadas como
+     * {@link RecursiveTask}s e combinadas na ordem da enumeracao, produzindo o mesmo resultado da
+     * execucao sequencial.
+     */
+    List<Pedido> executar(ForkJoinPool pool) {
+        return buscar(pool).obterPedidos();
+    }
+
+    MelhorCombinacao buscar(ForkJoinPool pool) {
+        if (pool == null) {
+            MelhorCombinacao melhor = new MelhorCombinacao();
+            if (total > 0) {
+                explorar(new Espaco(total), 0, 0, melhor);
+            }
+            return melhor;
+        }
+        return pool.invoke(comoTarefa());
+    }
+
+    RecursiveTask<MelhorCombinacao> comoTarefa() {
+        return new TarefaBusca(0, 0, new Espaco(total));
+    }
+
+    private void explorar(Espaco espaco, int nivel, int inicio, MelhorCombinacao melhor) {
+        for (int j = inicio; j < total; j++) {
+            if (expandir(espaco, nivel, j, melhor)) {
+                explorar(espaco, nivel + 1, j + 1, melhor);
+            }
+        }
+        if (nivel > 0) {
+            avaliar(espaco, nivel, melhor);
+        }
+    }
+
+    /**
+     * Tenta incluir o candidato {@code j} no subconjunto do {@code nivel}, gravando o resultado no
+     * nivel seguinte do espaco de trabalho.
+     *
+     * @return {@code false} quando a extensao e podada
+     */
+    private boolean expandir(Espaco espaco, int nivel, int j, MelhorCombinacao melhor) {
+        double novoPeso = espaco.peso[nivel] + pesos[j];
+        if (novoPeso > capacidade + TOLERANCIA) {
+            return false;
+        }
+        double novoDiametro = diametroCom(espaco, nivel, j);
+        if (alcanceMaximo > 0 && 2 * novoDiametro > alcanceMaximo + 2 * TOLERANCIA) {
+            return false;
+        }
+        if (!podeSuperar(espaco.prioridade[nivel] + prioridades[j], nivel + 1, j + 1, capacidade - novoPeso, melhor)) {
+            return false;
+        }
+        incluir(espaco, nivel, j, novoPeso, novoDiametro);
+        return true;
+    }
+
+    private void avaliar(Espaco espaco, int nivel, MelhorCombinacao melhor) {
+        int[] indices = espaco.indices;
+        double pesoTotal = espaco.peso[nivel];
+        if (pesoTotal > capacidade + TOLERANCIA) {
+            return;
+        }
+
+        double distancia = espaco.distancia[nivel];
+        if (alcanceMaximo > 0 && distancia > alcanceMaximo + TOLERANCIA) {
+            distancia = distanciaMelhorada(espaco, nivel);
+            if (distancia > alcanceMaximo + TOLERANCIA) {
+                return;
+            }
+        }
+
+        double pesoUso = pesoTotal / capacidade;
+        double alcanceUso = alcanceMaximo == 0 ? 0.0 : distancia / alcanceMaximo;
+        LocalDateTime chegadaMaisAntiga = chegadas[indices[0]];
+        for (int k = 1; k < nivel; k++) {
+            LocalDateTime chegada = chegadas[indices[k]];
+            if (chegada.compareTo(chegadaMaisAntiga) < 0) {
+                chegadaMaisAntiga = chegada;
+            }
+        }
+
+        int prioridade = espaco.prioridade[nivel];
+        if (melhor.ranking != null
+            && CombinationRanking.comparar(prioridade, nivel, pesoUso, alcanceUso, chegadaMaisAntiga, distancia, melhor.ranking) >= 0) {
+            return;
+        }
+
+        CombinationRanking ranking = new CombinationRanking(prioridade, nivel, pesoUso, alcanceUso, chegadaMaisAntiga, distancia);
+        Pedido[] combinacao = new Pedido[nivel];
+        for (int k = 0; k < nivel; k++) {
+            combinacao[k] = candidatos.get(indices[k]);
+        }
+        melhor.atualizar(List.of(combinacao), ranking);
+        referenciaGlobal.accumulateAndGet(ranking, (atual, nova) -> atual == null || nova.compareTo(atual) < 0 ? nova : atual);
+    }
+
+    /**
+     * Limite superior lexicografico (prioridade total, quantidade) de qualquer extensao do subconjunto
+     * usando apenas candidatos a partir de {@code inicio}: mochila fracionaria para a prioridade e os
+     * pedidos mais leves primeiro para a quantidade. Como so poda quando o par e estritamente inferior,
+     * nunca descarta um empate e pode usar o melhor ranking publicado por outras tarefas.
+     */
+    private boolean podeSuperar(int prioridade, int quantidade, int inicio, double capacidadeRestante, MelhorCombinacao melhor) {
+        CombinationRanking atual = melhor.ranking;
+        CombinationRanking global = referenciaGlobal.get();
+        if (atual == null || (global != null && global.compareTo(atual) < 0)) {
+            atual = global;
+        }
+        if (atual == null) {
+            return true;
+        }
+
+        double limitePrioridade = prioridade;
+        double restante = capacidadeRestante + 2 * TOLERANCIA;
+        for (int indice : ordemPorDensidade) {
+            if (indice < inicio || restante <= 0) {
+                continue;
+            }
+            if (pesos[indice] <= restante) {
+                limitePrioridade += prioridades[indice];
+                restante -= pesos[indice];
+            } else {
+                limitePrioridade += prioridades[indice] * (restante / pesos[indice]);
+                restante = 0;
+            }
+        }
+        int prioridadeMaxima = (int) Math.floor(limitePrioridade + TOLERANCIA);
+        if (prioridadeMaxima != atual.prioridadeTotal) {
+            return prioridadeMaxima > atual.prioridadeTotal;
+        }
+
+        int quantidadeMaxima = quantidade;
+        restante = capacidadeRestante + 2 * TOLERANCIA;
+        for (int indice : ordemPorPeso) {
+            if (indice < inicio) {
+                continue;
+            }
+            if (pesos[indice] > restante) {
+                break;
+            }
+            quantidadeMaxima++;
+            restante -= pesos[indice];
+        }
+        return quantidadeMaxima >= atual.quantidadePedidos;
+    }
+
+    /**
+     * Qualquer rota fechada que passe por dois pontos mede pelo menos o dobro da distancia entre eles,
+     * entao o dobro do diametro de {deposito} + subconjunto e um limite inferior monotono da distancia.
+     */
+    private double diametroCom(Espaco espaco, int nivel, int indice) {
+        if (!temPonto[indice]) {
+            return espaco.diametro[nivel];
+        }
+        double diametro = Math.max(espaco.diametro[nivel], distanciaDeposito[indice]);
+        for (int k = 0; k < nivel; k++) {
+            int outro = espaco.indices[k];
+            if (temPonto[outro]) {
+                diametro = Math.max(diametro, matriz.distancia(posicoes[indice], posicoes[outro]));
+            }
+        }
+        return diametro;
+    }
+
+    /**
+     * Inclui o candidato {@code indice} no subconjunto do {@code nivel}. O novo ponto e o ultimo da lista
+     * de clientes, entao so vence o vizinho mais proximo original quando e estritamente mais proximo; ate
+     * esse passo o tour permanece igual e apenas o restante e recalculado.
+     */
+    private void incluir(Espaco espaco, int nivel, int indice, double novoPeso, double novoDiametro) {
+        int proximoNivel = nivel + 1;
+        espaco.indices[nivel] = indice;
+        espaco.peso[proximoNivel] = novoPeso;
+        espaco.prioridade[proximoNivel] = espaco.prioridade[nivel] + prioridades[indice];
+        espaco.diametro[proximoNivel] = novoDiametro;
+
+        int[] tour = espaco.tour[nivel];
+        double[] acumulado = espaco.acumulado[nivel];
+        int paradas = espaco.paradas[nivel];
+        int[] novoTour = espaco.tour[proximoNivel];
+        double[] novoAcumulado = espaco.acumulado[proximoNivel];
+
+        if (!temPonto[indice]) {
+            System.arraycopy(tour, 0, novoTour, 0, paradas);
+            System.arraycopy(acumulado, 0, novoAcumulado, 0, paradas + 1);
+            espaco.paradas[proximoNivel] = paradas;
+            espaco.distancia[proximoNivel] = espaco.distancia[nivel];
+            espaco.memo[proximoNivel] = null;
+            return;
+        }
+
+        long[] chave = null;
+        CacheRotas.RotaMemorizada anterior = null;
+        if (cache != null) {
+            chave = espaco.chaves[proximoNivel];
+            for (int k = 0; k < proximoNivel; k++) {
+                chave[k] = ids[espaco.indices[k]];
+            }
+            Arrays.sort(chave);
+            anterior = cache.buscar(chave);
+            if (anterior != null && anterior.ordem != null) {
+                for (int k = 0; k < anterior.ordem.length; k++) {
+                    novoTour[k] = indiceDoId(espaco, proximoNivel, anterior.ordem[k]);
+                }
+                System.arraycopy(anterior.acumulado, 0, novoAcumulado, 0, anterior.acumulado.length);
+                espaco.paradas[proximoNivel] = anterior.ordem.length;
+                espaco.distancia[proximoNivel] = anterior.distancia;
+                espaco.memo[proximoNivel] = anterior;
+                return;
+            }
+        }
+
+        int ponto = posicoes[indice];
+        int atual = MatrizDistancias.DEPOSITO;
+        int passo = 0;
+        while (passo < paradas) {
+            int escolhido = posicoes[tour[passo]];
+            if (matriz.distancia(atual, ponto) < matriz.distancia(atual, escolhido)) {
+                break;
+            }
+            atual = escolhido;
+            passo++;
+        }
+        System.arraycopy(tour, 0, novoTour, 0, passo);
+        System.arraycopy(acumulado, 0, novoAcumulado, 0, passo + 1);
+
+        int[] pendentes = espaco.pendentes;
+        int quantidadePendentes = paradas - passo;
+        for (int p = 0; p < quantidadePendentes; p++) {
+            int valor = tour[passo + p];
+            int q = p;
+            while (q > 0 && pendentes[q - 1] > valor) {
+                pendentes[q] = pendentes[q - 1];
+                q--;
+            }
+            pendentes[q] = valor;
+        }
+        boolean[] visitado = espaco.visitado;
+        Arrays.fill(visitado, 0, quantidadePendentes, false);
+
+        double[] desvio = espaco.desvio;
+        novoTour[passo] = indice;
+        novoAcumulado[passo + 1] = matriz.somarTrecho(novoAcumulado[passo], atual, ponto, desvio);
+        atual = ponto;
+        for (int k = passo + 1; k <= paradas; k++) {
+            int proximo = -1;
+            double menorDistancia = Double.MAX_VALUE;
+            for (int p = 0; p < quantidadePendentes; p++) {
+                if (visitado[p]) {
+                    continue;
+                }
+                double d = matriz.distancia(atual, posicoes[pendentes[p]]);
+                if (d < menorDistancia) {
+                    menorDistancia = d;
+                    proximo = p;
+                }
+            }
+            visitado[proximo] = true;
+            novoTour[k] = pendentes[proximo];
+            int destino = posicoes[pendentes[proximo]];
+            novoAcumulado[k + 1] = matriz.somarTrecho(novoAcumulado[k], atual, destino, desvio);
+            atual = destino;
+        }
+
+        int novasParadas = paradas + 1;
+        double novaDistancia = matriz.somarTrecho(novoAcumulado[novasParadas], atual, MatrizDistancias.DEPOSITO, desvio);
+        espaco.paradas[proximoNivel] = novasParadas;
+        espaco.distancia[proximoNivel] = novaDistancia;
+
+        CacheRotas.RotaMemorizada memo = null;
+        if (chave != null) {
+            long[] ordem = new long[novasParadas];
+            for (int k = 0; k < novasParadas; k++) {
+                ordem[k] = ids[novoTour[k]];
+            }
+            memo = new CacheRotas.RotaMemorizada(ordem, Arrays.copyOf(novoAcumulado, novasParadas + 1), novaDistancia);
+            if (anterior != null && anterior.rota() != null) {
+                memo.definirRota(anterior.rota());
+            }
+            cache.guardar(chave.clone(), memo);
+        }
+        espaco.memo[proximoNivel] = memo;
+    }
+
+    private int indiceDoId(Espaco espaco, int quantidade, long id) {
+        for (int k = 0; k < quantidade; k++) {
+            if (ids[espaco.indices[k]] == id) {
+                return espaco.indices[k];
+            }
+        }
+        throw new IllegalStateException("Pedido " + id + " ausente do subconjunto memorizado");
+    }
+
+    /**
+     * Aplica a melhoria ao tour do subconjunto, reproduzindo o que {@link CalcularDistanciaPorTrajeto}
+     * fara ao montar a rota final, para recuperar combinacoes que so cabem na autonomia apos a busca local.
+     * Como la, o tour melhorado so vale se for mais curto com os desvios.
+     */
+    private double distanciaMelhorada(Espaco espaco, int nivel) {
+        int paradas = espaco.paradas[nivel];
+        if (melhoria == MelhoriaRota.NENHUMA || paradas < 3) {
+            return espaco.distancia[nivel];
+        }
+        CacheRotas.RotaMemorizada memo = espaco.memo[nivel];
+        if (memo != null && !Double.isNaN(memo.distanciaMelhorada())) {
+            return memo.distanciaMelhorada();
+        }
+        double distancia = calcularDistanciaMelhorada(espaco, nivel);
+        if (memo != null) {
+            memo.definirDistanciaMelhorada(distancia);
+        }
+        return distancia;
+    }
+
+    private double calcularDistanciaMelhorada(Espaco espaco, int nivel) {
+        int paradas = espaco.paradas[nivel];
+        int[] tourNivel = espaco.tour[nivel];
+        double[] xsRota = espaco.xsRota;
+        double[] ysRota = espaco.ysRota;
+        int[] posicoesRota = espaco.posicoesRota;
+        int[] tour = espaco.tourRota(paradas);
+        xsRota[0] = Partida.DEPOSITO.x();
+        ysRota[0] = Partida.DEPOSITO.y();
+        posicoesRota[0] = MatrizDistancias.DEPOSITO;
+        for (int k = 0; k < paradas; k++) {
+            xsRota[k + 1] = xs[tourNivel[k]];
+            ysRota[k + 1] = ys[tourNivel[k]];
+            posicoesRota[k + 1] = posicoes[tourNivel[k]];
+        }
+        for (int k = 0; k <= paradas; k++) {
+            tour[k] = k;
+        }
+        tour[paradas + 1] = 0;
+        if (!melhoria.melhorar(xsRota, ysRota, tour)) {
+            return espaco.distancia[nivel];
+        }
+        double distancia = 0.0;
+        for (int k = 0; k < tour.length - 1; k++) {
+            distancia = matriz.somarTrecho(distancia, posicoesRota[tour[k]], posicoesRota[tour[k + 1]], espaco.desvio);
+        }
+        return Math.min(distancia, espaco.distancia[nivel]);
+    }
+
+    private int[] ordenarIndices(Comparator<Integer> comparador) {
+        return IntStream.range(0, total)
+            .boxed()
+            .sorted(comparador)
+            .mapToInt(Integer::intValue)
+            .toArray();
+    }
+
+    /**
+     * Divide a arvore de inclusao/exclusao: cada filho incluido vira uma subtarefa com uma copia do
+     * proprio nivel do espaco de trabalho, e o no e avaliado por ultimo, como na pos-ordem sequencial.
+     * Os resultados sao combinados nessa ordem e, em caso de empate, vence a combinacao enumerada primeiro.
+     * A tarefa nunca e serializada, apesar de {@link RecursiveTask} ser {@code Serializable}.
+     */
+    @SuppressWarnings("serial")
+    private final class TarefaBusca extends RecursiveTask<MelhorCombinacao> {
+        private final int inicio;
+        private final int nivel;
+        private final Espaco espaco;
+
+        TarefaBusca(int inicio, int nivel, Espaco espaco) {
+            this.inicio = inicio;
+            this.nivel = nivel;
+            this.espaco = espaco;
+        }
+
+        @Override
+        protected MelhorCombinacao compute() {
+            MelhorCombinacao melhor = new MelhorCombinacao();
+            if (total - inicio <= LIMIAR_SEQUENCIAL) {
+                explorar(espaco, nivel, inicio, melhor);
+                return melhor;
+            }
+
+            List<TarefaBusca> subtarefas = new ArrayList<>();
+            for (int j = inicio; j < total; j++) {
+                if (expandir(espaco, nivel, j, melhor)) {
+                    subtarefas.add(new TarefaBusca(j + 1, nivel + 1, espaco.copiarNivel(nivel + 1)));
+                }
+            }
+            invokeAll(subtarefas);
+            for (TarefaBusca subtarefa : subtarefas) {
+                melhor = melhor.combinar(subtarefa.join());
+            }
+            if (nivel > 0) {
+                MelhorCombinacao proprio = new MelhorCombinacao();
+                avaliar(espaco, nivel, proprio);
+                melhor = melhor.combinar(proprio);
+            }
+            return melhor;
+        }
+    }
+
+    /**
+     * Espaco de trabalho de uma linha de execucao da busca, indexado pelo nivel (tamanho do subconjunto).
+     * {@code indices} guarda os candidatos na ordem de inclusao (crescente) e vale ate o nivel corrente;
+     * {@code tour[n]} guarda a ordem de visita do vizinho mais proximo do subconjunto de tamanho n e
+     * {@code acumulado[n][k]} a distancia percorrida ate chegar ao k-esimo ponto desse tour.
+     */
+    private static final class Espaco {
+        private final int[] indices;
+        private final double[] peso;
+        private final int[] prioridade;
+        private final double[] diametro;
+        private final int[][] tour;
+        private final int[] paradas;
+        private final double[][] acumulado;
+        private final double[] distancia;
+        private final CacheRotas.RotaMemorizada[] memo;
+        private final long[][] chaves;
+        private final int[] pendentes;
+        private final boolean[] visitado;
+        private final double[] desvio = new double[4];
+        private final double[] xsRota;
+        private final double[] ysRota;
+        private final int[] posicoesRota;
+        private final int[][] toursRota;
+
+        Espaco(int total) {
+            this.indices = new int[total];
+            this.peso = new double[total + 1];
+            this.prioridade = new int[total + 1];
+            this.diametro = new double[total + 1];
+            this.tour = new int[total + 1][total];
+            this.paradas = new int[total + 1];
+            this.acumulado = new double[total + 1][total + 1];
+            this.distancia = new double[total + 1];
+            this.memo = new CacheRotas.RotaMemorizada[total + 1];
+            this.chaves = new long[total + 1][];
+            for (int n = 0; n <= total; n++) {
+                chaves[n] = new long[n];
+            }
+            this.pendentes = new int[total];
+            this.visitado = new boolean[total];
+            this.xsRota = new double[total + 1];
+            this.ysRota = new double[total + 1];
+            this.posicoesRota = new int[total + 1];
+            this.toursRota = new int[total + 1][];
+        }
+
+        int[] tourRota(int paradas) {
+            int[] tourRota = toursRota[paradas];
+            if (tourRota == null) {
+                tourRota = new int[paradas + 2];
+                toursRota[paradas] = tourRota;
+            }
+            return tourRota;
+        }
+
+        Espaco copiarNivel(int nivel) {
+            Espaco copia = new Espaco(indices.length);
+            System.arraycopy(indices, 0, copia.indices, 0, nivel);
+            copia.peso[nivel] = peso[nivel];
+            copia.prioridade[nivel] = prioridade[nivel];
+            copia.diametro[nivel] = diametro[nivel];
+            copia.paradas[nivel] = paradas[nivel];
+            System.arraycopy(tour[nivel], 0, copia.tour[nivel], 0, paradas[nivel]);
+            System.arraycopy(acumulado[nivel], 0, copia.acumulado[nivel], 0, paradas[nivel] + 1);
+            copia.distancia[nivel] = distancia[nivel];
+            copia.memo[nivel] = memo[nivel];
+            return copia;
+        }
+    }
+
+    static final class MelhorCombinacao {
+        private List<Pedido> pedidos = List.of();
+        private CombinationRanking ranking;
+
+        boolean deveAtualizar(CombinationRanking candidata) {
+            if (candidata == null) {
+                return false;
+            }
+            if (ranking == null) {
+                return true;
+            }
+            return candidata.compareTo(ranking) < 0;
+        }
+
+        void atualizar(List<Pedido> novosPedidos, CombinationRanking novaRanking) {
+            this.pedidos = novosPedidos;
+            this.ranking = novaRanking;
+        }
+
+        List<Pedido> obterPedidos() {
+            return pedidos;
+        }
+
+        CombinationRanking obterRanking() {
+            return ranking;
+        }
+
+        MelhorCombinacao combinar(MelhorCombinacao posterior) {
+            if (posterior == null || posterior.ranking == null) {
+                return this;
+            }
+            if (ranking == null || posterior.ranking.compareTo(ranking) < 0) {
+                return posterior;
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Ordem das combinacoes: prioridade total e quantidade de pedidos maiores primeiro, depois maior uso
+     * da capacidade e da autonomia, chegada mais antiga e, por fim, menor distancia. Usos de capacidade
+     * que diferem menos que {@link #TOLERANCIA_USO} empatam, para que o arredondamento da soma dos
+     * pesos, que depende da ordem das parcelas, nao decida o ranking.
+     */
+    static final class CombinationRanking implements Comparable<CombinationRanking> {
+        private static final double TOLERANCIA_USO = 1e-9;
+
+        private final int prioridadeTotal;
+        private final int quantidadePedidos;
+        private final double pesoUso;
+        private final double alcanceUso;
+        private final LocalDateTime chegadaMaisAntiga;
+        private final double distancia;
+
+        CombinationRanking(
+            int prioridadeTotal,
+            int quantidadePedidos,
+            double pesoUso,
+            double alcanceUso,
+            LocalDateTime chegadaMaisAntiga,
+            double distancia
+        ) {
+            this.prioridadeTotal = prioridadeTotal;
+            this.quantidadePedidos = quantidadePedidos;
+            this.pesoUso = pesoUso;
+            this.alcanceUso = alcanceUso;
+            this.chegadaMaisAntiga = chegadaMaisAntiga;
+            this.distancia = distancia;
+        }
+
+        @Override
+        public int compareTo(CombinationRanking outro) {
+            return comparar(prioridadeTotal, quantidadePedidos, pesoUso, alcanceUso, chegadaMaisAntiga, distancia, outro);
+        }
+
+        /**
+         * Compara um ranking ainda nao construido com {@code outro}, para descartar candidatas sem alocar.
+         */
+        static int comparar(
+            int prioridadeTotal,
+            int quantidadePedidos,
+            double pesoUso,
+            double alcanceUso,
+            LocalDateTime chegadaMaisAntiga,
+            double distancia,
+            CombinationRanking outro
+        ) {
+            int prioridade = Integer.compare(outro.prioridadeTotal, prioridadeTotal);
+            if (prioridade != 0) {
+                return prioridade;
+            }
+            int quantidade = Integer.compare(outro.quantidadePedidos, quantidadePedidos);
+            if (quantidade != 0) {
+                return quantidade;
+            }
+            if (Math.abs(outro.pesoUso - pesoUso) > TOLERANCIA_USO) {
+                return Double.compare(outro.pesoUso, pesoUso);
+            }
+            int alcanceComparado = Double.compare(outro.alcanceUso, alcanceUso);
+            if (alcanceComparado != 0) {
+                return alcanceComparado;
+            }
+            if (chegadaMaisAntiga != null && outro.chegadaMaisAntiga != null && !chegadaMaisAntiga.equals(outro.chegadaMaisAntiga)) {
+                return chegadaMaisAntiga.isBefore(outro.chegadaMaisAntiga) ? -1 : 1;
+            }
+            return Double.compare(distancia, outro.distancia);
+        }
+    }
+}
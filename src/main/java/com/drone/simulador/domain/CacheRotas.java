@@ -0,0 +1,143 @@
+package com.drone.simulador.domain;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cache LRU de rotas por subconjunto de pedidos, valido durante uma sessao de planejamento. A chave e o
+ * conjunto ordenado de ids dos pedidos mais a impressao digital dos obstaculos; o valor guarda o tour
+ * por vizinho mais proximo, as distancias acumuladas e, quando calculadas, a distancia apos a melhoria
+ * local e a rota materializada.
+ */
+final class CacheRotas {
+
+    private final int capacidade;
+    private final long impressaoObstaculos;
+    private final LinkedHashMap<Chave, RotaMemorizada> entradas;
+    private long acertos;
+    private long falhas;
+    private long despejos;
+
+    CacheRotas(int capacidade, List<Obstaculo> obstaculos) {
+        if (capacidade <= 0) {
+            throw new IllegalArgumentException("Capacidade do cache deve ser positiva");
+        }
+        this.capacidade = capacidade;
+        this.impressaoObstaculos = impressao(obstaculos);
+        this.entradas = new LinkedHashMap<>(Math.min(capacidade, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Chave, RotaMemorizada> maisAntiga) {
+                if (size() > CacheRotas.this.capacidade) {
+                    despejos++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    synchronized RotaMemorizada buscar(long[] idsOrdenados) {
+        RotaMemorizada rota = entradas.get(new Chave(idsOrdenados, impressaoObstaculos));
+        if (rota == null) {
+            falhas++;
+        } else {
+            acertos++;
+        }
+        return rota;
+    }
+
+    synchronized void guardar(long[] idsOrdenados, RotaMemorizada rota) {
+        entradas.put(new Chave(idsOrdenados, impressaoObstaculos), Objects.requireNonNull(rota));
+    }
+
+    synchronized EstatisticasCache estatisticas() {
+        return new EstatisticasCache(acertos, falhas, despejos);
+    }
+
+    static long[] chave(List<Pedido> pedidos) {
+        long[] ids = new long[pedidos.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = pedidos.get(i).getId();
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private static long impressao(List<Obstaculo> obstaculos) {
+        long hash = 1125899906842597L;
+        if (obstaculos == null) {
+            return hash;
+        }
+        for (Obstaculo obstaculo : obstaculos) {
+            if (obstaculo == null) {
+                hash = 31 * hash;
+                continue;
+            }
+            hash = 31 * hash + Double.doubleToLongBits(obstaculo.x());
+            hash = 31 * hash + Double.doubleToLongBits(obstaculo.y());
+            hash = 31 * hash + Double.doubleToLongBits(obstaculo.raio());
+        }
+        return hash;
+    }
+
+    static final class RotaMemorizada {
+        final long[] ordem;
+        final double[] acumulado;
+        final double distancia;
+        private volatile double distanciaMelhorada = Double.NaN;
+        private volatile List<Partida> rota;
+
+        RotaMemorizada(long[] ordem, double[] acumulado, double distancia) {
+            this.ordem = ordem;
+            this.acumulado = acumulado;
+            this.distancia = distancia;
+        }
+
+        double distanciaMelhorada() {
+            return distanciaMelhorada;
+        }
+
+        void definirDistanciaMelhorada(double valor) {
+            this.distanciaMelhorada = valor;
+        }
+
+        List<Partida> rota() {
+            return rota;
+        }
+
+        void definirRota(List<Partida> novaRota) {
+            this.rota = List.copyOf(novaRota);
+        }
+    }
+
+    private static final class Chave {
+        private final long[] ids;
+        private final long impressaoObstaculos;
+        private final int hash;
+
+        Chave(long[] ids, long impressaoObstaculos) {
+            this.ids = ids;
+            this.impressaoObstaculos = impressaoObstaculos;
+            this.hash = 31 * Arrays.hashCode(ids) + Long.hashCode(impressaoObstaculos);
+        }
+
+        @Override
+        public boolean equals(Object outro) {
+            if (this == outro) {
+                return true;
+            }
+            if (!(outro instanceof Chave chave)) {
+                return false;
+            }
+            return impressaoObstaculos == chave.impressaoObstaculos && Arrays.equals(ids, chave.ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -1,12 +1,12 @@
 ﻿package com.drone.simulador.domain;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
 public final class CalcularDistanciaPorTrajeto {
+    private static final int LIMIAR_INDICE_ESPACIAL = 32;
+
     private CalcularDistanciaPorTrajeto() {
     }
 
@@ -15,89 +15,180 @@ public final class CalcularDistanciaPorTrajeto {
     }
 
     public static List<Partida> buildRoute(List<Pedido> pedidos, List<Obstaculo> obstaculos) {
+        return buildRoute(pedidos, obstaculos, MelhoriaRota.NENHUMA);
+    }
+
+    /**
+     * Monta a rota sobre vetores de coordenadas (indice 0 e o deposito) e so cria a lista de
+     * {@link Partida}s ao final, reaproveitando as localizacoes dos pedidos.
+     */
+    public static List<Partida> buildRoute(List<Pedido> pedidos, List<Obstaculo> obstaculos, MelhoriaRota melhoria) {
+        return buildRoute(pedidos, obstaculos, melhoria, ModoDesvio.PERPENDICULAR);
+    }
+
+    public static List<Partida> buildRoute(List<Pedido> pedidos, List<Obstaculo> obstaculos, MelhoriaRota melhoria, ModoDesvio desvio) {
         List<Pedido> pedidosSeguros = pedidos == null ? List.of() : pedidos;
+        MapaObstaculos mapa = new MapaObstaculos(obstaculos, desvio);
+        return buildRoute(pedidosSeguros, MatrizDistancias.criar(pedidosSeguros, mapa, 0), melhoria);
+    }
 
-        List<Partida> clientes = pedidosSeguros.stream()
-            .map(Pedido::getLocalizacao)
-            .filter(Objects::nonNull)
-            .collect(Collectors.toCollection(ArrayList::new));
+    /**
+     * Variante usada pelo planejador: as distancias vem da matriz da sessao, que deve conter todos os
+     * pedidos com localizacao.
+     */
+    static List<Partida> buildRoute(List<Pedido> pedidos, MatrizDistancias matriz, MelhoriaRota melhoria) {
+        List<Pedido> pedidosSeguros = pedidos == null ? List.of() : pedidos;
 
-        List<Partida> rotaBase = new ArrayList<>();
         Partida deposito = Partida.DEPOSITO;
         if (deposito == null) {
             throw new IllegalStateException("Deposito nao definido");
         }
 
-        Partida atual = deposito;
-        rotaBase.add(atual);
+        Partida[] pontos = new Partida[pedidosSeguros.size() + 1];
+        int[] posicoes = new int[pontos.length];
+        pontos[0] = deposito;
+        posicoes[0] = MatrizDistancias.DEPOSITO;
+        int quantidade = 1;
+        for (Pedido pedido : pedidosSeguros) {
+            Partida localizacao = pedido.getLocalizacao();
+            if (localizacao != null) {
+                int posicao = matriz.posicao(pedido);
+                if (posicao < 0) {
+                    throw new IllegalArgumentException("Pedido " + pedido.getId() + " ausente da matriz de distancias");
+                }
+                posicoes[quantidade] = posicao;
+                pontos[quantidade++] = localizacao;
+            }
+        }
+        double[] xs = new double[quantidade];
+        double[] ys = new double[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            xs[i] = pontos[i].x();
+            ys[i] = pontos[i].y();
+        }
 
-        while (!clientes.isEmpty()) {
-            Partida proximo = nearest(atual, clientes);
-            if (proximo == null) {
-                break;
+        int[] tour = construirTour(xs, ys, posicoes, matriz);
+        if (melhoria != null && melhoria != MelhoriaRota.NENHUMA) {
+            // a melhoria avalia trechos em linha reta; com desvios o tour reordenado pode ficar mais longo
+            int[] melhorado = tour.clone();
+            if (melhoria.melhorar(xs, ys, melhorado) && comprimento(melhorado, posicoes, matriz) < comprimento(tour, posicoes, matriz)) {
+                tour = melhorado;
             }
-            rotaBase.add(proximo);
-            clientes.remove(proximo);
-            atual = proximo;
         }
+        return materializar(pontos, xs, ys, tour, matriz.obstaculos());
+    }
 
-        rotaBase.add(deposito);
-        return ajustarRotaParaObstaculos(rotaBase, obstaculos);
+    /**
+     * Comprimento do tour com os desvios da matriz, somado na mesma ordem da busca de combinacoes.
+     */
+    private static double comprimento(int[] tour, int[] posicoes, MatrizDistancias matriz) {
+        double[] rascunho = new double[4];
+        double total = 0.0;
+        for (int k = 0; k < tour.length - 1; k++) {
+            total = matriz.somarTrecho(total, posicoes[tour[k]], posicoes[tour[k + 1]], rascunho);
+        }
+        return total;
     }
 
-    private static List<Partida> ajustarRotaParaObstaculos(List<Partida> rotaBase, List<Obstaculo> obstaculos) {
-        if (rotaBase.size() < 2 || obstaculos == null || obstaculos.isEmpty()) {
-            return rotaBase;
+    /**
+     * Rota que visita os pedidos exatamente na ordem dada, saindo e voltando ao deposito, com os desvios
+     * de {@code obstaculos}.
+     */
+    static List<Partida> rotaNaOrdem(List<Pedido> ordem, MapaObstaculos obstaculos) {
+        List<Partida> paradas = new ArrayList<>(ordem.size() + 1);
+        paradas.add(Partida.DEPOSITO);
+        for (Pedido pedido : ordem) {
+            if (pedido.getLocalizacao() != null) {
+                paradas.add(pedido.getLocalizacao());
+            }
         }
-        List<Partida> rotaAjustada = new LinkedList<>();
-        for (int i = 0; i < rotaBase.size() - 1; i++) {
-            Partida origem = rotaBase.get(i);
-            Partida destino = rotaBase.get(i + 1);
-            rotaAjustada.add(origem);
-
-            for (Obstaculo obstaculo : obstaculos) {
-                if (obstaculo == null) {
-                    continue;
-                }
-                if (obstaculo.intersectaSegmento(origem, destino)) {
-                    Partida[] desvios = obstaculo.gerarDesvio(origem, destino);
-                    for (Partida desvio : desvios) {
-                        if (desvio != null && !rotaAjustada.isEmpty()) {
-                            Partida ultimo = rotaAjustada.get(rotaAjustada.size() - 1);
-                            if (!ultimo.equals(desvio)) {
-                                rotaAjustada.add(desvio);
-                            }
-                        }
+        Partida[] pontos = paradas.toArray(new Partida[0]);
+        double[] xs = new double[pontos.length];
+        double[] ys = new double[pontos.length];
+        int[] tour = new int[pontos.length + 1];
+        for (int i = 0; i < pontos.length; i++) {
+            xs[i] = pontos[i].x();
+            ys[i] = pontos[i].y();
+            tour[i] = i;
+        }
+        return materializar(pontos, xs, ys, tour, obstaculos);
+    }
+
+    /**
+     * Tour por vizinho mais proximo a partir do deposito, com o deposito nas duas extremidades. Empates
+     * ficam com o menor indice, como na busca linear sobre a lista de clientes. Ate
+     * {@value #LIMIAR_INDICE_ESPACIAL} clientes as distancias vem da matriz, pelas {@code posicoes}.
+     */
+    private static int[] construirTour(double[] xs, double[] ys, int[] posicoes, MatrizDistancias matriz) {
+        int clientes = xs.length - 1;
+        int[] tour = new int[clientes + 2];
+        int paradas = 0;
+        int atual = 0;
+
+        if (clientes > LIMIAR_INDICE_ESPACIAL) {
+            ArvoreKd indice = new ArvoreKd(xs, ys);
+            indice.remover(0);
+            for (int restantes = clientes; restantes > 0; restantes--) {
+                atual = indice.maisProximo(xs[atual], ys[atual]);
+                indice.remover(atual);
+                tour[++paradas] = atual;
+            }
+        } else {
+            boolean[] visitado = new boolean[clientes + 1];
+            for (int restantes = clientes; restantes > 0; restantes--) {
+                int proximo = -1;
+                double menorDistancia = Double.MAX_VALUE;
+                for (int i = 1; i <= clientes; i++) {
+                    if (visitado[i]) {
+                        continue;
                     }
+                    double distancia = matriz.distancia(posicoes[atual], posicoes[i]);
+                    if (distancia < menorDistancia) {
+                        menorDistancia = distancia;
+                        proximo = i;
+                    }
+                }
+                if (proximo < 0) {
                     break;
                 }
+                visitado[proximo] = true;
+                atual = proximo;
+                tour[++paradas] = atual;
             }
         }
-        rotaAjustada.add(rotaBase.get(rotaBase.size() - 1));
-        return List.copyOf(rotaAjustada);
+
+        tour[++paradas] = 0;
+        return paradas + 1 == tour.length ? tour : Arrays.copyOf(tour, paradas + 1);
     }
 
-    private static Partida nearest(Partida origem, List<Partida> candidatos) {
-        if (origem == null) {
-            throw new IllegalArgumentException("Ponto de origem nao pode ser nulo");
-        }
-        if (candidatos == null || candidatos.isEmpty()) {
-            return null;
+    private static List<Partida> materializar(Partida[] pontos, double[] xs, double[] ys, int[] tour, MapaObstaculos obstaculos) {
+        if (obstaculos.isEmpty()) {
+            List<Partida> rota = new ArrayList<>(tour.length);
+            for (int indice : tour) {
+                rota.add(pontos[indice]);
+            }
+            return rota;
         }
 
-        Partida melhor = null;
-        double menorDistancia = Double.MAX_VALUE;
-        for (Partida candidato : candidatos) {
-            if (candidato == null) {
-                continue;
-            }
-            double distancia = origem.distanceTo(candidato);
-            if (distancia < menorDistancia) {
-                menorDistancia = distancia;
-                melhor = candidato;
+        List<Partida> rotaAjustada = new ArrayList<>(tour.length * 3);
+        double[] desvio = new double[4];
+        for (int i = 0; i < tour.length - 1; i++) {
+            int origem = tour[i];
+            int destino = tour[i + 1];
+            rotaAjustada.add(pontos[origem]);
+
+            double[] desvios = obstaculos.desvioDoTrecho(xs[origem], ys[origem], xs[destino], ys[destino], desvio);
+            if (desvios != null) {
+                for (int k = 0; k < desvios.length; k += 2) {
+                    Partida ultimo = rotaAjustada.get(rotaAjustada.size() - 1);
+                    if (!Geometria.mesmoPonto(ultimo.x(), ultimo.y(), desvios[k], desvios[k + 1])) {
+                        rotaAjustada.add(new Partida(desvios[k], desvios[k + 1]));
+                    }
+                }
             }
         }
-        return melhor;
+        rotaAjustada.add(pontos[tour[tour.length - 1]]);
+        return List.copyOf(rotaAjustada);
     }
 
     public static double gerar(List<Partida> rota) {
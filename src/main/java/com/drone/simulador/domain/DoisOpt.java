@@ -0,0 +1,62 @@
+package com.drone.simulador.domain;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * 2-opt com primeira melhoria: inverte o trecho {@code tour[i..j]} sempre que a troca das arestas
+ * (i-1, i) e (j, j+1) por (i-1, j) e (i, j+1) encurta o tour, avaliando apenas o delta das quatro arestas.
+ */
+public final class DoisOpt implements MelhoriaRota {
+
+    private static final double EPSILON = 1e-9;
+
+    private final long orcamentoNanos;
+
+    public DoisOpt(Duration orcamento) {
+        this.orcamentoNanos = Objects.requireNonNull(orcamento, "Orcamento nao pode ser nulo").toNanos();
+    }
+
+    @Override
+    public boolean melhorar(double[] xs, double[] ys, int[] tour) {
+        int n = tour.length;
+        if (n < 5) {
+            return false;
+        }
+        long prazo = System.nanoTime() + orcamentoNanos;
+        boolean melhorou = false;
+        boolean trocou = true;
+        while (trocou && System.nanoTime() < prazo) {
+            trocou = false;
+            for (int i = 1; i < n - 2; i++) {
+                int anterior = tour[i - 1];
+                int inicio = tour[i];
+                double arestaInicial = MelhoriaRota.distancia(xs, ys, anterior, inicio);
+                for (int j = i + 1; j < n - 1; j++) {
+                    int fim = tour[j];
+                    int seguinte = tour[j + 1];
+                    double delta = MelhoriaRota.distancia(xs, ys, anterior, fim)
+                        + MelhoriaRota.distancia(xs, ys, inicio, seguinte)
+                        - arestaInicial
+                        - MelhoriaRota.distancia(xs, ys, fim, seguinte);
+                    if (delta < -EPSILON) {
+                        inverter(tour, i, j);
+                        inicio = tour[i];
+                        arestaInicial = MelhoriaRota.distancia(xs, ys, anterior, inicio);
+                        trocou = true;
+                        melhorou = true;
+                    }
+                }
+            }
+        }
+        return melhorou;
+    }
+
+    private static void inverter(int[] tour, int i, int j) {
+        while (i < j) {
+            int temporario = tour[i];
+            tour[i++] = tour[j];
+            tour[j--] = temporario;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.drone.simulador.domain;
+
+public record EstatisticasCache(long acertos, long falhas, long despejos) {
+
+    public static final EstatisticasCache VAZIA = new EstatisticasCache(0, 0, 0);
+
+    public double taxaAcerto() {
+        long total = acertos + falhas;
+        return total == 0 ? 0.0 : (double) acertos / total;
+    }
+
+    public EstatisticasCache somar(EstatisticasCache outra) {
+        return new EstatisticasCache(acertos + outra.acertos, falhas + outra.falhas, despejos + outra.despejos);
+    }
+}
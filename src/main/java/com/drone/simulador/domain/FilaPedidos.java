@@ -0,0 +1,168 @@
+package com.drone.simulador.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * Heap binario indexado por {@link Pedido#getId()}: insercao, remocao arbitraria e {@link #poll()} em
+ * O(log n), consulta por id em O(1) e leitura dos k primeiros em O(k log k) sem copiar a fila inteira.
+ */
+public final class FilaPedidos {
+
+    private final Comparator<Pedido> comparador;
+    private final Map<Long, Integer> posicoes = new HashMap<>();
+    private Pedido[] heap;
+    private int tamanho;
+
+    public FilaPedidos(Comparator<Pedido> comparador) {
+        this.comparador = Objects.requireNonNull(comparador, "Comparador nao pode ser nulo");
+        this.heap = new Pedido[16];
+    }
+
+    public int size() {
+        return tamanho;
+    }
+
+    public boolean isEmpty() {
+        return tamanho == 0;
+    }
+
+    public boolean contem(Pedido pedido) {
+        return pedido != null && posicoes.containsKey(pedido.getId());
+    }
+
+    public boolean adicionar(Pedido pedido) {
+        Objects.requireNonNull(pedido, "Pedido nao pode ser nulo");
+        if (posicoes.containsKey(pedido.getId())) {
+            return false;
+        }
+        if (tamanho == heap.length) {
+            heap = Arrays.copyOf(heap, tamanho * 2);
+        }
+        heap[tamanho] = pedido;
+        posicoes.put(pedido.getId(), tamanho);
+        subir(tamanho++);
+        return true;
+    }
+
+    public void adicionarTodos(Collection<Pedido> pedidos) {
+        for (Pedido pedido : pedidos) {
+            adicionar(pedido);
+        }
+    }
+
+    public Pedido peek() {
+        return tamanho == 0 ? null : heap[0];
+    }
+
+    public Pedido poll() {
+        if (tamanho == 0) {
+            return null;
+        }
+        Pedido topo = heap[0];
+        removerNaPosicao(0);
+        return topo;
+    }
+
+    public boolean remover(Pedido pedido) {
+        if (pedido == null) {
+            return false;
+        }
+        Integer posicao = posicoes.get(pedido.getId());
+        if (posicao == null) {
+            return false;
+        }
+        removerNaPosicao(posicao);
+        return true;
+    }
+
+    /**
+     * Retorna ate {@code k} pedidos na ordem do comparador, percorrendo apenas os ramos do heap que
+     * podem conter os primeiros elementos.
+     */
+    public List<Pedido> topo(int k) {
+        int limite = Math.min(k, tamanho);
+        List<Pedido> resultado = new ArrayList<>(limite);
+        if (limite <= 0) {
+            return resultado;
+        }
+        PriorityQueue<Integer> fronteira = new PriorityQueue<>(
+            Math.max(1, limite * 2),
+            (a, b) -> comparador.compare(heap[a], heap[b])
+        );
+        fronteira.add(0);
+        while (resultado.size() < limite) {
+            int indice = fronteira.poll();
+            resultado.add(heap[indice]);
+            int esquerda = 2 * indice + 1;
+            if (esquerda < tamanho) {
+                fronteira.add(esquerda);
+                if (esquerda + 1 < tamanho) {
+                    fronteira.add(esquerda + 1);
+                }
+            }
+        }
+        return resultado;
+    }
+
+    private void removerNaPosicao(int posicao) {
+        Pedido removido = heap[posicao];
+        posicoes.remove(removido.getId());
+        int ultimo = --tamanho;
+        if (posicao != ultimo) {
+            heap[posicao] = heap[ultimo];
+            posicoes.put(heap[posicao].getId(), posicao);
+            heap[ultimo] = null;
+            if (!subir(posicao)) {
+                descer(posicao);
+            }
+        } else {
+            heap[ultimo] = null;
+        }
+    }
+
+    private boolean subir(int posicao) {
+        int inicial = posicao;
+        Pedido pedido = heap[posicao];
+        while (posicao > 0) {
+            int pai = (posicao - 1) >>> 1;
+            if (comparador.compare(pedido, heap[pai]) >= 0) {
+                break;
+            }
+            colocar(posicao, heap[pai]);
+            posicao = pai;
+        }
+        colocar(posicao, pedido);
+        return posicao != inicial;
+    }
+
+    private void descer(int posicao) {
+        Pedido pedido = heap[posicao];
+        int metade = tamanho >>> 1;
+        while (posicao < metade) {
+            int filho = 2 * posicao + 1;
+            int direita = filho + 1;
+            if (direita < tamanho && comparador.compare(heap[direita], heap[filho]) < 0) {
+                filho = direita;
+            }
+            if (comparador.compare(pedido, heap[filho]) <= 0) {
+                break;
+            }
+            colocar(posicao, heap[filho]);
+            posicao = filho;
+        }
+        colocar(posicao, pedido);
+    }
+
+    private void colocar(int posicao, Pedido pedido) {
+        heap[posicao] = pedido;
+        posicoes.put(pedido.getId(), posicao);
+    }
+}
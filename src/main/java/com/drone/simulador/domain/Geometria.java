@@ -0,0 +1,69 @@
+package com.drone.simulador.domain;
+
+/**
+ * Nucleo de geometria sobre coordenadas primitivas, sem alocar {@link Partida}s. As formulas sao as
+ * mesmas de {@link Partida#distanceTo} e {@link Obstaculo}, de modo que os resultados sao identicos
+ * bit a bit aos calculados sobre os objetos.
+ */
+final class Geometria {
+
+    private Geometria() {
+    }
+
+    static double distancia(double ax, double ay, double bx, double by) {
+        double dx = ax - bx;
+        double dy = ay - by;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    static double distanciaPontoParaSegmento(double ax, double ay, double bx, double by, double px, double py) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        if (dx == 0.0 && dy == 0.0) {
+            return Math.hypot(ax - px, ay - py);
+        }
+
+        double t = ((px - ax) * dx + (py - ay) * dy) / (dx * dx + dy * dy);
+        t = Math.max(0.0, Math.min(1.0, t));
+        double projX = ax + t * dx;
+        double projY = ay + t * dy;
+        double difX = projX - px;
+        double difY = projY - py;
+        return Math.hypot(difX, difY);
+    }
+
+    /**
+     * Calcula os dois pontos de desvio do segmento {@code a -> b} ao redor de um obstaculo centrado em
+     * {@code (ox, oy)}, gravando-os em {@code saida} como {@code x1, y1, x2, y2}.
+     *
+     * @return {@code false} quando o segmento e degenerado e nao ha desvio
+     */
+    static boolean desvio(double ox, double oy, double folga, double ax, double ay, double bx, double by, double[] saida) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double comprimento = Math.hypot(dx, dy);
+        if (comprimento == 0.0) {
+            return false;
+        }
+
+        double px = -dy / comprimento;
+        double py = dx / comprimento;
+
+        double midX = (ax + bx) * 0.5;
+        double midY = (ay + by) * 0.5;
+        double dot = (midX - ox) * px + (midY - oy) * py;
+        double sinal = dot >= 0 ? 1.0 : -1.0;
+        px *= sinal;
+        py *= sinal;
+
+        saida[0] = ax + px * folga;
+        saida[1] = ay + py * folga;
+        saida[2] = bx + px * folga;
+        saida[3] = by + py * folga;
+        return true;
+    }
+
+    static boolean mesmoPonto(double ax, double ay, double bx, double by) {
+        return Double.compare(ax, bx) == 0 && Double.compare(ay, by) == 0;
+    }
+}
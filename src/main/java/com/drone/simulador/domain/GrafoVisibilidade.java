@@ -0,0 +1,134 @@
+package com.drone.simulador.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Menor caminho seguro entre dois pontos por A* sobre um grafo de visibilidade. Cada obstaculo
+ * relevante contribui com os vertices de um poligono circunscrito ao circulo inflado pela margem, e uma
+ * aresta so existe quando o segmento nao intersecta nenhum obstaculo do mapa. Os obstaculos relevantes
+ * comecam pelo que bloqueia o trecho direto e crescem com os que bloquearem arestas, ate um limite.
+ */
+final class GrafoVisibilidade {
+
+    private static final int LADOS = 16;
+    private static final int MAXIMO_RODADAS = 6;
+    private static final int MAXIMO_OBSTACULOS = 48;
+    private static final double FATOR_CIRCUNSCRITO = 1.0 / Math.cos(Math.PI / LADOS);
+
+    private final MapaObstaculos mapa;
+
+    GrafoVisibilidade(MapaObstaculos mapa) {
+        this.mapa = mapa;
+    }
+
+    /**
+     * Pontos intermediarios do menor caminho encontrado, como {@code x1, y1, x2, y2, ...}, ou
+     * {@code null} quando nenhum caminho seguro foi encontrado dentro dos limites.
+     */
+    double[] menorCaminho(double ax, double ay, double bx, double by) {
+        int bloqueio = mapa.primeiroIntersectado(ax, ay, bx, by);
+        if (bloqueio < 0) {
+            return new double[0];
+        }
+        Set<Integer> relevantes = new LinkedHashSet<>();
+        relevantes.add(bloqueio);
+        for (int rodada = 0; rodada < MAXIMO_RODADAS; rodada++) {
+            Set<Integer> novos = new LinkedHashSet<>();
+            double[] caminho = buscar(ax, ay, bx, by, relevantes, novos);
+            if (caminho != null) {
+                return caminho;
+            }
+            novos.removeAll(relevantes);
+            if (novos.isEmpty() || relevantes.size() >= MAXIMO_OBSTACULOS) {
+                return null;
+            }
+            for (Integer obstaculo : novos) {
+                if (relevantes.size() >= MAXIMO_OBSTACULOS) {
+                    break;
+                }
+                relevantes.add(obstaculo);
+            }
+        }
+        return null;
+    }
+
+    private double[] buscar(double ax, double ay, double bx, double by, Set<Integer> relevantes, Set<Integer> novos) {
+        double[] vx = new double[2 + relevantes.size() * LADOS];
+        double[] vy = new double[vx.length];
+        vx[0] = ax;
+        vy[0] = ay;
+        vx[1] = bx;
+        vy[1] = by;
+        int total = 2;
+        for (int obstaculo : relevantes) {
+            double raio = (mapa.raio(obstaculo) + Obstaculo.MARGEM) * FATOR_CIRCUNSCRITO;
+            for (int k = 0; k < LADOS; k++) {
+                double angulo = 2 * Math.PI * k / LADOS;
+                double x = mapa.x(obstaculo) + raio * Math.cos(angulo);
+                double y = mapa.y(obstaculo) + raio * Math.sin(angulo);
+                // vertices dentro de outro obstaculo nunca seriam alcancaveis
+                if (mapa.primeiroIntersectado(x, y, x, y) < 0) {
+                    vx[total] = x;
+                    vy[total] = y;
+                    total++;
+                }
+            }
+        }
+
+        double[] custo = new double[total];
+        int[] anterior = new int[total];
+        boolean[] fechado = new boolean[total];
+        Arrays.fill(custo, Double.POSITIVE_INFINITY);
+        Arrays.fill(anterior, -1);
+        custo[0] = 0.0;
+        PriorityQueue<double[]> abertos = new PriorityQueue<>((p, q) -> Double.compare(p[0], q[0]));
+        abertos.add(new double[] { Geometria.distancia(ax, ay, bx, by), 0 });
+        while (!abertos.isEmpty()) {
+            int atual = (int) abertos.poll()[1];
+            if (fechado[atual]) {
+                continue;
+            }
+            if (atual == 1) {
+                return reconstruir(vx, vy, anterior);
+            }
+            fechado[atual] = true;
+            for (int vizinho = 1; vizinho < total; vizinho++) {
+                if (fechado[vizinho]) {
+                    continue;
+                }
+                double candidato = custo[atual] + Geometria.distancia(vx[atual], vy[atual], vx[vizinho], vy[vizinho]);
+                if (candidato >= custo[vizinho]) {
+                    continue;
+                }
+                int obstaculo = mapa.primeiroIntersectado(vx[atual], vy[atual], vx[vizinho], vy[vizinho]);
+                if (obstaculo >= 0) {
+                    novos.add(obstaculo);
+                    continue;
+                }
+                custo[vizinho] = candidato;
+                anterior[vizinho] = atual;
+                abertos.add(new double[] { candidato + Geometria.distancia(vx[vizinho], vy[vizinho], bx, by), vizinho });
+            }
+        }
+        return null;
+    }
+
+    private static double[] reconstruir(double[] vx, double[] vy, int[] anterior) {
+        List<Integer> intermediarios = new ArrayList<>();
+        for (int vertice = anterior[1]; vertice > 0; vertice = anterior[vertice]) {
+            intermediarios.add(vertice);
+        }
+        double[] pontos = new double[intermediarios.size() * 2];
+        for (int k = 0; k < intermediarios.size(); k++) {
+            int vertice = intermediarios.get(intermediarios.size() - 1 - k);
+            pontos[2 * k] = vx[vertice];
+            pontos[2 * k + 1] = vy[vertice];
+        }
+        return pontos;
+    }
+}
@@ -0,0 +1,294 @@
+package com.drone.simulador.domain;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Obstaculos em vetores paralelos (estrutura de arrays), na ordem da lista original e sem os nulos.
+ * Mede trechos com desvio sem criar {@link Partida}s, seguindo a mesma regra de
+ * {@link CalcularDistanciaPorTrajeto}: apenas o primeiro obstaculo que cruza o trecho gera desvio.
+ *
+ * <p>A partir de {@value #LIMIAR_GRADE} obstaculos, uma grade uniforme registra cada obstaculo nas
+ * celulas cobertas pelo seu quadrado envolvente, e a consulta de um trecho so testa os obstaculos das
+ * celulas que ele atravessa.
+ *
+ * <p>No modo {@link ModoDesvio#VISIBILIDADE} os desvios vem de um {@link GrafoVisibilidade} e ficam em
+ * um cache LRU por trecho; como o mapa pode ser reaproveitado entre planejamentos com o mesmo conjunto
+ * de obstaculos, trechos repetidos nao sao recalculados.
+ */
+final class MapaObstaculos {
+
+    static final MapaObstaculos VAZIO = new MapaObstaculos(List.of());
+
+    private static final int LIMIAR_GRADE = 16;
+    private static final int MAXIMO_CELULAS_POR_EIXO = 256;
+    private static final int CAPACIDADE_TRECHOS = 16384;
+    private static final double[] SEM_DESVIO = new double[0];
+
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] raios;
+    private final int total;
+
+    private final int colunas;
+    private final int linhas;
+    private final double minX;
+    private final double minY;
+    private final double larguraCelula;
+    private final double alturaCelula;
+    private final int[] inicioCelula;
+    private final int[] itens;
+
+    private final ModoDesvio modo;
+    private final GrafoVisibilidade grafo;
+    private final Map<Trecho, double[]> trechos;
+
+    MapaObstaculos(List<Obstaculo> obstaculos) {
+        this(obstaculos, ModoDesvio.PERPENDICULAR);
+    }
+
+    MapaObstaculos(List<Obstaculo> obstaculos, ModoDesvio modo) {
+        this.modo = modo == null ? ModoDesvio.PERPENDICULAR : modo;
+        if (this.modo == ModoDesvio.VISIBILIDADE) {
+            this.grafo = new GrafoVisibilidade(this);
+            this.trechos = new LinkedHashMap<>(1024, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Trecho, double[]> maisAntigo) {
+                    return size() > CAPACIDADE_TRECHOS;
+                }
+            };
+        } else {
+            this.grafo = null;
+            this.trechos = null;
+        }
+        List<Obstaculo> seguros = obstaculos == null ? List.of() : obstaculos;
+        this.xs = new double[seguros.size()];
+        this.ys = new double[seguros.size()];
+        this.raios = new double[seguros.size()];
+        int quantidade = 0;
+        for (Obstaculo obstaculo : seguros) {
+            if (obstaculo == null) {
+                continue;
+            }
+            xs[quantidade] = obstaculo.x();
+            ys[quantidade] = obstaculo.y();
+            raios[quantidade] = obstaculo.raio();
+            quantidade++;
+        }
+        this.total = quantidade;
+
+        double menorX = Double.POSITIVE_INFINITY;
+        double menorY = Double.POSITIVE_INFINITY;
+        double maiorX = Double.NEGATIVE_INFINITY;
+        double maiorY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < total; i++) {
+            menorX = Math.min(menorX, xs[i] - raios[i]);
+            menorY = Math.min(menorY, ys[i] - raios[i]);
+            maiorX = Math.max(maiorX, xs[i] + raios[i]);
+            maiorY = Math.max(maiorY, ys[i] + raios[i]);
+        }
+        boolean limitesFinitos = Double.isFinite(menorX) && Double.isFinite(menorY)
+            && Double.isFinite(maiorX) && Double.isFinite(maiorY);
+        if (total < LIMIAR_GRADE || !limitesFinitos) {
+            this.colunas = 0;
+            this.linhas = 0;
+            this.minX = 0;
+            this.minY = 0;
+            this.larguraCelula = 0;
+            this.alturaCelula = 0;
+            this.inicioCelula = null;
+            this.itens = null;
+            return;
+        }
+
+        int lado = Math.min(MAXIMO_CELULAS_POR_EIXO, (int) Math.ceil(Math.sqrt(total)));
+        this.colunas = lado;
+        this.linhas = lado;
+        this.minX = menorX;
+        this.minY = menorY;
+        this.larguraCelula = maiorX > menorX ? (maiorX - menorX) / colunas : 1.0;
+        this.alturaCelula = maiorY > menorY ? (maiorY - menorY) / linhas : 1.0;
+
+        // dois passes: conta os registros por celula e depois preenche em ordem crescente de indice
+        int[] contagem = new int[colunas * linhas + 1];
+        for (int i = 0; i < total; i++) {
+            for (int linha = linha(ys[i] - raios[i]); linha <= linha(ys[i] + raios[i]); linha++) {
+                for (int coluna = coluna(xs[i] - raios[i]); coluna <= coluna(xs[i] + raios[i]); coluna++) {
+                    contagem[linha * colunas + coluna + 1]++;
+                }
+            }
+        }
+        for (int c = 1; c < contagem.length; c++) {
+            contagem[c] += contagem[c - 1];
+        }
+        this.inicioCelula = contagem.clone();
+        this.itens = new int[contagem[contagem.length - 1]];
+        for (int i = 0; i < total; i++) {
+            for (int linha = linha(ys[i] - raios[i]); linha <= linha(ys[i] + raios[i]); linha++) {
+                for (int coluna = coluna(xs[i] - raios[i]); coluna <= coluna(xs[i] + raios[i]); coluna++) {
+                    itens[contagem[linha * colunas + coluna]++] = i;
+                }
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return total == 0;
+    }
+
+    ModoDesvio modo() {
+        return modo;
+    }
+
+    double x(int indice) {
+        return xs[indice];
+    }
+
+    double y(int indice) {
+        return ys[indice];
+    }
+
+    double raio(int indice) {
+        return raios[indice];
+    }
+
+    /**
+     * Indice do primeiro obstaculo que intersecta o trecho {@code a -> b}, ou {@code -1}.
+     */
+    int primeiroIntersectado(double ax, double ay, double bx, double by) {
+        if (itens != null) {
+            return primeiroIntersectadoNaGrade(ax, ay, bx, by);
+        }
+        for (int i = 0; i < total; i++) {
+            if (Geometria.distanciaPontoParaSegmento(ax, ay, bx, by, xs[i], ys[i]) < raios[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Percorre, faixa a faixa da grade, as celulas cobertas pelo trecho (com uma celula de folga para
+     * cada lado) e devolve o menor indice que o intersecta, o mesmo da busca
+     * linear. Um obstaculo registrado em varias celulas pode ser testado mais de uma vez.
+     */
+    private int primeiroIntersectadoNaGrade(double ax, double ay, double bx, double by) {
+        int melhor = Integer.MAX_VALUE;
+        int linhaInicial = linha(Math.min(ay, by)) - 1;
+        int linhaFinal = linha(Math.max(ay, by)) + 1;
+        for (int linha = Math.max(0, linhaInicial); linha <= Math.min(linhas - 1, linhaFinal); linha++) {
+            double xMinimo = Math.min(ax, bx);
+            double xMaximo = Math.max(ax, bx);
+            if (ay != by) {
+                // a faixa e alargada em meia celula para que arredondamentos nao excluam o ponto de contato
+                double t0 = (minY + (linha - 0.5) * alturaCelula - ay) / (by - ay);
+                double t1 = (minY + (linha + 1.5) * alturaCelula - ay) / (by - ay);
+                double tMinimo = Math.max(0.0, Math.min(t0, t1));
+                double tMaximo = Math.min(1.0, Math.max(t0, t1));
+                if (tMinimo <= tMaximo) {
+                    double x0 = ax + tMinimo * (bx - ax);
+                    double x1 = ax + tMaximo * (bx - ax);
+                    xMinimo = Math.min(x0, x1);
+                    xMaximo = Math.max(x0, x1);
+                }
+            }
+            int colunaFinal = Math.min(colunas - 1, coluna(xMaximo) + 1);
+            for (int coluna = Math.max(0, coluna(xMinimo) - 1); coluna <= colunaFinal; coluna++) {
+                int celula = linha * colunas + coluna;
+                for (int k = inicioCelula[celula]; k < inicioCelula[celula + 1]; k++) {
+                    int i = itens[k];
+                    if (i >= melhor) {
+                        break;
+                    }
+                    if (Geometria.distanciaPontoParaSegmento(ax, ay, bx, by, xs[i], ys[i]) < raios[i]) {
+                        melhor = i;
+                        break;
+                    }
+                }
+            }
+        }
+        return melhor == Integer.MAX_VALUE ? -1 : melhor;
+    }
+
+    private int coluna(double x) {
+        return limitar((int) Math.floor((x - minX) / larguraCelula), colunas);
+    }
+
+    private int linha(double y) {
+        return limitar((int) Math.floor((y - minY) / alturaCelula), linhas);
+    }
+
+    private static int limitar(int indice, int quantidade) {
+        return Math.max(0, Math.min(quantidade - 1, indice));
+    }
+
+    /**
+     * Pontos intermediarios do desvio do trecho {@code a -> b}, como {@code x1, y1, x2, y2, ...}, ou
+     * {@code null} quando o trecho e livre. No modo perpendicular os pontos sao gravados em
+     * {@code rascunho} (quatro posicoes); no de visibilidade o vetor devolvido vem do cache e nao deve
+     * ser alterado.
+     */
+    double[] desvioDoTrecho(double ax, double ay, double bx, double by, double[] rascunho) {
+        int obstaculo = primeiroIntersectado(ax, ay, bx, by);
+        if (obstaculo < 0) {
+            return null;
+        }
+        if (modo == ModoDesvio.VISIBILIDADE) {
+            double[] pontos = desvioPorVisibilidade(obstaculo, ax, ay, bx, by);
+            return pontos.length == 0 ? null : pontos;
+        }
+        return desvioPerpendicular(obstaculo, ax, ay, bx, by, rascunho) ? rascunho : null;
+    }
+
+    private boolean desvioPerpendicular(int obstaculo, double ax, double ay, double bx, double by, double[] saida) {
+        return Geometria.desvio(xs[obstaculo], ys[obstaculo], raios[obstaculo] + Obstaculo.MARGEM, ax, ay, bx, by, saida);
+    }
+
+    private double[] desvioPorVisibilidade(int obstaculo, double ax, double ay, double bx, double by) {
+        Trecho chave = new Trecho(ax, ay, bx, by);
+        synchronized (trechos) {
+            double[] memorizado = trechos.get(chave);
+            if (memorizado != null) {
+                return memorizado;
+            }
+        }
+        double[] pontos = grafo.menorCaminho(ax, ay, bx, by);
+        if (pontos == null) {
+            // sem caminho seguro dentro dos limites: recorre ao desvio perpendicular
+            double[] perpendicular = new double[4];
+            pontos = desvioPerpendicular(obstaculo, ax, ay, bx, by, perpendicular) ? perpendicular : SEM_DESVIO;
+        }
+        synchronized (trechos) {
+            trechos.put(chave, pontos);
+        }
+        return pontos;
+    }
+
+    /**
+     * Soma a {@code acumulado} o comprimento do trecho {@code a -> b} ja desviado, acumulando sub-trecho
+     * a sub-trecho como {@link CalcularDistanciaPorTrajeto#gerar} faria sobre a rota materializada.
+     *
+     * @param rascunho vetor de quatro posicoes usado para os pontos de desvio
+     */
+    double somarTrecho(double acumulado, double ax, double ay, double bx, double by, double[] rascunho) {
+        double[] pontos = desvioDoTrecho(ax, ay, bx, by, rascunho);
+        if (pontos == null) {
+            return acumulado + Geometria.distancia(ax, ay, bx, by);
+        }
+        double anteriorX = ax;
+        double anteriorY = ay;
+        for (int k = 0; k < pontos.length; k += 2) {
+            double x = pontos[k];
+            double y = pontos[k + 1];
+            if (!Geometria.mesmoPonto(anteriorX, anteriorY, x, y)) {
+                acumulado += Geometria.distancia(anteriorX, anteriorY, x, y);
+                anteriorX = x;
+                anteriorY = y;
+            }
+        }
+        return acumulado + Geometria.distancia(anteriorX, anteriorY, bx, by);
+    }
+
+    private record Trecho(double ax, double ay, double bx, double by) {}
+}
@@ -0,0 +1,166 @@
+package com.drone.simulador.domain;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Distancias entre o deposito (posicao 0) e os pedidos de uma sessao de planejamento, calculadas uma
+ * unica vez. As distancias em linha reta ficam em um triangulo inferior achatado, pois sao simetricas;
+ * o efeito dos obstaculos depende do sentido do trecho e e memorizado sob demanda em uma matriz completa
+ * de estados. Quando essas estruturas excederiam {@code limiteBytes}, tudo passa a ser calculado a cada
+ * consulta, com os mesmos resultados.
+ */
+final class MatrizDistancias {
+
+    static final int DEPOSITO = 0;
+    static final long LIMITE_PADRAO_BYTES = 64L << 20;
+
+    private static final int DESCONHECIDO = 0;
+    private static final int LIVRE = 1;
+    private static final int DESVIADO = 2;
+
+    private final int tamanho;
+    private final double[] xs;
+    private final double[] ys;
+    private final Map<Long, Integer> posicaoPorId;
+    private final MapaObstaculos obstaculos;
+    private final double[] triangulo;
+    private final AtomicIntegerArray estadoTrecho;
+    private final Map<Integer, double[]> trechosDesviados;
+
+    private MatrizDistancias(double[] xs, double[] ys, Map<Long, Integer> posicaoPorId, MapaObstaculos obstaculos, long limiteBytes) {
+        this.tamanho = xs.length;
+        this.xs = xs;
+        this.ys = ys;
+        this.posicaoPorId = posicaoPorId;
+        this.obstaculos = obstaculos;
+
+        long celulasTriangulo = (long) tamanho * (tamanho + 1) / 2;
+        long celulasTrechos = obstaculos.isEmpty() ? 0 : (long) tamanho * tamanho;
+        long bytes = celulasTriangulo * Double.BYTES + celulasTrechos * Integer.BYTES;
+        boolean cabe = bytes <= limiteBytes && celulasTriangulo <= Integer.MAX_VALUE && celulasTrechos <= Integer.MAX_VALUE;
+        if (cabe) {
+            this.triangulo = new double[(int) celulasTriangulo];
+            for (int a = 0; a < tamanho; a++) {
+                int linha = linha(a);
+                for (int b = 0; b <= a; b++) {
+                    triangulo[linha + b] = Geometria.distancia(xs[a], ys[a], xs[b], ys[b]);
+                }
+            }
+        } else {
+            this.triangulo = null;
+        }
+        this.estadoTrecho = cabe && celulasTrechos > 0 ? new AtomicIntegerArray((int) celulasTrechos) : null;
+        this.trechosDesviados = estadoTrecho == null ? null : new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Monta a matriz para o deposito e as localizacoes dos pedidos; pedidos sem localizacao ou com id
+     * repetido nao ocupam posicao.
+     */
+    static MatrizDistancias criar(List<Pedido> pedidos, MapaObstaculos obstaculos, long limiteBytes) {
+        List<Pedido> seguros = pedidos == null ? List.of() : pedidos;
+        double[] xs = new double[seguros.size() + 1];
+        double[] ys = new double[seguros.size() + 1];
+        xs[DEPOSITO] = Partida.DEPOSITO.x();
+        ys[DEPOSITO] = Partida.DEPOSITO.y();
+        Map<Long, Integer> posicaoPorId = new HashMap<>(seguros.size() * 2);
+        int quantidade = 1;
+        for (Pedido pedido : seguros) {
+            Partida localizacao = pedido == null ? null : pedido.getLocalizacao();
+            if (localizacao == null || posicaoPorId.containsKey(pedido.getId())) {
+                continue;
+            }
+            xs[quantidade] = localizacao.x();
+            ys[quantidade] = localizacao.y();
+            posicaoPorId.put(pedido.getId(), quantidade++);
+        }
+        if (quantidade < xs.length) {
+            xs = Arrays.copyOf(xs, quantidade);
+            ys = Arrays.copyOf(ys, quantidade);
+        }
+        return new MatrizDistancias(xs, ys, posicaoPorId, obstaculos == null ? MapaObstaculos.VAZIO : obstaculos, limiteBytes);
+    }
+
+    /**
+     * Posicao do pedido na matriz, ou {@code -1} quando ele nao tem localizacao ou nao pertence a sessao.
+     */
+    int posicao(Pedido pedido) {
+        Integer posicao = posicaoPorId.get(pedido.getId());
+        return posicao == null ? -1 : posicao;
+    }
+
+    boolean emMemoria() {
+        return triangulo != null;
+    }
+
+    MapaObstaculos obstaculos() {
+        return obstaculos;
+    }
+
+    double distancia(int a, int b) {
+        if (triangulo == null) {
+            return Geometria.distancia(xs[a], ys[a], xs[b], ys[b]);
+        }
+        return a >= b ? triangulo[linha(a) + b] : triangulo[linha(b) + a];
+    }
+
+    /**
+     * Soma a {@code acumulado} o trecho {@code a -> b} com desvio de obstaculos, na mesma ordem de somas
+     * de {@link MapaObstaculos#somarTrecho}. Trechos livres usam a distancia em linha reta da matriz; os
+     * desviados guardam as parcelas de cada sub-trecho.
+     */
+    double somarTrecho(double acumulado, int a, int b, double[] rascunho) {
+        if (obstaculos.isEmpty()) {
+            return acumulado + distancia(a, b);
+        }
+        if (estadoTrecho == null) {
+            return obstaculos.somarTrecho(acumulado, xs[a], ys[a], xs[b], ys[b], rascunho);
+        }
+
+        int celula = a * tamanho + b;
+        int estado = estadoTrecho.get(celula);
+        if (estado == DESCONHECIDO) {
+            estado = classificar(celula, a, b, rascunho);
+        }
+        if (estado == LIVRE) {
+            return acumulado + distancia(a, b);
+        }
+        double[] parcelas = trechosDesviados.get(celula);
+        for (double parcela : parcelas) {
+            acumulado += parcela;
+        }
+        return acumulado;
+    }
+
+    private static int linha(int a) {
+        return (int) ((long) a * (a + 1) / 2);
+    }
+
+    private int classificar(int celula, int a, int b, double[] rascunho) {
+        double[] pontos = obstaculos.desvioDoTrecho(xs[a], ys[a], xs[b], ys[b], rascunho);
+        if (pontos == null) {
+            estadoTrecho.set(celula, LIVRE);
+            return LIVRE;
+        }
+        double[] parcelas = new double[pontos.length / 2 + 1];
+        int quantidade = 0;
+        double anteriorX = xs[a];
+        double anteriorY = ys[a];
+        for (int k = 0; k < pontos.length; k += 2) {
+            if (!Geometria.mesmoPonto(anteriorX, anteriorY, pontos[k], pontos[k + 1])) {
+                parcelas[quantidade++] = Geometria.distancia(anteriorX, anteriorY, pontos[k], pontos[k + 1]);
+                anteriorX = pontos[k];
+                anteriorY = pontos[k + 1];
+            }
+        }
+        parcelas[quantidade++] = Geometria.distancia(anteriorX, anteriorY, xs[b], ys[b]);
+        trechosDesviados.put(celula, quantidade == parcelas.length ? parcelas : Arrays.copyOf(parcelas, quantidade));
+        estadoTrecho.set(celula, DESVIADO);
+        return DESVIADO;
+    }
+}
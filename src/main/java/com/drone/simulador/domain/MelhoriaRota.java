@@ -0,0 +1,38 @@
+package com.drone.simulador.domain;
+
+/**
+ * Etapa de busca local aplicada sobre o tour por vizinho mais proximo. Trabalha sobre vetores de
+ * coordenadas: {@code tour} contem indices de {@code xs}/{@code ys} e suas extremidades (o deposito)
+ * permanecem fixas. Implementacoes devem respeitar o proprio orcamento de tempo.
+ */
+@FunctionalInterface
+public interface MelhoriaRota {
+
+    MelhoriaRota NENHUMA = (xs, ys, tour) -> false;
+
+    /**
+     * Reordena {@code tour} no lugar.
+     *
+     * @return {@code true} se alguma troca reduziu o comprimento do tour
+     */
+    boolean melhorar(double[] xs, double[] ys, int[] tour);
+
+    default MelhoriaRota seguidaDe(MelhoriaRota proxima) {
+        if (proxima == null || proxima == NENHUMA) {
+            return this;
+        }
+        if (this == NENHUMA) {
+            return proxima;
+        }
+        return (xs, ys, tour) -> {
+            boolean melhorou = melhorar(xs, ys, tour);
+            return proxima.melhorar(xs, ys, tour) || melhorou;
+        };
+    }
+
+    static double distancia(double[] xs, double[] ys, int a, int b) {
+        double dx = xs[a] - xs[b];
+        double dy = ys[a] - ys[b];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
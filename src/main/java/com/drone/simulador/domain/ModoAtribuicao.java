@@ -0,0 +1,6 @@
+package com.drone.simulador.domain;
+
+public enum ModoAtribuicao {
+    RODIZIO,
+    MELHOR_DRONE
+}
@@ -0,0 +1,11 @@
+package com.drone.simulador.domain;
+
+/**
+ * Como um trecho bloqueado por obstaculos e contornado.
+ */
+public enum ModoDesvio {
+    /** Desloca as pontas do trecho para o lado do primeiro obstaculo atingido. */
+    PERPENDICULAR,
+    /** Menor caminho seguro por um grafo de visibilidade sobre os obstaculos inflados pela margem. */
+    VISIBILIDADE
+}
@@ -0,0 +1,91 @@
+package com.drone.simulador.domain;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Or-opt: realoca segmentos de ate tres paradas consecutivas (na ordem original ou invertida) para a
+ * posicao entre duas outras paradas, aceitando o primeiro movimento cujo delta reduz o tour.
+ */
+public final class OrOpt implements MelhoriaRota {
+
+    private static final double EPSILON = 1e-9;
+    private static final int TAMANHO_MAXIMO_SEGMENTO = 3;
+
+    private final long orcamentoNanos;
+
+    public OrOpt(Duration orcamento) {
+        this.orcamentoNanos = Objects.requireNonNull(orcamento, "Orcamento nao pode ser nulo").toNanos();
+    }
+
+    @Override
+    public boolean melhorar(double[] xs, double[] ys, int[] tour) {
+        int n = tour.length;
+        if (n < 5) {
+            return false;
+        }
+        long prazo = System.nanoTime() + orcamentoNanos;
+        int[] auxiliar = new int[n];
+        boolean melhorou = false;
+        boolean moveu = true;
+        while (moveu && System.nanoTime() < prazo) {
+            moveu = false;
+            for (int tamanho = 1; tamanho <= TAMANHO_MAXIMO_SEGMENTO && !moveu; tamanho++) {
+                for (int i = 1; i + tamanho < n && !moveu; i++) {
+                    moveu = tentarMover(xs, ys, tour, auxiliar, i, tamanho);
+                }
+            }
+            melhorou |= moveu;
+        }
+        return melhorou;
+    }
+
+    private static boolean tentarMover(double[] xs, double[] ys, int[] tour, int[] auxiliar, int i, int tamanho) {
+        int n = tour.length;
+        int fimSegmento = i + tamanho - 1;
+        int anterior = tour[i - 1];
+        int primeiro = tour[i];
+        int ultimo = tour[fimSegmento];
+        int seguinte = tour[fimSegmento + 1];
+        double ganhoRemocao = MelhoriaRota.distancia(xs, ys, anterior, primeiro)
+            + MelhoriaRota.distancia(xs, ys, ultimo, seguinte)
+            - MelhoriaRota.distancia(xs, ys, anterior, seguinte);
+
+        for (int k = 0; k < n - 1; k++) {
+            if (k >= i - 1 && k <= fimSegmento) {
+                continue;
+            }
+            int a = tour[k];
+            int b = tour[k + 1];
+            double arestaRemovida = MelhoriaRota.distancia(xs, ys, a, b);
+            double custoDireto = MelhoriaRota.distancia(xs, ys, a, primeiro)
+                + MelhoriaRota.distancia(xs, ys, ultimo, b) - arestaRemovida;
+            double custoInvertido = MelhoriaRota.distancia(xs, ys, a, ultimo)
+                + MelhoriaRota.distancia(xs, ys, primeiro, b) - arestaRemovida;
+            boolean inverter = custoInvertido < custoDireto;
+            double custoInsercao = inverter ? custoInvertido : custoDireto;
+            if (custoInsercao - ganhoRemocao < -EPSILON) {
+                mover(tour, auxiliar, i, tamanho, k, inverter);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void mover(int[] tour, int[] auxiliar, int i, int tamanho, int k, boolean inverter) {
+        int n = tour.length;
+        int escrita = 0;
+        for (int p = 0; p < n; p++) {
+            if (p >= i && p < i + tamanho) {
+                continue;
+            }
+            auxiliar[escrita++] = tour[p];
+            if (p == k) {
+                for (int s = 0; s < tamanho; s++) {
+                    auxiliar[escrita++] = inverter ? tour[i + tamanho - 1 - s] : tour[i + s];
+                }
+            }
+        }
+        System.arraycopy(auxiliar, 0, tour, 0, n);
+    }
+}
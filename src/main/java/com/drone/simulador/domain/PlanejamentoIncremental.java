@@ -0,0 +1,243 @@
+package com.drone.simulador.domain;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Planejamento que guarda as viagens do ultimo plano, com a carga e a autonomia que ainda sobram em cada
+ * uma, e encaixa pedidos novos por insercao mais barata em vez de replanejar a fila inteira. Apenas as
+ * viagens que receberam pedidos tem a rota refeita; os pedidos que nao cabem em nenhuma viagem aberta
+ * sao planejados pelo {@link AgendarDrone} em viagens novas.
+ *
+ * <p>O custo de inserir {@code k} entre {@code i} e {@code j} e {@code d(i,k) + d(k,j) - d(i,j)}, com
+ * os desvios de obstaculos; a insercao so e aceita se respeitar a capacidade e a autonomia do drone.
+ * Nao e thread-safe.
+ */
+public class PlanejamentoIncremental {
+
+    private static final double TOLERANCIA = 1e-6;
+
+    private final AgendarDrone agendador;
+    private final List<Drone> drones;
+    private final List<Obstaculo> obstaculos;
+    private final MelhoriaRota melhoria;
+    private final ModoDesvio desvio;
+    private final MapaObstaculos mapa;
+    private final List<ViagemAberta> abertas = new ArrayList<>();
+    private final Set<Long> planejados = new HashSet<>();
+    private final double[] rascunho = new double[4];
+
+    public PlanejamentoIncremental(
+        AgendarDrone agendador,
+        List<Drone> drones,
+        List<Obstaculo> obstaculos,
+        MelhoriaRota melhoria,
+        ModoDesvio desvio
+    ) {
+        this.agendador = Objects.requireNonNull(agendador, "Agendador nao pode ser nulo");
+        this.drones = List.copyOf(Objects.requireNonNull(drones, "Lista de drones nao pode ser nula"));
+        this.obstaculos = obstaculos == null ? List.of() : List.copyOf(obstaculos);
+        this.melhoria = melhoria == null ? MelhoriaRota.NENHUMA : melhoria;
+        this.desvio = desvio == null ? ModoDesvio.PERPENDICULAR : desvio;
+        this.mapa = agendador.mapaPara(this.obstaculos, this.desvio);
+    }
+
+    /**
+     * Viagens abertas do plano atual, na ordem em que foram criadas.
+     */
+    public List<Viagem> viagens() {
+        return abertas.stream().map(ViagemAberta::viagem).toList();
+    }
+
+    /**
+     * Encaixa os pedidos ainda nao planejados, por prioridade e chegada, na viagem aberta de menor custo
+     * de insercao; os que sobram viram viagens novas. Pedidos ja planejados sao ignorados.
+     *
+     * @return as viagens alteradas ou criadas nesta chamada
+     */
+    public List<Viagem> adicionar(List<Pedido> pedidos) {
+        Objects.requireNonNull(pedidos, "Lista de pedidos nao pode ser nula");
+        List<Pedido> novos = new ArrayList<>(pedidos.size());
+        for (Pedido pedido : pedidos) {
+            if (pedido != null && planejados.add(pedido.getId())) {
+                novos.add(pedido);
+            }
+        }
+        novos.sort(AgendarDrone.ORDENACAO_POR_PRIORIDADE_E_CHEGADA);
+
+        Set<ViagemAberta> alteradas = new LinkedHashSet<>();
+        List<Pedido> sobras = new ArrayList<>();
+        for (Pedido pedido : novos) {
+            Insercao melhor = null;
+            if (pedido.getLocalizacao() != null) {
+                for (ViagemAberta aberta : abertas) {
+                    Insercao insercao = aberta.melhorInsercao(pedido);
+                    if (insercao != null && (melhor == null || insercao.custo() < melhor.custo())) {
+                        melhor = insercao;
+                    }
+                }
+            }
+            if (melhor == null) {
+                sobras.add(pedido);
+            } else {
+                melhor.aberta().inserir(pedido, melhor.posicao(), melhor.custo());
+                alteradas.add(melhor.aberta());
+            }
+        }
+
+        List<Viagem> resultado = new ArrayList<>();
+        for (ViagemAberta aberta : alteradas) {
+            aberta.reotimizar();
+            resultado.add(aberta.viagem());
+        }
+        if (!sobras.isEmpty() && !drones.isEmpty()) {
+            for (Viagem viagem : agendador.planejar(drones, sobras, obstaculos, melhoria, desvio)) {
+                abertas.add(new ViagemAberta(viagem));
+                resultado.add(viagem);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Retira a viagem do plano, por exemplo quando o drone decola; ela deixa de receber pedidos e seus
+     * pedidos deixam de ser lembrados, de modo que o plano so guarda o que ainda esta aberto.
+     */
+    public boolean encerrar(Viagem viagem) {
+        if (!abertas.removeIf(aberta -> aberta.viagem() == viagem)) {
+            return false;
+        }
+        viagem.getPedidos().forEach(pedido -> planejados.remove(pedido.getId()));
+        return true;
+    }
+
+    private double trecho(Partida a, Partida b) {
+        return mapa.somarTrecho(0.0, a.x(), a.y(), b.x(), b.y(), rascunho);
+    }
+
+    private double comprimento(List<Pedido> ordem) {
+        double total = 0.0;
+        Partida anterior = Partida.DEPOSITO;
+        for (Pedido pedido : ordem) {
+            total += trecho(anterior, pedido.getLocalizacao());
+            anterior = pedido.getLocalizacao();
+        }
+        return total + trecho(anterior, Partida.DEPOSITO);
+    }
+
+    private record Insercao(ViagemAberta aberta, int posicao, double custo) {}
+
+    /**
+     * Viagem do plano com seus pedidos na ordem da rota e o comprimento dessa ordem com desvios.
+     */
+    private final class ViagemAberta {
+        private final Viagem viagem;
+        private final List<Pedido> ordem;
+        private double distancia;
+
+        ViagemAberta(Viagem viagem) {
+            this.viagem = viagem;
+            this.ordem = ordemDaRota(viagem);
+            this.distancia = comprimento(ordem);
+        }
+
+        Viagem viagem() {
+            return viagem;
+        }
+
+        Insercao melhorInsercao(Pedido pedido) {
+            if (!viagem.cabe(pedido)) {
+                return null;
+            }
+            double folga = viagem.getDrone().getDistanciaPorCarga() - distancia + TOLERANCIA;
+            Partida novo = pedido.getLocalizacao();
+            Insercao melhor = null;
+            for (int posicao = 0; posicao <= ordem.size(); posicao++) {
+                Partida antes = posicao == 0 ? Partida.DEPOSITO : ordem.get(posicao - 1).getLocalizacao();
+                Partida depois = posicao == ordem.size() ? Partida.DEPOSITO : ordem.get(posicao).getLocalizacao();
+                double custo = trecho(antes, novo) + trecho(novo, depois) - trecho(antes, depois);
+                if (custo <= folga && (melhor == null || custo < melhor.custo())) {
+                    melhor = new Insercao(this, posicao, custo);
+                }
+            }
+            return melhor;
+        }
+
+        void inserir(Pedido pedido, int posicao, double custo) {
+            ordem.add(posicao, pedido);
+            viagem.adicionarPedido(pedido);
+            distancia += custo;
+        }
+
+        /**
+         * Aplica a melhoria local a ordem atual, mantendo-a so se continuar dentro da autonomia, e
+         * refaz a rota materializada da viagem.
+         */
+        void reotimizar() {
+            if (melhoria != MelhoriaRota.NENHUMA && ordem.size() > 2) {
+                double[] xs = new double[ordem.size() + 1];
+                double[] ys = new double[ordem.size() + 1];
+                int[] tour = new int[ordem.size() + 2];
+                xs[0] = Partida.DEPOSITO.x();
+                ys[0] = Partida.DEPOSITO.y();
+                for (int i = 0; i < ordem.size(); i++) {
+                    xs[i + 1] = ordem.get(i).getLocalizacao().x();
+                    ys[i + 1] = ordem.get(i).getLocalizacao().y();
+                    tour[i + 1] = i + 1;
+                }
+                if (melhoria.melhorar(xs, ys, tour)) {
+                    List<Pedido> reordenada = new ArrayList<>(ordem.size());
+                    for (int i = 1; i < tour.length - 1; i++) {
+                        reordenada.add(ordem.get(tour[i] - 1));
+                    }
+                    double novaDistancia = comprimento(reordenada);
+                    if (novaDistancia < distancia && novaDistancia <= viagem.getDrone().getDistanciaPorCarga() + TOLERANCIA) {
+                        ordem.clear();
+                        ordem.addAll(reordenada);
+                    }
+                }
+            }
+            List<Partida> rota = CalcularDistanciaPorTrajeto.rotaNaOrdem(ordem, mapa);
+            double total = CalcularDistanciaPorTrajeto.gerar(rota);
+            viagem.definirRota(rota, total, AgendarDrone.calcularTempoHoras(total, viagem.getDrone()));
+            distancia = comprimento(ordem);
+        }
+    }
+
+    /**
+     * Recupera a ordem de visita dos pedidos pela rota materializada, que reaproveita as instancias de
+     * {@link Partida} dos pedidos; pedidos fora da rota vao para o fim.
+     */
+    private static List<Pedido> ordemDaRota(Viagem viagem) {
+        Map<Partida, Deque<Pedido>> porLocalizacao = new IdentityHashMap<>();
+        for (Pedido pedido : viagem.getPedidos()) {
+            if (pedido.getLocalizacao() != null) {
+                porLocalizacao.computeIfAbsent(pedido.getLocalizacao(), chave -> new ArrayDeque<>()).add(pedido);
+            }
+        }
+        List<Pedido> ordem = new ArrayList<>(viagem.getPedidos().size());
+        Set<Long> vistos = new HashSet<>();
+        for (Partida ponto : viagem.getRota()) {
+            Deque<Pedido> pedidos = porLocalizacao.get(ponto);
+            Pedido pedido = pedidos == null ? null : pedidos.poll();
+            if (pedido != null) {
+                ordem.add(pedido);
+                vistos.add(pedido.getId());
+            }
+        }
+        for (Pedido pedido : viagem.getPedidos()) {
+            if (pedido.getLocalizacao() != null && !vistos.contains(pedido.getId())) {
+                ordem.add(pedido);
+            }
+        }
+        return ordem;
+    }
+}
@@ -1,6 +1,8 @@
 ﻿package com.drone.simulador.infra;
 
-import java.util.Objects;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
 import java.util.Properties;
 
 import javax.sql.DataSource;
@@ -8,32 +10,71 @@ import javax.sql.DataSource;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
+/**
+ * Pool de conexoes da aplicacao, criado no primeiro uso. Tamanho, tempos limite, deteccao de vazamento
+ * e o cache de comandos preparados do driver sao configurados por variaveis de ambiente.
+ */
 public final class DatabaseConfig {
 
-    private static final HikariDataSource DATA_SOURCE = createDataSource();
+    private static final MonitorPool MONITOR = new MonitorPool();
 
     private DatabaseConfig() {
     }
 
+    private static final class Pool {
+        private static final HikariDataSource DATA_SOURCE = createDataSource();
+    }
+
     private static HikariDataSource createDataSource() {
         Properties props = new Properties();
-        props.setProperty("jdbcUrl", getEnv("JDBC_URL", "jdbc:postgresql://localhost:5432/drones"));
-        props.setProperty("username", getEnv("JDBC_USER", "app"));
-        props.setProperty("password", getEnv("JDBC_PASSWORD", "secret"));
-        props.setProperty("maximumPoolSize", "5");
-        props.setProperty("minimumIdle", "1");
-        props.setProperty("connectionTimeout", "10000");
+        props.setProperty("jdbcUrl", jdbcUrl());
+        props.setProperty("username", usuario());
+        props.setProperty("password", senha());
+        props.setProperty("maximumPoolSize", getEnv("JDBC_POOL_MAX", "10"));
+        props.setProperty("minimumIdle", getEnv("JDBC_POOL_MIN_IDLE", "1"));
+        props.setProperty("connectionTimeout", getEnv("JDBC_CONNECTION_TIMEOUT_MS", "10000"));
+        props.setProperty("leakDetectionThreshold", getEnv("JDBC_LEAK_DETECTION_MS", "0"));
+        props.setProperty("dataSource.prepareThreshold", getEnv("JDBC_PREPARE_THRESHOLD", "5"));
+        props.setProperty("dataSource.preparedStatementCacheQueries", getEnv("JDBC_STATEMENT_CACHE_QUERIES", "256"));
+        props.setProperty("dataSource.reWriteBatchedInserts", getEnv("JDBC_REWRITE_BATCHED_INSERTS", "false"));
 
         HikariConfig config = new HikariConfig(props);
         config.setPoolName("drone-simulador-pool");
+        config.setMetricsTrackerFactory((poolName, poolStats) -> MONITOR);
         return new HikariDataSource(config);
     }
 
+    private static String jdbcUrl() {
+        return getEnv("JDBC_URL", "jdbc:postgresql://localhost:5432/drones");
+    }
+
+    private static String usuario() {
+        return getEnv("JDBC_USER", "app");
+    }
+
+    private static String senha() {
+        return getEnv("JDBC_PASSWORD", "secret");
+    }
+
     private static String getEnv(String key, String defaultValue) {
-        return Objects.requireNonNullElse(System.getenv(key), defaultValue);
+        String valor = System.getenv(key);
+        return valor == null || valor.isBlank() ? defaultValue : valor.trim();
     }
 
     public static DataSource getDataSource() {
-        return DATA_SOURCE;
+        return Pool.DATA_SOURCE;
+    }
+
+    /**
+     * Abre uma conexao fora do pool, com a mesma URL e credenciais, para quem a prende por tempo
+     * indeterminado, como o {@code LISTEN} do cache de cadastro. Cabe a quem chama fecha-la.
+     */
+    public static Connection abrirConexaoDedicada() throws SQLException {
+        return DriverManager.getConnection(jdbcUrl(), usuario(), senha());
+    }
+
+    public static EstatisticasPool estatisticas() {
+        HikariDataSource dataSource = Pool.DATA_SOURCE;
+        return MONITOR.estatisticas(dataSource.getHikariPoolMXBean(), dataSource.getMaximumPoolSize());
     }
 }
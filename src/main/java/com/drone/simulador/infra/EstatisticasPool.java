@@ -0,0 +1,16 @@
+package com.drone.simulador.infra;
+
+/**
+ * Foto do pool de conexoes: ocupacao atual e esperas acumuladas desde a criacao do pool.
+ */
+public record EstatisticasPool(
+    int ativas,
+    int ociosas,
+    int total,
+    int aguardando,
+    int maximo,
+    long aquisicoes,
+    double esperaMediaMs,
+    double esperaMaximaMs,
+    long timeouts
+) {}
@@ -0,0 +1,52 @@
+package com.drone.simulador.infra;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+
+/**
+ * Acumula, a partir dos eventos do HikariCP, quantas conexoes foram obtidas, quanto tempo se esperou
+ * por elas e quantas esperas estouraram o tempo limite.
+ */
+final class MonitorPool implements IMetricsTracker {
+
+    private final LongAdder aquisicoes = new LongAdder();
+    private final LongAdder esperaTotalNanos = new LongAdder();
+    private final LongAccumulator esperaMaximaNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder timeouts = new LongAdder();
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        aquisicoes.increment();
+        esperaTotalNanos.add(elapsedAcquiredNanos);
+        esperaMaximaNanos.accumulate(elapsedAcquiredNanos);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    EstatisticasPool estatisticas(HikariPoolMXBean pool, int maximo) {
+        long quantidade = aquisicoes.sum();
+        double esperaMediaMs = quantidade == 0 ? 0.0 : paraMs(esperaTotalNanos.sum()) / quantidade;
+        return new EstatisticasPool(
+            pool == null ? 0 : pool.getActiveConnections(),
+            pool == null ? 0 : pool.getIdleConnections(),
+            pool == null ? 0 : pool.getTotalConnections(),
+            pool == null ? 0 : pool.getThreadsAwaitingConnection(),
+            maximo,
+            quantidade,
+            esperaMediaMs,
+            paraMs(esperaMaximaNanos.get()),
+            timeouts.sum()
+        );
+    }
+
+    private static double paraMs(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,21 @@
+-- Cada pedido vira uma unica entrega: reenvios passam a ser ignorados por ON CONFLICT (pedido_id).
+-- Antes da restricao, descarta as copias pendentes de pedidos repetidos, mantendo a linha ja
+-- atribuida ou, entre pendentes, a mais antiga.
+DELETE FROM entrega AS e
+ USING entrega AS outra
+ WHERE e.pedido_id = outra.pedido_id
+   AND e.status = 'PENDENTE'
+   AND (outra.status <> 'PENDENTE' OR outra.id < e.id);
+
+-- Repeticoes restantes ja foram atribuidas e fazem parte do historico: ganham o id como sufixo.
+UPDATE entrega AS e
+   SET pedido_id = left(e.pedido_id, 38) || '#' || e.id
+ WHERE EXISTS (
+       SELECT 1
+         FROM entrega AS outra
+        WHERE outra.pedido_id = e.pedido_id
+          AND outra.id < e.id
+       );
+
+ALTER TABLE entrega
+    ADD CONSTRAINT entrega_pedido_id_unico UNIQUE (pedido_id);
@@ -0,0 +1,3 @@
+CREATE INDEX IF NOT EXISTS idx_entrega_pendente
+    ON entrega (prioridade DESC, criado_em ASC, id ASC)
+    WHERE status = 'PENDENTE';
@@ -0,0 +1,32 @@
+CREATE OR REPLACE FUNCTION notificar_alteracao() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'TRUNCATE' THEN
+        PERFORM pg_notify(TG_ARGV[0], '*');
+    ELSIF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify(TG_ARGV[0], OLD.id::text);
+    ELSE
+        PERFORM pg_notify(TG_ARGV[0], NEW.id::text);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS drone_notificar ON drone;
+CREATE TRIGGER drone_notificar
+    AFTER INSERT OR UPDATE OR DELETE ON drone
+    FOR EACH ROW EXECUTE FUNCTION notificar_alteracao('drone_alterado');
+
+DROP TRIGGER IF EXISTS drone_notificar_truncate ON drone;
+CREATE TRIGGER drone_notificar_truncate
+    AFTER TRUNCATE ON drone
+    FOR EACH STATEMENT EXECUTE FUNCTION notificar_alteracao('drone_alterado');
+
+DROP TRIGGER IF EXISTS entrega_notificar ON entrega;
+CREATE TRIGGER entrega_notificar
+    AFTER INSERT OR UPDATE OR DELETE ON entrega
+    FOR EACH ROW EXECUTE FUNCTION notificar_alteracao('entrega_alterada');
+
+DROP TRIGGER IF EXISTS entrega_notificar_truncate ON entrega;
+CREATE TRIGGER entrega_notificar_truncate
+    AFTER TRUNCATE ON entrega
+    FOR EACH STATEMENT EXECUTE FUNCTION notificar_alteracao('entrega_alterada');
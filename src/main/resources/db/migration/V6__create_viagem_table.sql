@@ -0,0 +1,13 @@
+CREATE TABLE IF NOT EXISTS viagem (
+    id SERIAL PRIMARY KEY,
+    drone_id INT NOT NULL REFERENCES drone(id),
+    peso_total_kg NUMERIC(8,2) NOT NULL,
+    distancia_km NUMERIC(10,3) NOT NULL,
+    tempo_horas NUMERIC(10,4) NOT NULL,
+    criado_em TIMESTAMP NOT NULL DEFAULT now()
+);
+
+ALTER TABLE entrega ADD COLUMN IF NOT EXISTS viagem_id INT REFERENCES viagem(id);
+
+CREATE INDEX IF NOT EXISTS idx_entrega_viagem
+    ON entrega (viagem_id);
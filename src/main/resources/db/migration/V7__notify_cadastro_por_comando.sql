@@ -0,0 +1,58 @@
+-- Os gatilhos por linha da V5 emitiam um NOTIFY por linha alterada: uma importacao em massa gerava
+-- uma notificacao e uma releitura por entrega. Os gatilhos por comando leem as tabelas de transicao
+-- e enviam os ids alterados agrupados, ate 500 por aviso (bem abaixo do limite de 8000 bytes do
+-- payload); acima de 5000 linhas pedem a recarga completa com '*', como o TRUNCATE.
+CREATE OR REPLACE FUNCTION notificar_alteracoes() RETURNS trigger AS $$
+DECLARE
+    limite_recarga CONSTANT BIGINT := 5000;
+    ids_por_aviso CONSTANT BIGINT := 500;
+    total BIGINT;
+    lote TEXT;
+BEGIN
+    SELECT count(*) INTO total FROM alteradas;
+    IF total = 0 THEN
+        RETURN NULL;
+    END IF;
+    IF total > limite_recarga THEN
+        PERFORM pg_notify(TG_ARGV[0], '*');
+        RETURN NULL;
+    END IF;
+    FOR lote IN
+        SELECT string_agg(id::text, ',')
+          FROM (SELECT id, (row_number() OVER () - 1) / ids_por_aviso AS grupo FROM alteradas) AS numeradas
+         GROUP BY grupo
+    LOOP
+        PERFORM pg_notify(TG_ARGV[0], lote);
+    END LOOP;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Tabelas de transicao exigem um gatilho por evento; todas se chamam "alteradas" para a funcao acima.
+DROP TRIGGER IF EXISTS drone_notificar ON drone;
+CREATE TRIGGER drone_notificar_insert
+    AFTER INSERT ON drone
+    REFERENCING NEW TABLE AS alteradas
+    FOR EACH STATEMENT EXECUTE FUNCTION notificar_alteracoes('drone_alterado');
+CREATE TRIGGER drone_notificar_update
+    AFTER UPDATE ON drone
+    REFERENCING NEW TABLE AS alteradas
+    FOR EACH STATEMENT EXECUTE FUNCTION notificar_alteracoes('drone_alterado');
+CREATE TRIGGER drone_notificar_delete
+    AFTER DELETE ON drone
+    REFERENCING OLD TABLE AS alteradas
+    FOR EACH STATEMENT EXECUTE FUNCTION notificar_alteracoes('drone_alterado');
+
+DROP TRIGGER IF EXISTS entrega_notificar ON entrega;
+CREATE TRIGGER entrega_notificar_insert
+    AFTER INSERT ON entrega
+    REFERENCING NEW TABLE AS alteradas
+    FOR EACH STATEMENT EXECUTE FUNCTION notificar_alteracoes('entrega_alterada');
+CREATE TRIGGER entrega_notificar_update
+    AFTER UPDATE ON entrega
+    REFERENCING NEW TABLE AS alteradas
+    FOR EACH STATEMENT EXECUTE FUNCTION notificar_alteracoes('entrega_alterada');
+CREATE TRIGGER entrega_notificar_delete
+    AFTER DELETE ON entrega
+    REFERENCING OLD TABLE AS alteradas
+    FOR EACH STATEMENT EXECUTE FUNCTION notificar_alteracoes('entrega_alterada');
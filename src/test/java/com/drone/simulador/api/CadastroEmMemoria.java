@@ -0,0 +1,141 @@
+package com.drone.simulador.api;
+
+import com.drone.simulador.dao.CacheCadastro;
+import com.drone.simulador.dao.model.DroneRecord;
+import com.drone.simulador.dao.model.EntregaRecord;
+import com.drone.simulador.dao.model.ViagemRecord;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+
+/**
+ * Cadastro sem banco: drones e entregas pendentes em memoria, com a mesma regra de pedidos unicos e de
+ * atribuicao do {@link CacheCadastro}, contando gravacoes e registros de viagens.
+ */
+class CadastroEmMemoria extends CacheCadastro {
+    private final Map<Long, DroneRecord> drones = new TreeMap<>();
+    private final Map<Long, EntregaRecord> pendentes = new TreeMap<>();
+    private final Set<String> pedidoIds = new HashSet<>();
+    private final List<Integer> lotesRegistrados = new ArrayList<>();
+    private long sequencia = 1;
+    private long versao;
+    private int gravacoes;
+    private volatile boolean falharRegistro;
+
+    CadastroEmMemoria() {
+        super((DataSource) Proxy.newProxyInstance(
+            CadastroEmMemoria.class.getClassLoader(), new Class<?>[] {DataSource.class}, (proxy, metodo, argumentos) -> null));
+    }
+
+    synchronized void adicionarDrone(String identificador, double capacidadeKg, double autonomiaKm) {
+        long id = sequencia++;
+        drones.put(id, new DroneRecord(id, identificador, capacidadeKg, autonomiaKm, "DISPONIVEL"));
+        versao++;
+    }
+
+    synchronized void adicionarEntregas(int quantidade, long semente) {
+        Random random = new Random(semente);
+        for (int i = 0; i < quantidade; i++) {
+            long id = sequencia++;
+            pedidoIds.add("P" + id);
+            pendentes.put(id, new EntregaRecord(id, "P" + id, 1 + random.nextInt(3), 0, 0,
+                random.nextInt(20) - 10, random.nextInt(20) - 10, 1 + random.nextInt(3), null, "PENDENTE", LocalDateTime.now()));
+        }
+        versao++;
+    }
+
+    synchronized int quantidadePendentes() {
+        return pendentes.size();
+    }
+
+    synchronized int gravacoes() {
+        return gravacoes;
+    }
+
+    synchronized List<Integer> lotesRegistrados() {
+        return List.copyOf(lotesRegistrados);
+    }
+
+    void falharRegistro(boolean falhar) {
+        this.falharRegistro = falhar;
+    }
+
+    @Override
+    public synchronized List<DroneRecord> drones() {
+        return List.copyOf(drones.values());
+    }
+
+    @Override
+    public synchronized long versao() {
+        return versao;
+    }
+
+    @Override
+    public synchronized boolean pendente(long id) {
+        return pendentes.containsKey(id);
+    }
+
+    @Override
+    public long percorrerPendentes(Consumer<EntregaRecord> destino) {
+        List<EntregaRecord> foto;
+        synchronized (this) {
+            foto = new ArrayList<>(pendentes.values());
+        }
+        foto.forEach(destino);
+        return foto.size();
+    }
+
+    @Override
+    public synchronized void gravar(List<DroneRecord> novosDrones, List<EntregaRecord> entregas) {
+        gravacoes++;
+        for (DroneRecord drone : novosDrones) {
+            if (drones.values().stream().noneMatch(existente -> existente.identificador().equals(drone.identificador()))) {
+                long id = sequencia++;
+                drones.put(id, new DroneRecord(id, drone.identificador(), drone.capacidadeKg(), drone.autonomiaKm(), "DISPONIVEL"));
+                versao++;
+            }
+        }
+        for (EntregaRecord entrega : entregas) {
+            if (pedidoIds.add(entrega.pedidoId())) {
+                long id = sequencia++;
+                pendentes.put(id, new EntregaRecord(id, entrega.pedidoId(), entrega.pesoKg(), entrega.origemX(), entrega.origemY(),
+                    entrega.destinoX(), entrega.destinoY(), entrega.prioridade(), null, "PENDENTE", LocalDateTime.now()));
+                versao++;
+            }
+        }
+    }
+
+    @Override
+    public synchronized ViagensRegistradas registrarViagens(List<ViagemRecord> viagens) throws SQLException {
+        if (falharRegistro) {
+            throw new SQLException("Falha simulada ao registrar viagens");
+        }
+        for (ViagemRecord viagem : viagens) {
+            for (Long id : viagem.entregaIds()) {
+                if (!pendentes.containsKey(id)) {
+                    throw new IllegalStateException("Entrega " + id + " ja nao estava pendente");
+                }
+            }
+        }
+        List<ViagemRecord> registradas = new ArrayList<>(viagens.size());
+        int entregas = 0;
+        for (ViagemRecord viagem : viagens) {
+            viagem.entregaIds().forEach(pendentes::remove);
+            entregas += viagem.entregaIds().size();
+            registradas.add(new ViagemRecord(sequencia++, viagem.droneId(), viagem.pesoTotalKg(), viagem.distanciaKm(),
+                viagem.tempoHoras(), viagem.entregaIds(), LocalDateTime.now()));
+        }
+        lotesRegistrados.add(entregas);
+        versao++;
+        return new ViagensRegistradas(registradas, versao);
+    }
+}
@@ -0,0 +1,53 @@
+package com.drone.simulador.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.drone.simulador.dao.EntregaDao;
+import com.drone.simulador.dao.model.EntregaRecord;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ImportacaoEntregasControllerTest {
+
+    @Test
+    @DisplayName("linhas que excedem as colunas de entrega sao rejeitadas sem derrubar a importacao")
+    void linhasForaDosLimitesDaTabelaSaoRejeitadas() throws Exception {
+        List<EntregaRecord> copiadas = new ArrayList<>();
+        var dao = new EntregaDao(null) {
+            @Override
+            public long copiar(Iterator<EntregaRecord> entregas) {
+                entregas.forEachRemaining(copiadas::add);
+                return copiadas.size();
+            }
+        };
+        var mapper = new ObjectMapper();
+        var controller = new ImportacaoEntregasController(mapper, dao);
+        String csv = String.join("\n",
+            "pedido_id,peso_kg,destino_x,destino_y,prioridade",
+            "P1,9999.99,3,4,ALTA",
+            "P".repeat(51) + ",1,3,4,ALTA",
+            "P3,10000,3,4,ALTA",
+            "P4,9999.995,3,4,ALTA",
+            "P5,1,3000000000,4,ALTA",
+            "P".repeat(50) + ",1,3,4,BAIXA"
+        );
+
+        var troca = new TrocaHttpFalsa("POST", "/api/entregas/importar", csv).cabecalho("Content-Type", "text/csv");
+        controller.handle(troca);
+
+        assertEquals(200, troca.status());
+        JsonNode corpo = mapper.readTree(troca.corpoResposta());
+        assertEquals(2, corpo.path("aceitas").asLong());
+        assertEquals(4, corpo.path("rejeitadas").asLong());
+        assertEquals(List.of(3L, 4L, 5L, 6L), corpo.path("erros").findValues("linha").stream().map(JsonNode::asLong).toList());
+        assertTrue(corpo.path("erros").get(0).path("motivo").asText().contains("50"));
+        assertEquals(List.of("P1", "P".repeat(50)), copiadas.stream().map(EntregaRecord::pedidoId).toList());
+    }
+}
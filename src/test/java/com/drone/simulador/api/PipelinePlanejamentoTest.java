@@ -0,0 +1,98 @@
+package com.drone.simulador.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.drone.simulador.domain.AgendarDrone;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class PipelinePlanejamentoTest {
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    @DisplayName("micro-lotes respeitam o tamanho maximo e todas as entregas sao planejadas")
+    void microLotesRespeitamTamanhoEPlanejamTudo() throws Exception {
+        var cadastro = new CadastroEmMemoria();
+        cadastro.adicionarDrone("D1", 8, 40);
+        cadastro.adicionarEntregas(57, 11);
+
+        try (var pipeline = new PipelinePlanejamento(cadastro, new AgendarDrone(), List.of(), mapper,
+            10, Duration.ofMillis(50), Duration.ZERO, Duration.ofMillis(10), 64, 4, 256)) {
+            var assinante = pipeline.assinar();
+            pipeline.iniciar();
+            aguardar(() -> cadastro.quantidadePendentes() == 0);
+
+            List<Integer> lotes = cadastro.lotesRegistrados();
+            assertTrue(lotes.stream().allMatch(tamanho -> tamanho <= 10), "lote acima do limite: " + lotes);
+            assertEquals(57, lotes.stream().mapToInt(Integer::intValue).sum());
+            aguardar(() -> pipeline.estatisticas().entregasPlanejadas() == 57);
+            assertEquals(0, pipeline.estatisticas().falhas());
+
+            long eventos = 0;
+            while (assinante.proximo(Duration.ofMillis(50)) != null) {
+                eventos++;
+            }
+            assertEquals(pipeline.estatisticas().viagensEmitidas(), eventos);
+        }
+    }
+
+    @Test
+    @DisplayName("filas pequenas seguram os estagios sem perder nem repetir entregas")
+    void filasPequenasNaoPerdemEntregas() throws Exception {
+        var cadastro = new CadastroEmMemoria();
+        cadastro.adicionarDrone("D1", 6, 30);
+        cadastro.adicionarDrone("D2", 4, 25);
+
+        try (var pipeline = new PipelinePlanejamento(cadastro, new AgendarDrone(), List.of(), mapper,
+            5, Duration.ofMillis(5), Duration.ofMillis(30), Duration.ofMillis(5), 2, 1, 1)) {
+            pipeline.iniciar();
+            for (int onda = 0; onda < 4; onda++) {
+                cadastro.adicionarEntregas(40, onda);
+                Thread.sleep(15);
+            }
+            aguardar(() -> cadastro.quantidadePendentes() == 0);
+
+            assertEquals(160, cadastro.lotesRegistrados().stream().mapToInt(Integer::intValue).sum());
+            aguardar(() -> pipeline.estatisticas().entregasPlanejadas() == 160);
+            assertEquals(0, pipeline.estatisticas().falhas(), "nenhuma entrega deve ser registrada duas vezes");
+        }
+    }
+
+    @Test
+    @DisplayName("lote que falha ao gravar devolve as entregas e elas voltam a ser planejadas")
+    void loteComFalhaVoltaAoPlanejamento() throws Exception {
+        var cadastro = new CadastroEmMemoria();
+        cadastro.adicionarDrone("D1", 8, 40);
+        cadastro.falharRegistro(true);
+        cadastro.adicionarEntregas(20, 5);
+
+        try (var pipeline = new PipelinePlanejamento(cadastro, new AgendarDrone(), List.of(), mapper,
+            8, Duration.ofMillis(20), Duration.ZERO, Duration.ofMillis(10), 64, 4, 256)) {
+            pipeline.iniciar();
+            aguardar(() -> pipeline.estatisticas().falhas() > 0);
+            assertEquals(20, cadastro.quantidadePendentes());
+            assertTrue(cadastro.lotesRegistrados().isEmpty());
+
+            cadastro.falharRegistro(false);
+            aguardar(() -> cadastro.quantidadePendentes() == 0);
+
+            assertEquals(20, cadastro.lotesRegistrados().stream().mapToInt(Integer::intValue).sum());
+        }
+    }
+
+    private static void aguardar(BooleanSupplier condicao) throws InterruptedException {
+        long limite = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condicao.getAsBoolean()) {
+            assertTrue(System.nanoTime() < limite, "condicao nao atingida a tempo");
+            Thread.sleep(10);
+        }
+    }
+}
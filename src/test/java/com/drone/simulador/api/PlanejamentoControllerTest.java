@@ -0,0 +1,119 @@
+package com.drone.simulador.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.drone.simulador.domain.AgendarDrone;
+import com.drone.simulador.domain.DroneBatterySimulator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class PlanejamentoControllerTest {
+
+    private static final String CORPO = """
+        {"drones":[{"id":"D1","capacidadeKg":10,"autonomiaKm":40}],
+         "pedidos":[{"x":3,"y":4,"pesoKg":2,"prioridade":"ALTA"},{"x":-2,"y":1,"pesoKg":1,"prioridade":"BAIXA"}]}
+        """;
+
+    private static PlanejamentoController controller(CadastroEmMemoria cadastro) {
+        var mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        return new PlanejamentoController(mapper, new AgendarDrone(), new DroneBatterySimulator(), cadastro);
+    }
+
+    @Test
+    @DisplayName("POST com If-None-Match do plano ja entregue responde 412 so enquanto o cadastro nao muda")
+    void postComEtagDoPlanoEntregueResponde412() throws Exception {
+        var cadastro = new CadastroEmMemoria();
+        var planejamento = controller(cadastro);
+
+        var primeira = new TrocaHttpFalsa("POST", "/api/planejar", CORPO);
+        planejamento.handle(primeira);
+        assertEquals(200, primeira.status());
+        String etag = primeira.getResponseHeaders().getFirst("ETag");
+        assertNotNull(etag);
+
+        var condicional = new TrocaHttpFalsa("POST", "/api/planejar", CORPO).cabecalho("If-None-Match", etag);
+        planejamento.handle(condicional);
+
+        assertEquals(412, condicional.status());
+        assertEquals(etag, condicional.getResponseHeaders().getFirst("ETag"));
+        assertEquals(1, cadastro.gravacoes(), "o payload nao deve ser gravado de novo");
+        assertEquals(1, cadastro.lotesRegistrados().size(), "nenhuma viagem nova deve ser registrada");
+
+        cadastro.adicionarEntregas(2, 9);
+        var aposAlteracao = new TrocaHttpFalsa("POST", "/api/planejar", CORPO).cabecalho("If-None-Match", etag);
+        planejamento.handle(aposAlteracao);
+
+        assertEquals(200, aposAlteracao.status(), "entregas pendentes novas precisam ser planejadas");
+        assertNotEquals(etag, aposAlteracao.getResponseHeaders().getFirst("ETag"));
+        assertEquals(List.of(2, 2), cadastro.lotesRegistrados());
+    }
+
+    @Test
+    @DisplayName("ETag de antes da subida nao gera 412 sem plano guardado")
+    void etagSemPlanoGuardadoNaoResponde412() throws Exception {
+        var cadastro = new CadastroEmMemoria();
+        var primeira = new TrocaHttpFalsa("POST", "/api/planejar", CORPO);
+        controller(cadastro).handle(primeira);
+        String etag = primeira.getResponseHeaders().getFirst("ETag");
+
+        cadastro.adicionarEntregas(2, 4);
+        var aposSubida = new TrocaHttpFalsa("POST", "/api/planejar", CORPO).cabecalho("If-None-Match", etag);
+        controller(cadastro).handle(aposSubida);
+
+        assertEquals(200, aposSubida.status());
+        assertEquals(List.of(2, 2), cadastro.lotesRegistrados());
+    }
+
+    @Test
+    @DisplayName("reenvio identico apos a resposta recebe o plano ja registrado do cache")
+    void reenvioSequencialAcertaCacheDePlanos() throws Exception {
+        var cadastro = new CadastroEmMemoria();
+        var planejamento = controller(cadastro);
+
+        var primeira = new TrocaHttpFalsa("POST", "/api/planejar", CORPO);
+        planejamento.handle(primeira);
+        var reenvio = new TrocaHttpFalsa("POST", "/api/planejar", CORPO);
+        planejamento.handle(reenvio);
+
+        assertEquals(200, primeira.status());
+        assertEquals(200, reenvio.status());
+        assertEquals(primeira.corpoResposta(), reenvio.corpoResposta());
+        assertEquals(primeira.getResponseHeaders().getFirst("ETag"), reenvio.getResponseHeaders().getFirst("ETag"));
+        assertEquals(1, cadastro.gravacoes());
+        assertEquals(1, cadastro.lotesRegistrados().size());
+        var estatisticas = planejamento.estatisticasCachePlanos();
+        assertEquals(1, estatisticas.acertos());
+        assertEquals(1, estatisticas.falhas());
+    }
+
+    @Test
+    @DisplayName("entregas pendentes novas ou drone alterado invalidam o plano guardado")
+    void alteracaoDoCadastroInvalidaPlanoGuardado() throws Exception {
+        var cadastro = new CadastroEmMemoria();
+        var planejamento = controller(cadastro);
+
+        var primeira = new TrocaHttpFalsa("POST", "/api/planejar", CORPO);
+        planejamento.handle(primeira);
+        assertEquals(200, primeira.status());
+
+        cadastro.adicionarEntregas(3, 7);
+        var comPendentes = new TrocaHttpFalsa("POST", "/api/planejar", CORPO);
+        planejamento.handle(comPendentes);
+        assertEquals(200, comPendentes.status());
+        assertEquals(List.of(2, 3), cadastro.lotesRegistrados(), "as entregas novas devem ser planejadas");
+        assertEquals(0, cadastro.quantidadePendentes());
+
+        cadastro.adicionarDrone("D2", 5, 30);
+        planejamento.handle(new TrocaHttpFalsa("POST", "/api/planejar", CORPO));
+
+        var estatisticas = planejamento.estatisticasCachePlanos();
+        assertEquals(0, estatisticas.acertos(), "nenhum plano de um cadastro anterior deve ser servido");
+        assertEquals(3, estatisticas.falhas());
+    }
+}
@@ -0,0 +1,101 @@
+package com.drone.simulador.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.drone.simulador.domain.AgendarDrone;
+import com.drone.simulador.domain.Drone;
+import com.drone.simulador.domain.DroneBatterySimulator;
+import com.drone.simulador.domain.MelhoriaRota;
+import com.drone.simulador.domain.ModoDesvio;
+import com.drone.simulador.domain.Obstaculo;
+import com.drone.simulador.domain.Pedido;
+import com.drone.simulador.domain.Viagem;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class PlanejamentosAssincronosControllerTest {
+
+    @Test
+    @DisplayName("GET do job com o ETag atual responde 304 sem corpo")
+    void getDoJobComEtagAtualResponde304() throws Exception {
+        var mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        var cadastro = new CadastroEmMemoria();
+        cadastro.adicionarDrone("D1", 10, 40);
+        cadastro.adicionarEntregas(6, 3);
+        var planejamento = new PlanejamentoController(mapper, new AgendarDrone(), new DroneBatterySimulator(), cadastro);
+        try (var jobs = new JobsPlanejamento(planejamento, 1, 4, 16, Duration.ofMinutes(1))) {
+            var controller = new PlanejamentosAssincronosController(mapper, jobs, 1);
+            var submissao = new TrocaHttpFalsa("POST", "/api/planejamentos", "{}");
+            controller.handle(submissao);
+            assertEquals(202, submissao.status());
+            String local = submissao.getResponseHeaders().getFirst("Location");
+
+            TrocaHttpFalsa consulta;
+            long limite = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (true) {
+                consulta = new TrocaHttpFalsa("GET", local, null);
+                controller.handle(consulta);
+                assertEquals(200, consulta.status());
+                String estado = mapper.readTree(consulta.corpoResposta()).path("estado").asText();
+                if ("CONCLUIDO".equals(estado)) {
+                    break;
+                }
+                assertTrue(!"FALHOU".equals(estado) && System.nanoTime() < limite, "job nao concluiu: " + consulta.corpoResposta());
+                Thread.sleep(20);
+            }
+            String etag = consulta.getResponseHeaders().getFirst("ETag");
+            assertNotNull(etag);
+
+            var condicional = new TrocaHttpFalsa("GET", local, null).cabecalho("If-None-Match", etag);
+            controller.handle(condicional);
+
+            assertEquals(304, condicional.status());
+            assertEquals(etag, condicional.getResponseHeaders().getFirst("ETag"));
+            assertTrue(condicional.corpoResposta().isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Error lancado pelo planejamento encerra o job como FALHOU")
+    void errorNoPlanejamentoMarcaJobComoFalhou() throws Exception {
+        var mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        var cadastro = new CadastroEmMemoria();
+        cadastro.adicionarDrone("D1", 10, 40);
+        cadastro.adicionarEntregas(6, 3);
+        var agendador = new AgendarDrone() {
+            @Override
+            public List<Viagem> planejar(List<Drone> drones, List<Pedido> pedidos, List<Obstaculo> obstaculos,
+                                         MelhoriaRota melhoria, ModoDesvio desvio) {
+                throw new StackOverflowError("recursao simulada");
+            }
+        };
+        var planejamento = new PlanejamentoController(mapper, agendador, new DroneBatterySimulator(), cadastro);
+        try (var jobs = new JobsPlanejamento(planejamento, 1, 4, 16, Duration.ofMinutes(1))) {
+            var controller = new PlanejamentosAssincronosController(mapper, jobs, 1);
+            var submissao = new TrocaHttpFalsa("POST", "/api/planejamentos", "{}");
+            controller.handle(submissao);
+            String local = submissao.getResponseHeaders().getFirst("Location");
+
+            String estado;
+            TrocaHttpFalsa consulta;
+            long limite = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            do {
+                assertTrue(System.nanoTime() < limite, "job nao terminou");
+                Thread.sleep(20);
+                consulta = new TrocaHttpFalsa("GET", local, null);
+                controller.handle(consulta);
+                estado = mapper.readTree(consulta.corpoResposta()).path("estado").asText();
+            } while (!"CONCLUIDO".equals(estado) && !"FALHOU".equals(estado));
+
+            assertEquals("FALHOU", estado);
+            assertEquals(500, mapper.readTree(consulta.corpoResposta()).path("erro").path("status").asInt());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.drone.simulador.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ReservaPipelineTest {
+
+    @Test
+    @DisplayName("POST e recusado com 409 apontando para as viagens do pipeline; GET segue ao handler")
+    void recusaSubmissaoEDeixaConsultaPassar() throws Exception {
+        var reserva = new ReservaPipeline(exchange -> {
+            try (exchange) {
+                exchange.sendResponseHeaders(204, -1);
+            }
+        });
+
+        var submissao = new TrocaHttpFalsa("POST", "/api/planejar", "{}");
+        reserva.handle(submissao);
+        assertEquals(409, submissao.status());
+        assertTrue(submissao.corpoResposta().contains("/api/pipeline/viagens"), submissao.corpoResposta());
+
+        var consulta = new TrocaHttpFalsa("GET", "/api/planejamentos/abc", null);
+        reserva.handle(consulta);
+        assertEquals(204, consulta.status());
+    }
+}
@@ -0,0 +1,139 @@
+package com.drone.simulador.api;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Troca HTTP em memoria para exercitar os controllers sem subir o servidor.
+ */
+final class TrocaHttpFalsa extends HttpExchange {
+    private final String metodo;
+    private final URI uri;
+    private final Headers cabecalhosRequisicao = new Headers();
+    private final Headers cabecalhosResposta = new Headers();
+    private final Map<String, Object> atributos = new HashMap<>();
+    private InputStream corpo;
+    private OutputStream saida;
+    private final ByteArrayOutputStream resposta = new ByteArrayOutputStream();
+    private int status = -1;
+
+    TrocaHttpFalsa(String metodo, String caminho, String corpo) {
+        this.metodo = metodo;
+        this.uri = URI.create(caminho);
+        this.corpo = new ByteArrayInputStream(corpo == null ? new byte[0] : corpo.getBytes(StandardCharsets.UTF_8));
+        this.saida = resposta;
+    }
+
+    TrocaHttpFalsa cabecalho(String nome, String valor) {
+        cabecalhosRequisicao.add(nome, valor);
+        return this;
+    }
+
+    int status() {
+        return status;
+    }
+
+    String corpoResposta() {
+        return resposta.toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return cabecalhosRequisicao;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return cabecalhosResposta;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return metodo;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return corpo;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return saida;
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) {
+        this.status = rCode;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return null;
+    }
+
+    @Override
+    public int getResponseCode() {
+        return status;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public String getProtocol() {
+        return "HTTP/1.1";
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return atributos.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        atributos.put(name, value);
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            corpo = i;
+        }
+        if (o != null) {
+            saida = o;
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+}
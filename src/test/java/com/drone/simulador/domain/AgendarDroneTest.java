@@ -3,8 +3,12 @@ package com.drone.simulador.domain;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -112,4 +116,148 @@ class AgendarDroneTest {
         assertTrue(possuiDesvioSuperior, "espera ponto de desvio acima do obstaculo");
         assertTrue(viagens.get(0).getTempoHoras() > 0, "tempo deve ser maior que zero");
     }
+
+    @Test
+    @DisplayName("planejar com limite ampliado de candidatos respeita capacidade e autonomia e escolhe a combinacao da busca exaustiva")
+    void planejarComLimiteAmpliadoDeCandidatos() {
+        var agendador = new AgendarDrone(30);
+        var drone = new Drone("D1", 6.0, 5.0); // alcance maximo = 30 km
+        var pedidos = new ArrayList<Pedido>();
+        for (int i = 0; i < 30; i++) {
+            var prioridade = Prioridade.values()[i % Prioridade.values().length];
+            pedidos.add(new Pedido(new Partida(i % 7 - 3, i / 7 - 2), 0.5 + (i % 4) * 0.5, prioridade));
+        }
+
+        var viagens = agendador.planejar(List.of(drone), pedidos);
+
+        assertEquals(30, viagens.stream().mapToInt(v -> v.getPedidos().size()).sum(), "todos os pedidos devem ser atendidos");
+        viagens.forEach(viagem -> {
+            assertTrue(viagem.getPesoTotalKg() <= drone.getCapacidadePorPeso() + 1e-6);
+            assertTrue(viagem.getDistanciaKm() <= drone.getDistanciaPorCarga() + 1e-6);
+        });
+
+        // 16 candidatos de mesma prioridade, acima do padrao de 12, ainda cabem numa enumeracao exaustiva
+        var random = new Random(5);
+        var amostra = new ArrayList<Pedido>();
+        for (int i = 0; i < 16; i++) {
+            amostra.add(new Pedido(new Partida(random.nextDouble() * 10 - 5, random.nextDouble() * 10 - 5),
+                0.5 + random.nextInt(250) / 100.0, Prioridade.MEDIA));
+        }
+        var droneAmostra = new Drone("D2", 6.0, 4.0); // alcance maximo = 24 km
+
+        var primeira = new AgendarDrone(16).planejar(List.of(droneAmostra), new ArrayList<>(amostra)).get(0);
+
+        assertEquals(Set.copyOf(melhorCombinacaoExaustiva(droneAmostra, amostra)), Set.copyOf(primeira.getPedidos()));
+    }
+
+    /**
+     * Avalia todos os subconjuntos viaveis, na ordem em que a fila entrega os candidatos, e devolve o de
+     * melhor ranking.
+     */
+    private static List<Pedido> melhorCombinacaoExaustiva(Drone drone, List<Pedido> pedidos) {
+        List<Pedido> candidatos = new ArrayList<>(pedidos);
+        candidatos.sort(AgendarDrone.ORDENACAO_POR_PRIORIDADE_E_CHEGADA);
+        List<Pedido> melhor = List.of();
+        BuscaCombinacoes.CombinationRanking melhorRanking = null;
+        for (int mascara = 1; mascara < 1 << candidatos.size(); mascara++) {
+            List<Pedido> combinacao = new ArrayList<>();
+            for (int i = 0; i < candidatos.size(); i++) {
+                if ((mascara & 1 << i) != 0) {
+                    combinacao.add(candidatos.get(i));
+                }
+            }
+            double peso = combinacao.stream().mapToDouble(Pedido::getPesoEmKg).sum();
+            if (peso > drone.getCapacidadePorPeso() + 1e-6) {
+                continue;
+            }
+            double distancia = CalcularDistanciaPorTrajeto.gerar(CalcularDistanciaPorTrajeto.buildRoute(combinacao));
+            if (distancia > drone.getDistanciaPorCarga() + 1e-6) {
+                continue;
+            }
+            var ranking = new BuscaCombinacoes.CombinationRanking(
+                combinacao.stream().mapToInt(pedido -> pedido.getPrioridade().getPeso()).sum(),
+                combinacao.size(),
+                peso / drone.getCapacidadePorPeso(),
+                distancia / drone.getDistanciaPorCarga(),
+                combinacao.stream().map(Pedido::getTempoChegada).min(LocalDateTime::compareTo).orElseThrow(),
+                distancia
+            );
+            if (melhorRanking == null || ranking.compareTo(melhorRanking) < 0) {
+                melhor = combinacao;
+                melhorRanking = ranking;
+            }
+        }
+        return melhor;
+    }
+
+    @Test
+    @DisplayName("planejar no modo melhor drone atribui cada viagem ao drone que melhor a comporta")
+    void planejarNoModoMelhorDroneEscolheDroneAdequado() {
+        var agendador = new AgendarDrone(12, null, ModoAtribuicao.MELHOR_DRONE);
+        var droneLeve = new Drone("D1", 5.0, 4.0); // 5kg / 20km
+        var dronePesado = new Drone("D2", 7.5, 35.0 / 7.5); // 7.5kg / 35km
+        var drones = List.of(droneLeve, dronePesado);
+
+        var pedidoPesado = new Pedido(new Partida(3, 4), 7.0, Prioridade.ALTA);
+        var pedidoLeve = new Pedido(new Partida(1, 1), 2.0, Prioridade.BAIXA);
+
+        var viagens = agendador.planejar(drones, new ArrayList<>(List.of(pedidoLeve, pedidoPesado)));
+
+        assertEquals(2, viagens.size());
+        assertEquals(dronePesado, viagens.get(0).getDrone(), "pedido pesado so cabe no D2");
+        assertTrue(viagens.get(0).getPedidos().contains(pedidoPesado));
+        assertEquals(droneLeve, viagens.get(1).getDrone(), "pedido leve aproveita melhor a capacidade do D1");
+        assertTrue(viagens.get(1).getPedidos().contains(pedidoLeve));
+    }
+
+    @Test
+    @DisplayName("planejar sem memoria para a matriz de distancias gera o mesmo plano")
+    void planejarSemMatrizEmMemoriaGeraMesmoPlano() {
+        var drones = List.of(new Drone("D1", 6.0, 5.0), new Drone("D2", 4.0, 6.0));
+        var pedidos = new ArrayList<Pedido>();
+        for (int i = 0; i < 20; i++) {
+            var prioridade = Prioridade.values()[i % Prioridade.values().length];
+            pedidos.add(new Pedido(new Partida(i % 5 * 1.5 - 3, i / 5 * 1.5 - 3), 0.5 + (i % 3) * 0.5, prioridade));
+        }
+        var obstaculos = List.of(new Obstaculo(1, 1, 0.6), new Obstaculo(-2, 0.5, 0.8));
+
+        var comMatriz = new AgendarDrone(12, null, ModoAtribuicao.RODIZIO, 4096).planejar(drones, pedidos, obstaculos);
+        var sobDemanda = new AgendarDrone(12, null, ModoAtribuicao.RODIZIO, 4096, 0).planejar(drones, pedidos, obstaculos);
+
+        assertEquals(comMatriz.size(), sobDemanda.size());
+        for (int i = 0; i < comMatriz.size(); i++) {
+            assertEquals(comMatriz.get(i).getPedidos(), sobDemanda.get(i).getPedidos());
+            assertEquals(comMatriz.get(i).getRota(), sobDemanda.get(i).getRota());
+            assertEquals(comMatriz.get(i).getDistanciaKm(), sobDemanda.get(i).getDistanciaKm());
+        }
+    }
+
+    @Test
+    @DisplayName("planejar em paralelo num pool pequeno gera o mesmo plano que a busca sequencial")
+    void planejarEmParaleloGeraMesmoPlanoQueSequencial() {
+        var drones = List.of(new Drone("D1", 6.0, 5.0), new Drone("D2", 4.0, 6.0));
+        var pedidos = new ArrayList<Pedido>();
+        for (int i = 0; i < 24; i++) {
+            var prioridade = Prioridade.values()[i % Prioridade.values().length];
+            pedidos.add(new Pedido(new Partida(i % 6 - 2.5, i / 6 - 1.5), 0.3 + (i % 4) * 0.4, prioridade));
+        }
+        var obstaculos = List.of(new Obstaculo(0.5, 0.5, 0.4));
+
+        // 14 candidatos passam do limiar sequencial da busca, entao a arvore e dividida entre as threads
+        var sequencial = new AgendarDrone(14).planejar(drones, pedidos, obstaculos);
+        var pool = new ForkJoinPool(2);
+        try {
+            var paralelo = new AgendarDrone(14, pool).planejar(drones, pedidos, obstaculos);
+
+            assertEquals(sequencial.size(), paralelo.size());
+            for (int i = 0; i < sequencial.size(); i++) {
+                assertEquals(sequencial.get(i).getDrone(), paralelo.get(i).getDrone());
+                assertEquals(sequencial.get(i).getPedidos(), paralelo.get(i).getPedidos());
+                assertEquals(sequencial.get(i).getRota(), paralelo.get(i).getRota());
+                assertEquals(sequencial.get(i).getDistanciaKm(), paralelo.get(i).getDistanciaKm());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
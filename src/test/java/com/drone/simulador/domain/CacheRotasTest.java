@@ -0,0 +1,77 @@
+package com.drone.simulador.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CacheRotasTest {
+
+    private static CacheRotas.RotaMemorizada rota(double distancia) {
+        return new CacheRotas.RotaMemorizada(new long[0], new double[0], distancia);
+    }
+
+    @Test
+    @DisplayName("cache acerta o mesmo subconjunto em qualquer ordem de pedidos")
+    void buscarAcertaSubconjuntoRepetido() {
+        var a = new Pedido(new Partida(1, 0), 1.0, Prioridade.ALTA);
+        var b = new Pedido(new Partida(0, 1), 1.0, Prioridade.BAIXA);
+        var cache = new CacheRotas(4, List.of());
+        var memorizada = rota(2.0);
+
+        assertNull(cache.buscar(CacheRotas.chave(List.of(a, b))));
+        cache.guardar(CacheRotas.chave(List.of(a, b)), memorizada);
+
+        assertSame(memorizada, cache.buscar(CacheRotas.chave(List.of(b, a))));
+        assertEquals(new EstatisticasCache(1, 1, 0), cache.estatisticas());
+    }
+
+    @Test
+    @DisplayName("cache cheio despeja o subconjunto usado ha mais tempo")
+    void guardarDespejaMenosRecente() {
+        var cache = new CacheRotas(2, List.of());
+        cache.guardar(new long[] {1}, rota(1.0));
+        cache.guardar(new long[] {2}, rota(2.0));
+        assertNotNull(cache.buscar(new long[] {1}));
+
+        cache.guardar(new long[] {3}, rota(3.0));
+
+        assertNull(cache.buscar(new long[] {2}), "{2} era o menos recente");
+        assertNotNull(cache.buscar(new long[] {1}));
+        assertNotNull(cache.buscar(new long[] {3}));
+        assertEquals(1, cache.estatisticas().despejos());
+    }
+
+    @Test
+    @DisplayName("rotas memorizadas nao valem para outros obstaculos nem para outra sessao")
+    void cacheIsoladoPorObstaculosESessao() {
+        var ids = new long[] {1, 2};
+        var cache = new CacheRotas(4, List.of(new Obstaculo(1, 1, 0.5)));
+        cache.guardar(ids, rota(5.0));
+
+        assertNull(new CacheRotas(4, List.of(new Obstaculo(1, 1, 0.6))).buscar(ids));
+        assertNull(new CacheRotas(4, List.of(new Obstaculo(1, 1, 0.5))).buscar(ids));
+
+        var drones = List.of(new Drone("D1", 4.0, 5.0));
+        var pedidos = new ArrayList<Pedido>();
+        for (int i = 0; i < 10; i++) {
+            pedidos.add(new Pedido(new Partida(i % 4 - 1.5, i / 4 - 1.0), 0.5 + (i % 3) * 0.5, Prioridade.values()[i % 3]));
+        }
+        var agendador = new AgendarDrone();
+        agendador.planejar(drones, pedidos);
+        var primeira = agendador.estatisticasCache();
+        agendador.planejar(drones, pedidos);
+        var acumulada = agendador.estatisticasCache();
+
+        assertTrue(primeira.falhas() > 0);
+        assertEquals(2 * primeira.falhas(), acumulada.falhas(), "cada chamada de planejar comeca com o cache vazio");
+        assertEquals(2 * primeira.acertos(), acumulada.acertos());
+    }
+}
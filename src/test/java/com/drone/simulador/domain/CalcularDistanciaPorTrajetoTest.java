@@ -0,0 +1,169 @@
+package com.drone.simulador.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CalcularDistanciaPorTrajetoTest {
+
+    private static final Comparator<Partida> ORDEM_PONTOS =
+        Comparator.comparingDouble(Partida::x).thenComparingDouble(Partida::y);
+
+    @Test
+    @DisplayName("Rota com indice espacial coincide com a busca linear por vizinho mais proximo")
+    void rotaComIndiceEspacialCoincideComBuscaLinear() {
+        Random random = new Random(11);
+        List<Pedido> pedidos = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            // coordenadas inteiras geram empates e pontos repetidos
+            pedidos.add(new Pedido(new Partida(random.nextInt(41) - 20, random.nextInt(41) - 20), 1.0, Prioridade.MEDIA));
+        }
+
+        List<Partida> rota = CalcularDistanciaPorTrajeto.buildRoute(pedidos);
+
+        assertEquals(rotaLinear(pedidos), rota);
+    }
+
+    @Test
+    @DisplayName("Melhoria 2-opt + Or-opt nunca alonga a rota e preserva as paradas")
+    void melhoriaLocalEncurtaRota() {
+        Random random = new Random(5);
+        MelhoriaRota melhoria = new DoisOpt(Duration.ofSeconds(1)).seguidaDe(new OrOpt(Duration.ofSeconds(1)));
+        for (int caso = 0; caso < 50; caso++) {
+            List<Pedido> pedidos = new ArrayList<>();
+            for (int i = 0; i < 3 + random.nextInt(20); i++) {
+                pedidos.add(new Pedido(new Partida(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10), 1.0, Prioridade.BAIXA));
+            }
+
+            List<Partida> original = CalcularDistanciaPorTrajeto.buildRoute(pedidos);
+            List<Partida> melhorada = CalcularDistanciaPorTrajeto.buildRoute(pedidos, List.of(), melhoria);
+
+            assertTrue(CalcularDistanciaPorTrajeto.gerar(melhorada) <= CalcularDistanciaPorTrajeto.gerar(original) + 1e-9);
+            assertEquals(Partida.DEPOSITO, melhorada.get(0));
+            assertEquals(Partida.DEPOSITO, melhorada.get(melhorada.size() - 1));
+            List<Partida> paradasOriginais = new ArrayList<>(original);
+            List<Partida> paradasMelhoradas = new ArrayList<>(melhorada);
+            paradasOriginais.sort(ORDEM_PONTOS);
+            paradasMelhoradas.sort(ORDEM_PONTOS);
+            assertEquals(paradasOriginais, paradasMelhoradas);
+        }
+    }
+
+    @Test
+    @DisplayName("Com obstaculos a melhoria so troca o tour quando ele fica mais curto com os desvios")
+    void melhoriaComObstaculosNuncaAlongaRota() {
+        Random random = new Random(3);
+        MelhoriaRota melhoria = new DoisOpt(Duration.ofSeconds(1)).seguidaDe(new OrOpt(Duration.ofSeconds(1)));
+        for (int caso = 0; caso < 200; caso++) {
+            List<Pedido> pedidos = new ArrayList<>();
+            for (int i = 0; i < 5 + random.nextInt(4); i++) {
+                pedidos.add(new Pedido(new Partida(random.nextInt(21) - 10, random.nextInt(21) - 10), 1.0, Prioridade.ALTA));
+            }
+            List<Obstaculo> obstaculos = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                obstaculos.add(new Obstaculo(random.nextInt(17) - 7.5, random.nextInt(17) - 7.5, 1 + random.nextInt(3)));
+            }
+
+            double original = CalcularDistanciaPorTrajeto.gerar(CalcularDistanciaPorTrajeto.buildRoute(pedidos, obstaculos));
+            double melhorada = CalcularDistanciaPorTrajeto.gerar(CalcularDistanciaPorTrajeto.buildRoute(pedidos, obstaculos, melhoria));
+
+            assertTrue(melhorada <= original + 1e-9, "caso " + caso + ": " + melhorada + " > " + original);
+        }
+    }
+
+    private static List<Partida> rotaLinear(List<Pedido> pedidos) {
+        List<Partida> clientes = new ArrayList<>();
+        pedidos.forEach(pedido -> clientes.add(pedido.getLocalizacao()));
+        List<Partida> rota = new ArrayList<>();
+        Partida atual = Partida.DEPOSITO;
+        rota.add(atual);
+        while (!clientes.isEmpty()) {
+            Partida melhor = null;
+            double menor = Double.MAX_VALUE;
+            for (Partida candidato : clientes) {
+                double distancia = atual.distanceTo(candidato);
+                if (distancia < menor) {
+                    menor = distancia;
+                    melhor = candidato;
+                }
+            }
+            rota.add(melhor);
+            clientes.remove(melhor);
+            atual = melhor;
+        }
+        rota.add(Partida.DEPOSITO);
+        return rota;
+    }
+
+    @Test
+    @DisplayName("Desvio por visibilidade nao cruza nenhum obstaculo e encurta o desvio perpendicular")
+    void desvioPorVisibilidadeEvitaTodosOsObstaculos() {
+        List<Pedido> pedidos = List.of(new Pedido(new Partida(20, 0), 1.0, Prioridade.ALTA));
+        // o desvio perpendicular do primeiro obstaculo passa por dentro do segundo
+        List<Obstaculo> obstaculos = List.of(new Obstaculo(10, 0, 2.0), new Obstaculo(4, 2.5, 1.0));
+
+        List<Partida> perpendicular = CalcularDistanciaPorTrajeto.buildRoute(pedidos, obstaculos);
+        List<Partida> visibilidade = CalcularDistanciaPorTrajeto.buildRoute(
+            pedidos, obstaculos, MelhoriaRota.NENHUMA, ModoDesvio.VISIBILIDADE);
+
+        assertTrue(cruzaObstaculo(perpendicular, obstaculos), "cenario deve expor a limitacao do desvio perpendicular");
+        assertTrue(!cruzaObstaculo(visibilidade, obstaculos), "nenhum trecho pode cruzar obstaculos");
+        assertEquals(Partida.DEPOSITO, visibilidade.get(0));
+        assertEquals(Partida.DEPOSITO, visibilidade.get(visibilidade.size() - 1));
+        assertTrue(visibilidade.contains(new Partida(20, 0)));
+        assertTrue(CalcularDistanciaPorTrajeto.gerar(visibilidade) < CalcularDistanciaPorTrajeto.gerar(perpendicular));
+    }
+
+    @Test
+    @DisplayName("Rota montada sobre vetores coincide com a rota calculada a mao, inclusive no desvio")
+    void rotaCoincideComCalculoManualIncluindoDesvio() {
+        var distante = new Pedido(new Partida(4, 0), 1.0, Prioridade.ALTA);
+        var proximo = new Pedido(new Partida(2, 0), 1.0, Prioridade.BAIXA);
+        var diagonal = new Pedido(new Partida(4, 4), 1.0, Prioridade.MEDIA);
+        List<Pedido> pedidos = List.of(distante, proximo, diagonal);
+
+        // vizinho mais proximo: (2,0) -> (4,0) -> (4,4) -> deposito
+        List<Partida> semObstaculo = CalcularDistanciaPorTrajeto.buildRoute(pedidos);
+        assertEquals(List.of(Partida.DEPOSITO, proximo.getLocalizacao(), distante.getLocalizacao(),
+            diagonal.getLocalizacao(), Partida.DEPOSITO), semObstaculo);
+        assertEquals(8 + 4 * Math.sqrt(2), CalcularDistanciaPorTrajeto.gerar(semObstaculo), 1e-9);
+
+        // obstaculo no meio da volta (4,4) -> (0,0): o trecho e deslocado raio + margem = 1 km na perpendicular
+        List<Partida> comDesvio = CalcularDistanciaPorTrajeto.buildRoute(pedidos, List.of(new Obstaculo(2, 2, 0.5)));
+        double deslocamento = Math.sqrt(0.5);
+        List<Partida> esperada = List.of(
+            Partida.DEPOSITO,
+            proximo.getLocalizacao(),
+            distante.getLocalizacao(),
+            diagonal.getLocalizacao(),
+            new Partida(4 + deslocamento, 4 - deslocamento),
+            new Partida(deslocamento, -deslocamento),
+            Partida.DEPOSITO
+        );
+        assertEquals(esperada.size(), comDesvio.size());
+        for (int i = 0; i < esperada.size(); i++) {
+            assertEquals(esperada.get(i).x(), comDesvio.get(i).x(), 1e-9, "x do ponto " + i);
+            assertEquals(esperada.get(i).y(), comDesvio.get(i).y(), 1e-9, "y do ponto " + i);
+        }
+        assertEquals(8 + 1 + 4 * Math.sqrt(2) + 1, CalcularDistanciaPorTrajeto.gerar(comDesvio), 1e-9);
+    }
+
+    private static boolean cruzaObstaculo(List<Partida> rota, List<Obstaculo> obstaculos) {
+        for (int i = 0; i < rota.size() - 1; i++) {
+            for (Obstaculo obstaculo : obstaculos) {
+                if (obstaculo.intersectaSegmento(rota.get(i), rota.get(i + 1))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
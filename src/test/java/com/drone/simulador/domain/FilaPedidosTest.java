@@ -0,0 +1,71 @@
+package com.drone.simulador.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class FilaPedidosTest {
+
+    private static final Comparator<Pedido> ORDENACAO =
+        Comparator.comparingInt((Pedido p) -> p.getPrioridade().getPeso()).reversed()
+            .thenComparing(Pedido::getTempoChegada)
+            .thenComparingLong(Pedido::getId);
+
+    @Test
+    @DisplayName("Fila retorna os k primeiros na ordem do comparador sem remove-los")
+    void topoRetornaPrimeirosEmOrdem() {
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 8, 0);
+        Random random = new Random(7);
+        List<Pedido> pedidos = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            pedidos.add(new Pedido(new Partida(i, i), 1.0, Prioridade.values()[random.nextInt(3)], base.plusMinutes(random.nextInt(60))));
+        }
+        FilaPedidos fila = new FilaPedidos(ORDENACAO);
+        fila.adicionarTodos(pedidos);
+
+        List<Pedido> esperados = new ArrayList<>(pedidos);
+        esperados.sort(ORDENACAO);
+
+        assertEquals(esperados.subList(0, 12), fila.topo(12));
+        assertEquals(200, fila.size(), "topo nao deve consumir a fila");
+        assertEquals(esperados, fila.topo(500));
+    }
+
+    @Test
+    @DisplayName("Fila remove pedidos arbitrarios mantendo a ordem do heap")
+    void removerMantemOrdem() {
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 8, 0);
+        List<Pedido> pedidos = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            pedidos.add(new Pedido(new Partida(i, 0), 1.0, Prioridade.values()[i % 3], base.plusMinutes(50 - i)));
+        }
+        FilaPedidos fila = new FilaPedidos(ORDENACAO);
+        fila.adicionarTodos(pedidos);
+
+        List<Pedido> restantes = new ArrayList<>(pedidos);
+        for (int i = 0; i < pedidos.size(); i += 3) {
+            assertTrue(fila.remover(pedidos.get(i)));
+            restantes.remove(pedidos.get(i));
+        }
+        assertFalse(fila.remover(pedidos.get(0)), "pedido ja removido");
+        assertFalse(fila.adicionar(pedidos.get(1)), "pedido ja presente");
+
+        restantes.sort(ORDENACAO);
+        List<Pedido> drenados = new ArrayList<>();
+        while (!fila.isEmpty()) {
+            drenados.add(fila.poll());
+        }
+        assertEquals(restantes, drenados);
+        assertNull(fila.poll());
+    }
+}
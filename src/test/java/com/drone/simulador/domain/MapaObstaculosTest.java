@@ -0,0 +1,47 @@
+package com.drone.simulador.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class MapaObstaculosTest {
+
+    @Test
+    @DisplayName("Grade de obstaculos encontra o mesmo primeiro obstaculo que a busca linear")
+    void gradeEncontraMesmoObstaculoQueBuscaLinear() {
+        Random random = new Random(3);
+        List<Obstaculo> obstaculos = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            obstaculos.add(new Obstaculo(random.nextDouble() * 200 - 100, random.nextDouble() * 200 - 100, 0.5 + random.nextDouble() * 4));
+        }
+        obstaculos.add(new Obstaculo(0, 0, 60));
+        MapaObstaculos mapa = new MapaObstaculos(obstaculos);
+
+        for (int caso = 0; caso < 5000; caso++) {
+            Partida a = new Partida(random.nextInt(301) - 150, random.nextInt(301) - 150);
+            Partida b;
+            if (caso % 10 == 0) {
+                b = new Partida(random.nextInt(301) - 150, a.y());
+            } else if (caso % 3 == 0) {
+                b = new Partida(a.x() + random.nextGaussian() * 5, a.y() + random.nextGaussian() * 5);
+            } else {
+                b = new Partida(random.nextInt(301) - 150, random.nextInt(301) - 150);
+            }
+
+            int esperado = -1;
+            for (int i = 0; i < obstaculos.size(); i++) {
+                if (obstaculos.get(i).intersectaSegmento(a, b)) {
+                    esperado = i;
+                    break;
+                }
+            }
+
+            assertEquals(esperado, mapa.primeiroIntersectado(a.x(), a.y(), b.x(), b.y()), "trecho " + a + " -> " + b);
+        }
+    }
+}
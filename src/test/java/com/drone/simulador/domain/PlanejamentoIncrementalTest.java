@@ -0,0 +1,99 @@
+package com.drone.simulador.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class PlanejamentoIncrementalTest {
+
+    @Test
+    @DisplayName("adicionar encaixa pedido novo na viagem aberta sem criar outra")
+    void adicionarInserePedidoNaViagemExistente() {
+        var drone = new Drone("D1", 10.0, 3.0); // alcance maximo = 30 km
+        var planejamento = new PlanejamentoIncremental(new AgendarDrone(), List.of(drone), List.of(), MelhoriaRota.NENHUMA, ModoDesvio.PERPENDICULAR);
+
+        var iniciais = planejamento.adicionar(List.of(
+            new Pedido(new Partida(4, 0), 2.0, Prioridade.ALTA),
+            new Pedido(new Partida(4, 4), 2.0, Prioridade.MEDIA)
+        ));
+        assertEquals(1, iniciais.size());
+        var viagem = iniciais.get(0);
+        double distanciaAnterior = viagem.getDistanciaKm();
+
+        var novo = new Pedido(new Partida(5, 2), 1.0, Prioridade.BAIXA);
+        var alteradas = planejamento.adicionar(List.of(novo));
+
+        assertEquals(1, alteradas.size(), "somente a viagem que recebeu o pedido deve ser devolvida");
+        assertSame(viagem, alteradas.get(0));
+        assertEquals(1, planejamento.viagens().size());
+        assertTrue(viagem.getPedidos().contains(novo));
+        assertEquals(5.0, viagem.getPesoTotalKg(), 1e-6);
+        assertTrue(viagem.getDistanciaKm() >= distanciaAnterior);
+        assertTrue(viagem.getDistanciaKm() <= drone.getDistanciaPorCarga() + 1e-6);
+        assertTrue(viagem.getRota().contains(novo.getLocalizacao()), "rota deve passar pelo pedido inserido");
+        assertEquals(Partida.DEPOSITO, viagem.getRota().get(viagem.getRota().size() - 1));
+    }
+
+    @Test
+    @DisplayName("adicionar cria viagem nova quando capacidade ou autonomia nao comportam o pedido")
+    void adicionarCriaViagemQuandoPedidoNaoCabe() {
+        var drone = new Drone("D1", 5.0, 4.0); // alcance maximo = 20 km
+        var planejamento = new PlanejamentoIncremental(new AgendarDrone(), List.of(drone), List.of(), MelhoriaRota.NENHUMA, ModoDesvio.PERPENDICULAR);
+        planejamento.adicionar(List.of(new Pedido(new Partida(3, 0), 4.0, Prioridade.ALTA)));
+
+        var pesado = new Pedido(new Partida(3, 1), 2.0, Prioridade.ALTA);
+        var distante = new Pedido(new Partida(-8, 0), 0.5, Prioridade.MEDIA);
+        var novas = planejamento.adicionar(new ArrayList<>(List.of(pesado, distante)));
+
+        assertEquals(3, planejamento.viagens().size());
+        assertEquals(2, novas.size());
+        planejamento.viagens().forEach(viagem -> {
+            assertTrue(viagem.getPesoTotalKg() <= drone.getCapacidadePorPeso() + 1e-6);
+            assertTrue(viagem.getDistanciaKm() <= drone.getDistanciaPorCarga() + 1e-6);
+        });
+
+        assertTrue(planejamento.adicionar(List.of(pesado)).isEmpty(), "pedido ja planejado deve ser ignorado");
+    }
+
+    @Test
+    @DisplayName("encerrar retira a viagem e impede novas insercoes nela")
+    void encerrarRetiraViagemDoPlano() {
+        var drone = new Drone("D1", 10.0, 3.0);
+        var planejamento = new PlanejamentoIncremental(new AgendarDrone(), List.of(drone), List.of(new Obstaculo(2, 0, 0.5)), MelhoriaRota.NENHUMA, ModoDesvio.PERPENDICULAR);
+        var viagem = planejamento.adicionar(List.of(new Pedido(new Partida(4, 0), 1.0, Prioridade.ALTA))).get(0);
+
+        assertTrue(planejamento.encerrar(viagem));
+        var novas = planejamento.adicionar(List.of(new Pedido(new Partida(4, 1), 1.0, Prioridade.ALTA)));
+
+        assertEquals(1, novas.size());
+        assertTrue(novas.get(0) != viagem);
+        assertEquals(1, viagem.getPedidos().size());
+    }
+
+    @Test
+    @DisplayName("encerrar esquece os pedidos da viagem e mantem os das viagens abertas")
+    void encerrarEsquecePedidosDaViagem() {
+        var drone = new Drone("D1", 3.0, 3.0);
+        var planejamento = new PlanejamentoIncremental(new AgendarDrone(), List.of(drone), List.of(), MelhoriaRota.NENHUMA, ModoDesvio.PERPENDICULAR);
+        var primeiro = new Pedido(new Partida(2, 0), 3.0, Prioridade.ALTA);
+        var segundo = new Pedido(new Partida(0, 2), 3.0, Prioridade.ALTA);
+        var viagens = planejamento.adicionar(List.of(primeiro, segundo));
+        assertEquals(2, viagens.size());
+        var encerrada = viagens.stream().filter(v -> v.getPedidos().contains(primeiro)).findFirst().orElseThrow();
+
+        assertTrue(planejamento.encerrar(encerrada));
+        assertFalse(planejamento.encerrar(encerrada), "viagem ja encerrada nao esta mais no plano");
+
+        assertTrue(planejamento.adicionar(List.of(segundo)).isEmpty(), "pedido de viagem aberta segue planejado");
+        var replanejadas = planejamento.adicionar(List.of(primeiro));
+        assertEquals(1, replanejadas.size(), "pedido de viagem encerrada nao deve continuar retido no plano");
+        assertEquals(2, planejamento.viagens().size());
+    }
+}